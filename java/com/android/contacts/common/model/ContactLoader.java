@@ -35,6 +35,7 @@ import android.provider.ContactsContract.Data;
 import android.provider.ContactsContract.Directory;
 import android.provider.ContactsContract.Groups;
 import android.provider.ContactsContract.RawContacts;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.android.contacts.common.GroupMetaData;
 import com.android.contacts.common.model.account.AccountType;
@@ -45,6 +46,7 @@ import com.android.contacts.common.model.dataitem.PhotoDataItem;
 import com.android.contacts.common.util.Constants;
 import com.android.contacts.common.util.ContactLoaderUtils;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.location.GeoUtil;
 import com.android.dialer.util.PermissionsUtil;
 import com.android.dialer.util.UriUtils;
@@ -52,6 +54,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -82,11 +85,16 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
   private boolean mLoadInvitableAccountTypes;
   private boolean mPostViewNotification;
   private boolean mComputeFormattedPhoneNumber;
+  private boolean mLoadPhotoBinaryData;
   private Contact mContact;
   private ForceLoadContentObserver mObserver;
 
+  /**
+   * Creates a loader which doesn't read the full size photo, as it is only used to post view
+   * notifications or read the contact's data items.
+   */
   public ContactLoader(Context context, Uri lookupUri, boolean postViewNotification) {
-    this(context, lookupUri, false, false, postViewNotification, false);
+    this(context, lookupUri, false, false, postViewNotification, false, false);
   }
 
   public ContactLoader(
@@ -96,6 +104,29 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
       boolean loadInvitableAccountTypes,
       boolean postViewNotification,
       boolean computeFormattedPhoneNumber) {
+    this(
+        context,
+        lookupUri,
+        loadGroupMetaData,
+        loadInvitableAccountTypes,
+        postViewNotification,
+        computeFormattedPhoneNumber,
+        true);
+  }
+
+  /**
+   * @param loadPhotoBinaryData whether to read the full size photo from the photo URI. If false,
+   *     {@link Contact#getContentValues()} contains the thumbnail instead, and callers which need
+   *     the full size photo can read it from {@link Contact#getPhotoUri()} when they need it.
+   */
+  public ContactLoader(
+      Context context,
+      Uri lookupUri,
+      boolean loadGroupMetaData,
+      boolean loadInvitableAccountTypes,
+      boolean postViewNotification,
+      boolean computeFormattedPhoneNumber,
+      boolean loadPhotoBinaryData) {
     super(context);
     mLookupUri = lookupUri;
     mRequestedUri = lookupUri;
@@ -103,6 +134,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
     mLoadInvitableAccountTypes = loadInvitableAccountTypes;
     mPostViewNotification = postViewNotification;
     mComputeFormattedPhoneNumber = computeFormattedPhoneNumber;
+    mLoadPhotoBinaryData = loadPhotoBinaryData;
   }
 
   /**
@@ -241,6 +273,14 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         resultIsCached = false;
       }
       if (result.isLoaded()) {
+        // Read the photo, which may be on the network for directory contacts, while the meta-data
+        // below is queried.
+        ListenableFuture<byte[]> photoFuture =
+            !resultIsCached && mLoadPhotoBinaryData && result.getPhotoUri() != null
+                ? DialerExecutorComponent.get(getContext())
+                    .backgroundExecutor()
+                    .submit(() -> readPhotoBinaryData(result.getPhotoUri()))
+                : null;
         if (result.isDirectoryEntry()) {
           if (!resultIsCached) {
             loadDirectoryMetaData(result);
@@ -254,7 +294,11 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
           computeFormattedPhoneNumbers(result);
         }
         if (!resultIsCached) {
-          loadPhotoBinaryData(result);
+          loadThumbnailBinaryData(result);
+          byte[] photoBinaryData = photoFuture == null ? null : photoFuture.get();
+          // If the photo couldn't be read, fall back to the data blob.
+          result.setPhotoBinaryData(
+              photoBinaryData != null ? photoBinaryData : result.getThumbnailPhotoBinaryData());
         }
 
         // Note ME profile should never have "Add connection"
@@ -316,53 +360,42 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
     }
   }
 
-  /**
-   * Looks for the photo data item in entities. If found, a thumbnail will be stored. A larger photo
-   * will also be stored if available.
-   */
-  private void loadPhotoBinaryData(Contact contactData) {
-    loadThumbnailBinaryData(contactData);
-
-    // Try to load the large photo from a file using the photo URI.
-    String photoUri = contactData.getPhotoUri();
-    if (photoUri != null) {
+  /** @return the photo read from {@code photoUri}, or null if it couldn't be read. */
+  @Nullable
+  private byte[] readPhotoBinaryData(String photoUri) {
+    try {
+      final InputStream inputStream;
+      final AssetFileDescriptor fd;
+      final Uri uri = Uri.parse(photoUri);
+      final String scheme = uri.getScheme();
+      if ("http".equals(scheme) || "https".equals(scheme)) {
+        // Support HTTP urls that might come from extended directories
+        inputStream = new URL(photoUri).openStream();
+        fd = null;
+      } else {
+        fd = getContext().getContentResolver().openAssetFileDescriptor(uri, "r");
+        inputStream = fd.createInputStream();
+      }
+      byte[] buffer = new byte[16 * 1024];
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
       try {
-        final InputStream inputStream;
-        final AssetFileDescriptor fd;
-        final Uri uri = Uri.parse(photoUri);
-        final String scheme = uri.getScheme();
-        if ("http".equals(scheme) || "https".equals(scheme)) {
-          // Support HTTP urls that might come from extended directories
-          inputStream = new URL(photoUri).openStream();
-          fd = null;
-        } else {
-          fd = getContext().getContentResolver().openAssetFileDescriptor(uri, "r");
-          inputStream = fd.createInputStream();
+        int size;
+        while ((size = inputStream.read(buffer)) != -1) {
+          baos.write(buffer, 0, size);
         }
-        byte[] buffer = new byte[16 * 1024];
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-          int size;
-          while ((size = inputStream.read(buffer)) != -1) {
-            baos.write(buffer, 0, size);
-          }
-          contactData.setPhotoBinaryData(baos.toByteArray());
-        } finally {
-          inputStream.close();
-          if (fd != null) {
-            fd.close();
-          }
+        return baos.toByteArray();
+      } finally {
+        inputStream.close();
+        if (fd != null) {
+          fd.close();
         }
-        return;
-      } catch (IOException ioe) {
-        // Just fall back to the case below.
       }
+    } catch (IOException ioe) {
+      return null;
     }
-
-    // If we couldn't load from a file, fall back to the data blob.
-    contactData.setPhotoBinaryData(contactData.getThumbnailPhotoBinaryData());
   }
 
+  /** Looks for the photo data item in entities. If found, a thumbnail will be stored. */
   private void loadThumbnailBinaryData(Contact contactData) {
     final long photoId = contactData.getPhotoId();
     if (photoId <= 0) {
@@ -23,7 +23,6 @@ import android.content.DialogInterface.OnCancelListener;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
@@ -44,6 +43,7 @@ import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
+import android.util.LruCache;
 import android.util.SparseArray;
 import android.view.ActionMode;
 import android.view.LayoutInflater;
@@ -60,6 +60,7 @@ import com.android.dialer.app.calllog.calllogcache.CallLogCache;
 import com.android.dialer.app.contactinfo.ContactInfoCache;
 import com.android.dialer.app.voicemail.VoicemailPlaybackPresenter;
 import com.android.dialer.app.voicemail.VoicemailPlaybackPresenter.OnVoicemailDeletedListener;
+import com.android.dialer.blocking.BlockedNumberSnapshot;
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.calldetails.CallDetailsEntries;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
@@ -68,8 +69,8 @@ import com.android.dialer.calllogutils.PhoneCallDetails;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.FragmentUtils.FragmentUtilListener;
 import com.android.dialer.common.LogUtil;
-import com.android.dialer.common.concurrent.AsyncTaskExecutor;
-import com.android.dialer.common.concurrent.AsyncTaskExecutors;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.compat.android.provider.VoicemailCompat;
 import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.contacts.ContactsComponent;
@@ -94,10 +95,14 @@ import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.spam.SpamComponent;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.PermissionsUtil;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -119,7 +124,8 @@ public class CallLogAdapter extends GroupingListAdapter
   private static final String KEY_EXPANDED_ROW_ID = "expanded_row_id";
   private static final String KEY_ACTION_MODE = "action_mode_selected_items";
 
-  public static final String LOAD_DATA_TASK_IDENTIFIER = "load_data";
+  /** Number of rows whose block, spam and voicemail status is cached. */
+  private static final int ROW_STATUS_CACHE_SIZE = 200;
 
   public static final String ENABLE_CALL_LOG_MULTI_SELECT = "enable_call_log_multiselect";
   public static final boolean ENABLE_CALL_LOG_MULTI_SELECT_FLAG = true;
@@ -135,6 +141,7 @@ public class CallLogAdapter extends GroupingListAdapter
   private final OnActionModeStateChangedListener actionModeStateChangedListener;
   private final MultiSelectRemoveView multiSelectRemoveView;
   @NonNull private final FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler;
+  @NonNull private final BlockedNumberSnapshot blockedNumberSnapshot;
   private final int activityType;
 
   /** Instance of helper class for managing views. */
@@ -142,7 +149,17 @@ public class CallLogAdapter extends GroupingListAdapter
   /** Helper to group call log entries. */
   private final CallLogGroupBuilder callLogGroupBuilder;
 
-  private final AsyncTaskExecutor asyncTaskExecutor = AsyncTaskExecutors.createAsyncTaskExecutor();
+  /** Rows bound since the last batch of rows was loaded. */
+  private final List<RowLoad> pendingRowLoads = new ArrayList<>();
+
+  /** The latest load of each bound view holder. Loads which are not in here are discarded. */
+  private final Map<CallLogListItemViewHolder, RowLoad> currentRowLoads = new ArrayMap<>();
+
+  /** Status of rows by row ID, so that rows bound again don't need to look it up again. */
+  private final LruCache<Long, RowStatus> rowStatusCache = new LruCache<>(ROW_STATUS_CACHE_SIZE);
+
+  /** Incremented when {@link #rowStatusCache} is cleared, to discard status loaded before. */
+  private volatile int rowStatusGeneration;
   private ContactInfoCache contactInfoCache;
   // Tracks the position of the currently expanded list item.
   private int currentlyExpandedPosition = RecyclerView.NO_POSITION;
@@ -554,6 +571,11 @@ public class CallLogAdapter extends GroupingListAdapter
         new CallLogListItemHelper(phoneCallDetailsHelper, resources, this.callLogCache);
     callLogGroupBuilder = new CallLogGroupBuilder(activity.getApplicationContext(), this);
     this.filteredNumberAsyncQueryHandler = Assert.isNotNull(filteredNumberAsyncQueryHandler);
+    // Rows blocked or unblocked from the call log are rendered before the change reaches the
+    // snapshot, so render them again once it has.
+    this.blockedNumberSnapshot =
+        new BlockedNumberSnapshot(
+            activity, this.filteredNumberAsyncQueryHandler, this::onBlockOrSpamStatusChanged);
 
     blockReportSpamListener =
         new BlockReportSpamListener(
@@ -669,6 +691,7 @@ public class CallLogAdapter extends GroupingListAdapter
 
   public void clearFilteredNumbersCache() {
     filteredNumberAsyncQueryHandler.clearCache();
+    clearRowStatusCache();
   }
 
   public void onResume() {
@@ -677,6 +700,9 @@ public class CallLogAdapter extends GroupingListAdapter
       contactInfoCache.start();
     }
     isSpamEnabled = SpamComponent.get(activity).spamSettings().isSpamEnabled();
+    // Spam settings, spam lists and voicemail numbers may have changed while paused.
+    clearRowStatusCache();
+    blockedNumberSnapshot.start();
     getDuo().registerListener(this);
     notifyDataSetChanged();
   }
@@ -688,6 +714,7 @@ public class CallLogAdapter extends GroupingListAdapter
     }
 
     getDuo().unregisterListener(this);
+    blockedNumberSnapshot.stop();
     pauseCache();
     for (Uri uri : hiddenItemUris) {
       CallLogAsyncTaskUtil.deleteVoicemail(activity, uri, null);
@@ -778,9 +805,7 @@ public class CallLogAdapter extends GroupingListAdapter
       CallLogListItemViewHolder views = (CallLogListItemViewHolder) viewHolder;
       updateCheckMarkedStatusOfEntry(views);
 
-      if (views.asyncTask != null) {
-        views.asyncTask.cancel(true);
-      }
+      cancelRowLoad(views);
     }
   }
 
@@ -877,50 +902,152 @@ public class CallLogAdapter extends GroupingListAdapter
     // attempt to set the field properly in that case
     viewHolder.isCallComposerCapable = isCallComposerCapable(viewHolder.number);
     viewHolder.setDetailedPhoneDetails(callDetailsEntries);
-    final AsyncTask<Void, Void, Boolean> loadDataTask =
-        new AsyncTask<Void, Void, Boolean>() {
+
+    // Rows bound in the same frame, e.g. when the list is first shown or when the RecyclerView
+    // prefetches the rows about to scroll into view, are loaded together by one background task.
+    cancelRowLoad(viewHolder);
+    RowLoad rowLoad = new RowLoad(viewHolder, rowId, viewHolder.getAdapterPosition(), details);
+    currentRowLoads.put(viewHolder, rowLoad);
+    pendingRowLoads.add(rowLoad);
+    if (pendingRowLoads.size() == 1) {
+      ThreadUtil.postOnUiThread(this::loadPendingRows);
+    }
+  }
+
+  /** Discards the load of the row last bound to the view holder, as it was recycled or rebound. */
+  @MainThread
+  private void cancelRowLoad(CallLogListItemViewHolder viewHolder) {
+    RowLoad rowLoad = currentRowLoads.remove(viewHolder);
+    if (rowLoad != null) {
+      rowLoad.isCancelled = true;
+      pendingRowLoads.remove(rowLoad);
+    }
+  }
+
+  @MainThread
+  private void loadPendingRows() {
+    if (pendingRowLoads.isEmpty()) {
+      return;
+    }
+    ImmutableList<RowLoad> rowLoads = ImmutableList.copyOf(pendingRowLoads);
+    pendingRowLoads.clear();
+    boolean isSpamEnabled = this.isSpamEnabled;
+    int statusGeneration = rowStatusGeneration;
+    Futures.addCallback(
+        DialerExecutorComponent.get(activity)
+            .backgroundExecutor()
+            .submit(() -> loadRows(rowLoads, isSpamEnabled, statusGeneration)),
+        new FutureCallback<ImmutableList<RowLoad>>() {
           @Override
-          protected Boolean doInBackground(Void... params) {
-            viewHolder.blockId =
-                filteredNumberAsyncQueryHandler.getBlockedIdSynchronous(
-                    viewHolder.number, viewHolder.countryIso);
-            details.isBlocked = viewHolder.blockId != null;
-            if (isCancelled()) {
-              return false;
+          public void onSuccess(ImmutableList<RowLoad> loadedRows) {
+            for (RowLoad rowLoad : loadedRows) {
+              renderLoadedRow(rowLoad);
             }
-            if (isSpamEnabled) {
-              viewHolder.isSpamFeatureEnabled = true;
-              // Only display the call as a spam call if there are incoming calls in the list.
-              // Call log cards with only outgoing calls should never be displayed as spam.
-              viewHolder.isSpam =
-                  details.hasIncomingCalls()
-                      && SpamComponent.get(activity)
-                          .spam()
-                          .checkSpamStatusSynchronous(viewHolder.number, viewHolder.countryIso);
-              details.isSpam = viewHolder.isSpam;
-            }
-            return !isCancelled() && loadData(viewHolder, rowId, details);
           }
 
           @Override
-          protected void onPostExecute(Boolean success) {
-            viewHolder.isLoaded = true;
-            if (success) {
-              viewHolder.callbackAction = getCallbackAction(viewHolder.rowId);
-              int currentDayGroup = getDayGroup(viewHolder.rowId);
-              if (currentDayGroup != details.previousGroup) {
-                viewHolder.dayGroupHeaderVisibility = View.VISIBLE;
-                viewHolder.dayGroupHeaderText = getGroupDescription(currentDayGroup);
-              } else {
-                viewHolder.dayGroupHeaderVisibility = View.GONE;
-              }
-              render(viewHolder, details, rowId);
-            }
+          public void onFailure(Throwable throwable) {
+            throw new AssertionError(throwable);
           }
-        };
+        },
+        DialerExecutorComponent.get(activity).uiExecutor());
+  }
+
+  /**
+   * Loads the data of all the given rows into their {@link RowLoad}. Rows recycled or bound again
+   * since are skipped. The view holders are only updated on the main thread, by {@link
+   * #renderLoadedRow(RowLoad)}.
+   */
+  @WorkerThread
+  private ImmutableList<RowLoad> loadRows(
+      ImmutableList<RowLoad> rowLoads, boolean isSpamEnabled, int statusGeneration) {
+    for (RowLoad rowLoad : rowLoads) {
+      if (rowLoad.isCancelled) {
+        continue;
+      }
+      PhoneCallDetails details = rowLoad.details;
+      RowStatus status = rowStatusCache.get(rowLoad.rowId);
+      if (status == null) {
+        status = loadRowStatus(details, isSpamEnabled);
+        if (statusGeneration == rowStatusGeneration) {
+          rowStatusCache.put(rowLoad.rowId, status);
+        }
+      }
+      rowLoad.isSpamFeatureEnabled = isSpamEnabled;
+      rowLoad.status = status;
+      details.isBlocked = status.blockId != null;
+      if (isSpamEnabled) {
+        details.isSpam = status.isSpam;
+      }
+      rowLoad.isLoaded = loadData(rowLoad, status.isVoicemailNumber);
+    }
+    return rowLoads;
+  }
+
+  @WorkerThread
+  private RowStatus loadRowStatus(PhoneCallDetails details, boolean isSpamEnabled) {
+    Integer blockId = blockedNumberSnapshot.getBlockedId(details.number, details.countryIso);
+    // Only display the call as a spam call if there are incoming calls in the list.
+    // Call log cards with only outgoing calls should never be displayed as spam.
+    boolean isSpam =
+        isSpamEnabled
+            && details.hasIncomingCalls()
+            && SpamComponent.get(activity)
+                .spam()
+                .checkSpamStatusSynchronous(details.number, details.countryIso);
+    boolean isVoicemailNumber =
+        callLogCache.isVoicemailNumber(
+            TelecomUtil.composePhoneAccountHandle(
+                details.accountComponentName, details.accountId),
+            details.number);
+    return new RowStatus(blockId, isSpam, isVoicemailNumber);
+  }
+
+  @MainThread
+  private void renderLoadedRow(RowLoad rowLoad) {
+    CallLogListItemViewHolder viewHolder = rowLoad.viewHolder;
+    if (currentRowLoads.get(viewHolder) != rowLoad || rowLoad.rowId != viewHolder.rowId) {
+      // Recycled or bound again while loading, in which case the new load will render it.
+      return;
+    }
+    currentRowLoads.remove(viewHolder);
+    viewHolder.isLoaded = true;
+    if (rowLoad.isLoaded) {
+      viewHolder.blockId = rowLoad.status.blockId;
+      if (rowLoad.isSpamFeatureEnabled) {
+        viewHolder.isSpamFeatureEnabled = true;
+        viewHolder.isSpam = rowLoad.status.isSpam;
+      }
+      viewHolder.displayNumber = rowLoad.details.displayNumber;
+      viewHolder.accountHandle = rowLoad.details.accountHandle;
+      viewHolder.info = rowLoad.info;
+      viewHolder.numberType = rowLoad.numberType;
+      viewHolder.callbackAction = getCallbackAction(viewHolder.rowId);
+      int currentDayGroup = getDayGroup(viewHolder.rowId);
+      if (currentDayGroup != rowLoad.details.previousGroup) {
+        viewHolder.dayGroupHeaderVisibility = View.VISIBLE;
+        viewHolder.dayGroupHeaderText = getGroupDescription(currentDayGroup);
+      } else {
+        viewHolder.dayGroupHeaderVisibility = View.GONE;
+      }
+      render(viewHolder, rowLoad.details, rowLoad.rowId);
+    }
+  }
+
+  /**
+   * Discards the cached block, spam and voicemail status of all rows and binds them again. To be
+   * called when numbers are blocked, unblocked or reported.
+   */
+  @MainThread
+  public void onBlockOrSpamStatusChanged() {
+    clearRowStatusCache();
+    notifyDataSetChanged();
+  }
 
-    viewHolder.asyncTask = loadDataTask;
-    asyncTaskExecutor.submit(LOAD_DATA_TASK_IDENTIFIER, loadDataTask);
+  @MainThread
+  private void clearRowStatusCache() {
+    rowStatusGeneration++;
+    rowStatusCache.evictAll();
   }
 
   @MainThread
@@ -1028,23 +1155,23 @@ public class CallLogAdapter extends GroupingListAdapter
 
   /**
    * Load data for call log. Any expensive operation should be put here to avoid blocking main
-   * thread. Do NOT put any cursor operation here since it's not thread safe.
+   * thread. Do NOT put any cursor operation here since it's not thread safe, nor write to the view
+   * holder, which may be rebound meanwhile.
    */
   @WorkerThread
-  private boolean loadData(CallLogListItemViewHolder views, long rowId, PhoneCallDetails details) {
+  private boolean loadData(RowLoad rowLoad, boolean isVoicemailNumber) {
     Assert.isWorkerThread();
-    if (rowId != views.rowId) {
+    if (rowLoad.isCancelled) {
       LogUtil.i(
           "CallLogAdapter.loadData",
           "rowId of viewHolder changed after load task is issued, aborting load");
       return false;
     }
+    PhoneCallDetails details = rowLoad.details;
 
     final PhoneAccountHandle accountHandle =
         TelecomUtil.composePhoneAccountHandle(details.accountComponentName, details.accountId);
 
-    final boolean isVoicemailNumber = callLogCache.isVoicemailNumber(accountHandle, details.number);
-
     // Note: Binding of the action buttons is done as required in configureActionViews when the
     // user expands the actions ViewStub.
 
@@ -1053,7 +1180,7 @@ public class CallLogAdapter extends GroupingListAdapter
         && !isVoicemailNumber) {
       // Lookup contacts with this number
       // Only do remote lookup in first 5 rows.
-      int position = views.getAdapterPosition();
+      int position = rowLoad.position;
       info =
           contactInfoCache.getValue(
               details.number + details.postDialDigits,
@@ -1070,9 +1197,6 @@ public class CallLogAdapter extends GroupingListAdapter
             ? null
             : PhoneNumberUtils.createTtsSpannable(info.formattedNumber);
     details.updateDisplayNumber(activity, formattedNumber, isVoicemailNumber);
-
-    views.displayNumber = details.displayNumber;
-    views.accountHandle = accountHandle;
     details.accountHandle = accountHandle;
 
     if (!TextUtils.isEmpty(info.name) || !TextUtils.isEmpty(info.nameAlternative)) {
@@ -1091,7 +1215,7 @@ public class CallLogAdapter extends GroupingListAdapter
     LogUtil.d(
         "CallLogAdapter.loadData",
         "position:%d, update geo info: %s, cequint caller id geo: %s, photo uri: %s <- %s",
-        views.getAdapterPosition(),
+        rowLoad.position,
         details.geocode,
         info.geoDescription,
         details.photoUri,
@@ -1100,8 +1224,8 @@ public class CallLogAdapter extends GroupingListAdapter
       details.geocode = info.geoDescription;
     }
 
-    views.info = info;
-    views.numberType = getNumberType(activity.getResources(), details);
+    rowLoad.info = info;
+    rowLoad.numberType = getNumberType(activity.getResources(), details);
 
     callLogListItemHelper.updatePhoneCallDetails(details);
     return true;
@@ -1531,4 +1655,47 @@ public class CallLogAdapter extends GroupingListAdapter
 
     void tapSelectAll();
   }
+
+  /**
+   * A bound row waiting for its data to be loaded in the background. The results are written in
+   * the background and copied to the view holder on the main thread once the load completes.
+   */
+  private static final class RowLoad {
+    final CallLogListItemViewHolder viewHolder;
+    final long rowId;
+    final int position;
+    final PhoneCallDetails details;
+
+    /** Set on the main thread when the view holder is recycled or bound again. */
+    volatile boolean isCancelled;
+
+    /** Whether {@link #loadData} completed. */
+    boolean isLoaded;
+
+    boolean isSpamFeatureEnabled;
+    RowStatus status;
+    ContactInfo info;
+    String numberType;
+
+    RowLoad(
+        CallLogListItemViewHolder viewHolder, long rowId, int position, PhoneCallDetails details) {
+      this.viewHolder = viewHolder;
+      this.rowId = rowId;
+      this.position = position;
+      this.details = details;
+    }
+  }
+
+  /** Status of a row which requires IPCs or database queries to look up. */
+  private static final class RowStatus {
+    @Nullable final Integer blockId;
+    final boolean isSpam;
+    final boolean isVoicemailNumber;
+
+    RowStatus(@Nullable Integer blockId, boolean isSpam, boolean isVoicemailNumber) {
+      this.blockId = blockId;
+      this.isSpam = isSpam;
+      this.isVoicemailNumber = isVoicemailNumber;
+    }
+  }
 }
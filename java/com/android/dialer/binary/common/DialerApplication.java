@@ -31,6 +31,7 @@ import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.inject.HasRootComponent;
 import com.android.dialer.notification.NotificationChannelManager;
 import com.android.dialer.persistentlog.PersistentLogger;
+import com.android.dialer.phonenumbergeoutil.PhoneNumberGeoUtilComponent;
 import com.android.dialer.strictmode.StrictModeComponent;
 
 /** A common application subclass for all Dialer build variants. */
@@ -50,6 +51,7 @@ public abstract class DialerApplication extends Application implements HasRootCo
         .asyncAutoMigrate();
     initializeAnnotatedCallLog();
     PersistentLogger.initialize(this);
+    PhoneNumberGeoUtilComponent.get(this).getPhoneNumberGeoUtil().warmUp(this);
 
     if (BuildCompat.isAtLeastO()) {
       NotificationChannelManager.initChannels(this);
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.blocking;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory copy of the block list, so that checking whether many numbers are blocked (e.g. while
+ * scrolling the call log) doesn't query the blocked number provider for every number.
+ *
+ * <p>The whole list is read once in the background by {@link #start()}. While started, changes to
+ * the provider are applied by re-reading only the changed row when the provider reports one, and
+ * the whole list otherwise. Until the list has been read, {@link #getBlockedId(String, String)}
+ * falls back to {@link FilteredNumberAsyncQueryHandler#getBlockedIdSynchronous(String, String)}.
+ */
+public final class BlockedNumberSnapshot {
+
+  /** Listener for changes to the block list. */
+  public interface Listener {
+
+    /** Called on the main thread once a change to the block list is reflected in lookups. */
+    void onBlockedNumbersChanged();
+  }
+
+  private final Context appContext;
+  private final FilteredNumberAsyncQueryHandler fallbackQueryHandler;
+  private final ListeningExecutorService backgroundExecutor;
+  private final ContentObserver contentObserver;
+  private final Listener listener;
+
+  @Nullable private volatile Snapshot snapshot;
+  private boolean isObserving;
+  /** Incremented by every start and stop, so work started before them can be discarded. */
+  private int generation;
+
+  public BlockedNumberSnapshot(
+      Context context, FilteredNumberAsyncQueryHandler fallbackQueryHandler, Listener listener) {
+    this.appContext = context.getApplicationContext();
+    this.fallbackQueryHandler = fallbackQueryHandler;
+    this.listener = listener;
+    this.backgroundExecutor = DialerExecutorComponent.get(context).backgroundExecutor();
+    this.contentObserver =
+        new ContentObserver(ThreadUtil.getUiThreadHandler()) {
+          @Override
+          public void onChange(boolean selfChange, @Nullable Uri uri) {
+            onProviderChanged(uri);
+          }
+        };
+  }
+
+  /**
+   * Reads the block list in the background and keeps it up to date until {@link #stop()}.
+   *
+   * <p>The list is always read again, as it may have changed or the blocking implementation may
+   * have been migrated while stopped.
+   */
+  @MainThread
+  public void start() {
+    Assert.isMainThread();
+    start(/* isChange = */ false);
+  }
+
+  /** @param isChange whether the list is read again because it changed while being started */
+  private void start(boolean isChange) {
+    stop();
+    appContext
+        .getContentResolver()
+        .registerContentObserver(
+            FilteredNumberCompat.getContentUri(appContext, null),
+            /* notifyForDescendants = */ true,
+            contentObserver);
+    isObserving = true;
+    int startGeneration = generation;
+    backgroundExecutor.submit(() -> reload(startGeneration, isChange));
+  }
+
+  /** Stops updating the list. Lookups fall back to the provider until {@link #start()}. */
+  @MainThread
+  public void stop() {
+    Assert.isMainThread();
+    generation++;
+    if (isObserving) {
+      appContext.getContentResolver().unregisterContentObserver(contentObserver);
+      isObserving = false;
+    }
+    snapshot = null;
+  }
+
+  /**
+   * Returns the ID of the block list entry for {@code number}, or {@code null} if it isn't blocked.
+   *
+   * @see FilteredNumberAsyncQueryHandler#getBlockedIdSynchronous(String, String)
+   */
+  @WorkerThread
+  @Nullable
+  public Integer getBlockedId(@Nullable String number, String countryIso) {
+    Assert.isWorkerThread();
+    Snapshot currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      return fallbackQueryHandler.getBlockedIdSynchronous(number, countryIso);
+    }
+    if (TextUtils.isEmpty(number) || !currentSnapshot.canAttemptBlockOperations) {
+      return null;
+    }
+    // Matches the same column as getBlockedIdSynchronous: numbers without an e164 form can only be
+    // blocked by the framework blocking, which keeps the original number.
+    String e164Number = PhoneNumberUtils.formatNumberToE164(number, countryIso);
+    if (e164Number == null) {
+      return currentSnapshot.useNewFiltering
+          ? currentSnapshot.idsByOriginalNumber.get(number)
+          : null;
+    }
+    return currentSnapshot.idsByE164Number.get(e164Number);
+  }
+
+  @MainThread
+  private void onProviderChanged(@Nullable Uri uri) {
+    if (!isObserving) {
+      // Stopped after the change was dispatched.
+      return;
+    }
+    if (snapshot == null) {
+      // The list is still being read, and may have been read before the change.
+      start(/* isChange = */ true);
+      return;
+    }
+    int changeGeneration = generation;
+    backgroundExecutor.submit(() -> applyChange(uri, changeGeneration));
+  }
+
+  /** Reads the whole list again, unless the snapshot was started or stopped since {@code gen}. */
+  private void restartIfCurrent(int gen) {
+    ThreadUtil.postOnUiThread(
+        () -> {
+          if (gen == generation) {
+            start(/* isChange = */ true);
+          }
+        });
+  }
+
+  /** Reads the whole block list. */
+  @WorkerThread
+  private synchronized void reload(int startGeneration, boolean isChange) {
+    boolean canAttemptBlockOperations = FilteredNumberCompat.canAttemptBlockOperations(appContext);
+    boolean useNewFiltering = FilteredNumberCompat.useNewFiltering(appContext);
+    Map<Integer, Entry> entries = new HashMap<>();
+    if (canAttemptBlockOperations) {
+      try (Cursor cursor = query(/* id = */ null)) {
+        if (cursor == null) {
+          return;
+        }
+        while (cursor.moveToNext()) {
+          Entry entry = Entry.fromCursor(cursor);
+          entries.put(entry.id, entry);
+        }
+      } catch (SecurityException e) {
+        LogUtil.e("BlockedNumberSnapshot.reload", "unable to read block list", e);
+        return;
+      }
+    }
+    LogUtil.i("BlockedNumberSnapshot.reload", "read %d blocked numbers", entries.size());
+    Snapshot loadedSnapshot = new Snapshot(canAttemptBlockOperations, useNewFiltering, entries);
+    ThreadUtil.postOnUiThread(
+        () -> {
+          // Discard the list if stopped or started again while reading.
+          if (startGeneration == generation) {
+            snapshot = loadedSnapshot;
+            if (isChange) {
+              listener.onBlockedNumbersChanged();
+            }
+          }
+        });
+  }
+
+  /**
+   * Applies a change reported by the provider. Only the changed row is read again if the provider
+   * reported its URI.
+   */
+  @WorkerThread
+  private synchronized void applyChange(@Nullable Uri uri, int changeGeneration) {
+    Snapshot currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      return;
+    }
+    long id = uri == null ? -1 : parseId(uri);
+    if (id < 0
+        || !currentSnapshot.canAttemptBlockOperations
+        || currentSnapshot.useNewFiltering != FilteredNumberCompat.useNewFiltering(appContext)) {
+      restartIfCurrent(changeGeneration);
+      return;
+    }
+
+    Map<Integer, Entry> entries = new HashMap<>(currentSnapshot.entries);
+    entries.remove((int) id);
+    try (Cursor cursor = query((int) id)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        Entry entry = Entry.fromCursor(cursor);
+        entries.put(entry.id, entry);
+      }
+    } catch (SecurityException e) {
+      LogUtil.e("BlockedNumberSnapshot.applyChange", "unable to read blocked number", e);
+      restartIfCurrent(changeGeneration);
+      return;
+    }
+    Snapshot updatedSnapshot =
+        new Snapshot(
+            currentSnapshot.canAttemptBlockOperations, currentSnapshot.useNewFiltering, entries);
+    ThreadUtil.postOnUiThread(
+        () -> {
+          // Changes are applied in order as this method is synchronized, but a snapshot discarded
+          // by stop() or start() must not be brought back.
+          if (changeGeneration == generation) {
+            snapshot = updatedSnapshot;
+            listener.onBlockedNumbersChanged();
+          }
+        });
+  }
+
+  @Nullable
+  private Cursor query(@Nullable Integer id) {
+    return appContext
+        .getContentResolver()
+        .query(
+            FilteredNumberCompat.getContentUri(appContext, id),
+            new String[] {
+              FilteredNumberCompat.getIdColumnName(appContext),
+              FilteredNumberCompat.getE164NumberColumnName(appContext),
+              FilteredNumberCompat.getOriginalNumberColumnName(appContext)
+            },
+            null,
+            null,
+            null);
+  }
+
+  private static long parseId(Uri uri) {
+    try {
+      return ContentUris.parseId(uri);
+    } catch (NumberFormatException | UnsupportedOperationException e) {
+      return -1;
+    }
+  }
+
+  /** A row of the block list. */
+  private static final class Entry {
+    final int id;
+    @Nullable final String e164Number;
+    @Nullable final String originalNumber;
+
+    Entry(int id, @Nullable String e164Number, @Nullable String originalNumber) {
+      this.id = id;
+      this.e164Number = e164Number;
+      this.originalNumber = originalNumber;
+    }
+
+    /** Reads the row the cursor is on, in the projection used by {@link #query(Integer)}. */
+    static Entry fromCursor(Cursor cursor) {
+      return new Entry(cursor.getInt(0), cursor.getString(1), cursor.getString(2));
+    }
+  }
+
+  /** Immutable state of the block list, replaced as a whole when the list changes. */
+  private static final class Snapshot {
+    final boolean canAttemptBlockOperations;
+    final boolean useNewFiltering;
+    final ImmutableMap<Integer, Entry> entries;
+    final ImmutableMap<String, Integer> idsByE164Number;
+    final ImmutableMap<String, Integer> idsByOriginalNumber;
+
+    Snapshot(
+        boolean canAttemptBlockOperations, boolean useNewFiltering, Map<Integer, Entry> entries) {
+      this.canAttemptBlockOperations = canAttemptBlockOperations;
+      this.useNewFiltering = useNewFiltering;
+      this.entries = ImmutableMap.copyOf(entries);
+
+      // A number may be blocked by several rows, any of their IDs may be returned.
+      Map<String, Integer> idsByE164Number = new HashMap<>();
+      Map<String, Integer> idsByOriginalNumber = new HashMap<>();
+      for (Entry entry : entries.values()) {
+        if (entry.e164Number != null) {
+          idsByE164Number.put(entry.e164Number, entry.id);
+        }
+        if (entry.originalNumber != null) {
+          idsByOriginalNumber.put(entry.originalNumber, entry.id);
+        }
+      }
+      this.idsByE164Number = ImmutableMap.copyOf(idsByE164Number);
+      this.idsByOriginalNumber = ImmutableMap.copyOf(idsByOriginalNumber);
+    }
+  }
+}
@@ -182,6 +182,7 @@ public class AnnotatedCallLogContentProvider extends ContentProvider {
     }
     Uri insertedUri = ContentUris.withAppendedId(AnnotatedCallLog.CONTENT_URI, id);
     if (!isApplyingBatch()) {
+      databaseHelper.deleteOldRows(database);
       notifyChange(insertedUri);
     }
     return insertedUri;
@@ -282,6 +283,7 @@ public class AnnotatedCallLogContentProvider extends ContentProvider {
     }
 
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
+    boolean hasInserts = false;
     try {
       applyingBatch.set(true);
       database.beginTransaction();
@@ -304,23 +306,20 @@ public class AnnotatedCallLogContentProvider extends ContentProvider {
             throw new OperationApplicationException("error inserting row");
           }
         } else if (result.count == 0) {
-          /*
-           * The batches built by MutationApplier happen to contain operations in order of:
-           *
-           * 1. Inserts
-           * 2. Updates
-           * 3. Deletes
-           *
-           * Let's say the last row in the table is row Z, and MutationApplier wishes to update it,
-           * as well as insert row A. When row A gets inserted, row Z will be deleted via the
-           * trigger if the table is full. Then later, when we try to process the update for row Z,
-           * it won't exist.
-           */
+          // Old rows are only cleaned up at the end of the batch, so the row must have been
+          // deleted before the batch was applied.
           LogUtil.w(
               "AnnotatedCallLogContentProvider.applyBatch",
-              "update or delete failed, possibly because row got cleaned up");
+              "update or delete failed, possibly because row was already deleted");
         }
         results[i] = result;
+        hasInserts |= operation.isInsert();
+      }
+      if (hasInserts) {
+        // Trim once for the whole batch rather than after each insert.
+        int deletedRows = databaseHelper.deleteOldRows(database);
+        LogUtil.i(
+            "AnnotatedCallLogContentProvider.applyBatch", "deleted %d old rows", deletedRows);
       }
       database.setTransactionSuccessful();
     } finally {
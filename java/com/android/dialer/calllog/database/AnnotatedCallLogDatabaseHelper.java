@@ -35,7 +35,7 @@ import javax.inject.Singleton;
 @Singleton
 public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
 
-  @VisibleForTesting static final int VERSION = 4;
+  @VisibleForTesting static final int VERSION = 5;
 
   private static final String FILENAME = "annotated_call_log.db";
 
@@ -95,23 +95,11 @@ public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
           + ");";
 
   /**
-   * Deletes all but the first maxRows rows (by timestamp, excluding voicemails) to keep the table a
-   * manageable size.
+   * Selects all but the newest %d rows (by timestamp, excluding voicemails), which are deleted to
+   * keep the table a manageable size.
    */
-  private static final String CREATE_TRIGGER_SQL =
-      "create trigger delete_old_rows after insert on "
-          + AnnotatedCallLog.TABLE
-          + " when (select count(*) from "
-          + AnnotatedCallLog.TABLE
-          + " where "
-          + AnnotatedCallLog.CALL_TYPE
-          + " != "
-          + Calls.VOICEMAIL_TYPE
-          + ") > %d"
-          + " begin delete from "
-          + AnnotatedCallLog.TABLE
-          + " where "
-          + AnnotatedCallLog._ID
+  private static final String OLD_ROWS_SELECTION =
+      AnnotatedCallLog._ID
           + " in (select "
           + AnnotatedCallLog._ID
           + " from "
@@ -120,14 +108,9 @@ public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
           + AnnotatedCallLog.CALL_TYPE
           + " != "
           + Calls.VOICEMAIL_TYPE
-          + " order by timestamp limit (select count(*)-%d"
-          + " from "
-          + AnnotatedCallLog.TABLE
-          + " where "
-          + AnnotatedCallLog.CALL_TYPE
-          + " != "
-          + Calls.VOICEMAIL_TYPE
-          + ")); end;";
+          + " order by "
+          + AnnotatedCallLog.TIMESTAMP
+          + " desc limit -1 offset %d)";
 
   private static final String CREATE_INDEX_ON_CALL_TYPE_SQL =
       "create index call_type_index on "
@@ -143,14 +126,22 @@ public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
           + AnnotatedCallLog.NUMBER
           + ");";
 
+  /** Backs the retention delete and the queries sorting the call log by timestamp. */
+  private static final String CREATE_INDEX_ON_TIMESTAMP_SQL =
+      "create index timestamp_index on "
+          + AnnotatedCallLog.TABLE
+          + " ("
+          + AnnotatedCallLog.TIMESTAMP
+          + ");";
+
   @Override
   public void onCreate(SQLiteDatabase db) {
     LogUtil.enterBlock("AnnotatedCallLogDatabaseHelper.onCreate");
     long startTime = System.currentTimeMillis();
     db.execSQL(CREATE_TABLE_SQL);
-    db.execSQL(String.format(Locale.US, CREATE_TRIGGER_SQL, maxRows, maxRows));
     db.execSQL(CREATE_INDEX_ON_CALL_TYPE_SQL);
     db.execSQL(CREATE_INDEX_ON_NUMBER_SQL);
+    db.execSQL(CREATE_INDEX_ON_TIMESTAMP_SQL);
     // TODO(zachh): Consider logging impression.
     LogUtil.i(
         "AnnotatedCallLogDatabaseHelper.onCreate",
@@ -169,6 +160,10 @@ public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
     if (oldVersion < 4) {
       upgradeToV4(db);
     }
+
+    if (oldVersion < 5) {
+      upgradeToV5(db);
+    }
   }
 
   private static void upgradeToV2(SQLiteDatabase db) {
@@ -213,6 +208,28 @@ public class AnnotatedCallLogDatabaseHelper extends SQLiteOpenHelper {
             + " is null");
   }
 
+  private void upgradeToV5(SQLiteDatabase db) {
+    // Versions before 5 trimmed the table with a trigger which counted all rows after every
+    // insert. Rows are now trimmed once per insert or batch by deleteOldRows.
+    db.execSQL("drop trigger if exists delete_old_rows");
+    db.execSQL(CREATE_INDEX_ON_TIMESTAMP_SQL);
+    deleteOldRows(db);
+  }
+
+  /**
+   * Deletes the oldest rows (excluding voicemails) so that at most {@link AnnotatedCallLogMaxRows}
+   * remain.
+   *
+   * <p>Callers inserting many rows should call this once after all of them, in the same
+   * transaction, rather than after each insert.
+   *
+   * @return the number of rows deleted
+   */
+  int deleteOldRows(SQLiteDatabase db) {
+    return db.delete(
+        AnnotatedCallLog.TABLE, String.format(Locale.US, OLD_ROWS_SELECTION, maxRows), null);
+  }
+
   /** Closes the database and deletes it. */
   public ListenableFuture<Void> delete() {
     return backgroundExecutor.submit(
@@ -34,6 +34,7 @@ import com.android.dialer.metrics.FutureTimer;
 import com.android.dialer.metrics.Metrics;
 import com.android.dialer.phonenumberproto.DialerPhoneNumberUtil;
 import com.android.dialer.telecom.TelecomUtil;
+import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -59,47 +60,70 @@ public class Coalescer {
    * Given rows from {@link AnnotatedCallLog}, combine adjacent ones which should be collapsed for
    * display purposes.
    *
+   * <p>Coalescing stops after {@code maxCoalescedRows} rows so that the first screen of the call
+   * log can be shown without reading the entire table. Pages always end at a group boundary, so
+   * passing {@link CoalescedPage#getNextCursorPosition()} and the number of coalesced rows so far
+   * back to this method continues where the previous page stopped, and concatenating the pages
+   * yields the same rows as coalescing the whole cursor at once.
+   *
    * @param allAnnotatedCallLogRowsSortedByTimestampDesc {@link AnnotatedCallLog} rows sorted in
    *     descending order of timestamp.
-   * @return a future of a list of {@link CoalescedRow coalesced rows}, which will be used to
+   * @param startCursorPosition the position in the cursor of the first row of the page
+   * @param maxCoalescedRows the maximum number of {@link CoalescedRow coalesced rows} in the page
+   * @param firstCoalescedRowId the ID of the first {@link CoalescedRow} of the page
+   * @return a future of a page of {@link CoalescedRow coalesced rows}, which will be used to
    *     display call log entries.
    */
-  public ListenableFuture<ImmutableList<CoalescedRow>> coalesce(
-      @NonNull Cursor allAnnotatedCallLogRowsSortedByTimestampDesc) {
-    ListenableFuture<ImmutableList<CoalescedRow>> coalescingFuture =
+  public ListenableFuture<CoalescedPage> coalesce(
+      @NonNull Cursor allAnnotatedCallLogRowsSortedByTimestampDesc,
+      int startCursorPosition,
+      int maxCoalescedRows,
+      long firstCoalescedRowId) {
+    ListenableFuture<CoalescedPage> coalescingFuture =
         backgroundExecutorService.submit(
-            () -> coalesceInternal(Assert.isNotNull(allAnnotatedCallLogRowsSortedByTimestampDesc)));
+            () ->
+                coalesceInternal(
+                    Assert.isNotNull(allAnnotatedCallLogRowsSortedByTimestampDesc),
+                    startCursorPosition,
+                    maxCoalescedRows,
+                    firstCoalescedRowId));
     futureTimer.applyTiming(coalescingFuture, Metrics.NEW_CALL_LOG_COALESCE);
     return coalescingFuture;
   }
 
   /**
-   * Reads the entire {@link AnnotatedCallLog} into memory from the provided cursor and then builds
-   * and returns a list of {@link CoalescedRow coalesced rows}, which is the result of combining
-   * adjacent rows which should be collapsed for display purposes.
+   * Reads {@link AnnotatedCallLog} rows from the provided cursor, starting at {@code
+   * startCursorPosition}, and then builds and returns a page of up to {@code maxCoalescedRows}
+   * {@link CoalescedRow coalesced rows}, which is the result of combining adjacent rows which
+   * should be collapsed for display purposes.
    *
    * @param allAnnotatedCallLogRowsSortedByTimestampDesc {@link AnnotatedCallLog} rows sorted in
    *     descending order of timestamp.
-   * @return a list of {@link CoalescedRow coalesced rows}, which will be used to display call log
+   * @return a page of {@link CoalescedRow coalesced rows}, which will be used to display call log
    *     entries.
    */
   @WorkerThread
   @NonNull
-  private ImmutableList<CoalescedRow> coalesceInternal(
-      Cursor allAnnotatedCallLogRowsSortedByTimestampDesc) throws ExpectedCoalescerException {
+  private CoalescedPage coalesceInternal(
+      Cursor allAnnotatedCallLogRowsSortedByTimestampDesc,
+      int startCursorPosition,
+      int maxCoalescedRows,
+      long firstCoalescedRowId)
+      throws ExpectedCoalescerException {
     Assert.isWorkerThread();
+    Assert.checkArgument(maxCoalescedRows > 0);
 
     ImmutableList.Builder<CoalescedRow> coalescedRowListBuilder = new ImmutableList.Builder<>();
 
     try {
-      if (!allAnnotatedCallLogRowsSortedByTimestampDesc.moveToFirst()) {
-        return ImmutableList.of();
+      if (!allAnnotatedCallLogRowsSortedByTimestampDesc.moveToPosition(startCursorPosition)) {
+        return CoalescedPage.create(ImmutableList.of(), CoalescedPage.NO_MORE_ROWS);
       }
 
       RowCombiner rowCombiner = new RowCombiner(allAnnotatedCallLogRowsSortedByTimestampDesc);
       rowCombiner.startNewGroup();
 
-      long coalescedRowId = 0;
+      long coalescedRowId = firstCoalescedRowId;
       do {
         boolean isRowMerged = rowCombiner.mergeRow(allAnnotatedCallLogRowsSortedByTimestampDesc);
 
@@ -111,10 +135,20 @@ public class Coalescer {
           coalescedRowListBuilder.add(
               rowCombiner.combine().toBuilder().setId(coalescedRowId++).build());
           rowCombiner.startNewGroup();
+
+          // A group is only complete once a row that can't be merged into it is reached, and the
+          // cursor is then on the first row of the next group, where the next page starts.
+          if (coalescedRowId - firstCoalescedRowId >= maxCoalescedRows) {
+            break;
+          }
         }
       } while (!allAnnotatedCallLogRowsSortedByTimestampDesc.isAfterLast());
 
-      return coalescedRowListBuilder.build();
+      return CoalescedPage.create(
+          coalescedRowListBuilder.build(),
+          allAnnotatedCallLogRowsSortedByTimestampDesc.isAfterLast()
+              ? CoalescedPage.NO_MORE_ROWS
+              : allAnnotatedCallLogRowsSortedByTimestampDesc.getPosition());
 
     } catch (Exception exception) {
       // Coalescing can fail if cursor "allAnnotatedCallLogRowsSortedByTimestampDesc" is closed by
@@ -377,6 +411,26 @@ public class Coalescer {
     }
   }
 
+  /** Rows coalesced by one call to {@link #coalesce(Cursor, int, int, long)}. */
+  @AutoValue
+  public abstract static class CoalescedPage {
+
+    /** Value of {@link #getNextCursorPosition()} when all rows of the cursor have been read. */
+    public static final int NO_MORE_ROWS = -1;
+
+    public abstract ImmutableList<CoalescedRow> getCoalescedRows();
+
+    /**
+     * The position in the cursor of the first row of the next page, or {@link #NO_MORE_ROWS} if
+     * this is the last page.
+     */
+    public abstract int getNextCursorPosition();
+
+    static CoalescedPage create(ImmutableList<CoalescedRow> coalescedRows, int nextCursorPosition) {
+      return new AutoValue_Coalescer_CoalescedPage(coalescedRows, nextCursorPosition);
+    }
+  }
+
   /** A checked exception thrown when expected failure happens when coalescing is in progress. */
   public static final class ExpectedCoalescerException extends Exception {
     ExpectedCoalescerException(Throwable throwable) {
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.dialer.calllog.ui;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.Nullable;
+import com.android.dialer.calllog.model.CoalescedRow;
+import com.android.dialer.glidephotomanager.PhotoInfo;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Immutable, fully formatted display model for a single {@link CoalescedRow}.
+ *
+ * <p>Instances are built off the UI thread by {@link CallLogEntryModelFormatter} so that binding a
+ * row in {@link NewCallLogViewHolder} only needs to assign precomputed values to views.
+ */
+@AutoValue
+abstract class CallLogEntryModel {
+
+  /** The row this model was formatted from. */
+  abstract CoalescedRow getCoalescedRow();
+
+  abstract CharSequence getPrimaryText();
+
+  abstract CharSequence getSecondaryText();
+
+  abstract CharSequence getContentDescription();
+
+  /** The text shown next to the primary text, such as "(3)". Null when it should be hidden. */
+  @Nullable
+  abstract String getCallCountText();
+
+  abstract PhotoInfo getPhotoInfo();
+
+  /** Label of the phone account used for the call. Null when it should be hidden. */
+  @Nullable
+  abstract String getPhoneAccountLabel();
+
+  /** Color for {@link #getPhoneAccountLabel()}, or {@code PhoneAccount.NO_HIGHLIGHT_COLOR}. */
+  @ColorInt
+  abstract int getPhoneAccountColor();
+
+  abstract boolean getIsUnreadMissedCall();
+
+  abstract boolean getShowHdIcon();
+
+  abstract boolean getShowWifiIcon();
+
+  abstract boolean getShowAssistedDialIcon();
+
+  abstract boolean getIsVideoCall();
+
+  /** Content description for the call button. Null when calls cannot be placed to the number. */
+  @Nullable
+  abstract CharSequence getCallButtonContentDescription();
+
+  static Builder builder() {
+    return new AutoValue_CallLogEntryModel.Builder();
+  }
+
+  /** Builder for {@link CallLogEntryModel}. */
+  @AutoValue.Builder
+  abstract static class Builder {
+
+    abstract Builder setCoalescedRow(CoalescedRow coalescedRow);
+
+    abstract Builder setPrimaryText(CharSequence primaryText);
+
+    abstract Builder setSecondaryText(CharSequence secondaryText);
+
+    abstract Builder setContentDescription(CharSequence contentDescription);
+
+    abstract Builder setCallCountText(@Nullable String callCountText);
+
+    abstract Builder setPhotoInfo(PhotoInfo photoInfo);
+
+    abstract Builder setPhoneAccountLabel(@Nullable String phoneAccountLabel);
+
+    abstract Builder setPhoneAccountColor(@ColorInt int phoneAccountColor);
+
+    abstract Builder setIsUnreadMissedCall(boolean isUnreadMissedCall);
+
+    abstract Builder setShowHdIcon(boolean showHdIcon);
+
+    abstract Builder setShowWifiIcon(boolean showWifiIcon);
+
+    abstract Builder setShowAssistedDialIcon(boolean showAssistedDialIcon);
+
+    abstract Builder setIsVideoCall(boolean isVideoCall);
+
+    abstract Builder setCallButtonContentDescription(
+        @Nullable CharSequence callButtonContentDescription);
+
+    abstract CallLogEntryModel build();
+  }
+}
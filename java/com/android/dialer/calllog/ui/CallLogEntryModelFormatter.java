@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.dialer.calllog.ui;
+
+import android.content.Context;
+import android.provider.CallLog.Calls;
+import android.support.annotation.AnyThread;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.text.TextUtils;
+import com.android.dialer.calllog.model.CoalescedRow;
+import com.android.dialer.calllogutils.CallLogEntryDescriptions;
+import com.android.dialer.calllogutils.CallLogEntryText;
+import com.android.dialer.calllogutils.PhoneAccountUtils;
+import com.android.dialer.calllogutils.PhotoInfoBuilder;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.compat.telephony.TelephonyManagerCompat;
+import com.android.dialer.metrics.FutureTimer;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
+import com.android.dialer.oem.MotorolaUtils;
+import com.android.dialer.phonenumberutil.PhoneNumberHelper;
+import com.android.dialer.telecom.TelecomUtil;
+import com.android.dialer.time.Clock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.Locale;
+
+/**
+ * Turns {@link CoalescedRow CoalescedRows} into {@link CallLogEntryModel CallLogEntryModels}.
+ *
+ * <p>Formatting involves string building, resource lookups and telecom queries for phone account
+ * labels, which are too expensive to perform for every bind during a fling.
+ */
+final class CallLogEntryModelFormatter {
+
+  private final Context context;
+  private final Clock clock;
+  private final ListeningExecutorService backgroundExecutor;
+  private final FutureTimer futureTimer;
+
+  CallLogEntryModelFormatter(Context context, Clock clock) {
+    this.context = context;
+    this.clock = clock;
+    this.backgroundExecutor = DialerExecutorComponent.get(context).backgroundExecutor();
+    this.futureTimer = MetricsComponent.get(context).futureTimer();
+  }
+
+  /** Formats all of the provided rows on a background thread. */
+  ListenableFuture<ImmutableList<CallLogEntryModel>> formatAll(
+      ImmutableList<CoalescedRow> coalescedRows) {
+    ListenableFuture<ImmutableList<CallLogEntryModel>> formattingFuture =
+        backgroundExecutor.submit(
+            () -> {
+              ImmutableList.Builder<CallLogEntryModel> models = new ImmutableList.Builder<>();
+              for (CoalescedRow coalescedRow : coalescedRows) {
+                models.add(format(coalescedRow));
+              }
+              return models.build();
+            });
+    futureTimer.applyTiming(formattingFuture, Metrics.NEW_CALL_LOG_FORMAT_ROWS);
+    return formattingFuture;
+  }
+
+  /** Formats a single row. */
+  @AnyThread
+  CallLogEntryModel format(CoalescedRow row) {
+    CharSequence primaryText = CallLogEntryText.buildPrimaryText(context, row);
+
+    CallLogEntryModel.Builder builder =
+        CallLogEntryModel.builder()
+            .setCoalescedRow(row)
+            .setPrimaryText(primaryText)
+            .setSecondaryText(CallLogEntryText.buildSecondaryTextForEntries(context, clock, row))
+            .setContentDescription(
+                CallLogEntryDescriptions.buildDescriptionForEntry(context, clock, row))
+            .setPhotoInfo(PhotoInfoBuilder.fromCoalescedRow(context, row).build())
+            .setIsUnreadMissedCall(isUnreadMissedCall(row))
+            .setShowHdIcon(
+                (row.getFeatures() & Calls.FEATURES_HD_CALL) == Calls.FEATURES_HD_CALL)
+            .setShowWifiIcon(MotorolaUtils.shouldShowWifiIconInCallLog(context, row.getFeatures()))
+            .setShowAssistedDialIcon(
+                (row.getFeatures() & TelephonyManagerCompat.FEATURES_ASSISTED_DIALING)
+                    == TelephonyManagerCompat.FEATURES_ASSISTED_DIALING);
+
+    int numberCalls = row.getCoalescedIds().getCoalescedIdCount();
+    builder.setCallCountText(
+        numberCalls > 1 ? String.format(Locale.getDefault(), "(%d)", numberCalls) : null);
+
+    setPhoneAccount(builder, row);
+    setCallButton(builder, row, primaryText);
+    return builder.build();
+  }
+
+  private void setPhoneAccount(CallLogEntryModel.Builder builder, CoalescedRow row) {
+    builder.setPhoneAccountLabel(null).setPhoneAccountColor(PhoneAccount.NO_HIGHLIGHT_COLOR);
+
+    PhoneAccountHandle phoneAccountHandle =
+        TelecomUtil.composePhoneAccountHandle(
+            row.getPhoneAccountComponentName(), row.getPhoneAccountId());
+    if (phoneAccountHandle == null) {
+      return;
+    }
+
+    String phoneAccountLabel = PhoneAccountUtils.getAccountLabel(context, phoneAccountHandle);
+    if (TextUtils.isEmpty(phoneAccountLabel)) {
+      return;
+    }
+
+    builder
+        .setPhoneAccountLabel(phoneAccountLabel)
+        .setPhoneAccountColor(PhoneAccountUtils.getAccountColor(context, phoneAccountHandle));
+  }
+
+  private void setCallButton(
+      CallLogEntryModel.Builder builder, CoalescedRow row, CharSequence primaryText) {
+    boolean isVideoCall = (row.getFeatures() & Calls.FEATURES_VIDEO) == Calls.FEATURES_VIDEO;
+    builder.setIsVideoCall(isVideoCall).setCallButtonContentDescription(null);
+
+    if (!PhoneNumberHelper.canPlaceCallsTo(
+        row.getNumber().getNormalizedNumber(), row.getNumberPresentation())) {
+      return;
+    }
+
+    builder.setCallButtonContentDescription(
+        TextUtils.expandTemplate(
+            context
+                .getResources()
+                .getText(
+                    isVideoCall
+                        ? R.string.a11y_new_call_log_entry_video_call
+                        : R.string.a11y_new_call_log_entry_voice_call),
+            primaryText));
+  }
+
+  private static boolean isUnreadMissedCall(CoalescedRow row) {
+    // Show missed call styling if the most recent call in the group was missed and it is still
+    // marked as not read. The "NEW" column is presumably used for notifications and voicemails
+    // only.
+    return row.getCallType() == Calls.MISSED_TYPE && !row.getIsRead();
+  }
+}
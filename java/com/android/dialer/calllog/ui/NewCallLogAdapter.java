@@ -23,7 +23,6 @@ import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
-import com.android.dialer.calllog.model.CoalescedRow;
 import com.android.dialer.calllogutils.CallLogDates;
 import com.android.dialer.common.Assert;
 import com.android.dialer.logging.Logger;
@@ -32,6 +31,7 @@ import com.android.dialer.time.Clock;
 import com.google.common.collect.ImmutableList;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Objects;
 
 /** {@link RecyclerView.Adapter} for the new call log fragment. */
 final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
@@ -64,11 +64,12 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
 
   private final Clock clock;
   private final Activity activity;
+  private final CallLogEntryModelFormatter formatter;
   private final RealtimeRowProcessor realtimeRowProcessor;
   private final PopCounts popCounts = new PopCounts();
   @Nullable private final Promotion promotion;
 
-  private ImmutableList<CoalescedRow> coalescedRows;
+  private ImmutableList<CallLogEntryModel> callLogEntryModels;
 
   /** Position of the promotion card. Null when it should not be displayed. */
   @Nullable private Integer promotionCardPosition;
@@ -84,20 +85,22 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
 
   NewCallLogAdapter(
       Activity activity,
-      ImmutableList<CoalescedRow> coalescedRows,
+      ImmutableList<CallLogEntryModel> callLogEntryModels,
       Clock clock,
+      CallLogEntryModelFormatter formatter,
       @Nullable Promotion promotion) {
     this.activity = activity;
-    this.coalescedRows = coalescedRows;
+    this.callLogEntryModels = callLogEntryModels;
     this.clock = clock;
+    this.formatter = formatter;
     this.realtimeRowProcessor = CallLogUiComponent.get(activity).realtimeRowProcessor();
     this.promotion = promotion;
 
     setCardAndHeaderPositions();
   }
 
-  void updateRows(ImmutableList<CoalescedRow> coalescedRows) {
-    this.coalescedRows = coalescedRows;
+  void updateRows(ImmutableList<CallLogEntryModel> callLogEntryModels) {
+    this.callLogEntryModels = callLogEntryModels;
     this.realtimeRowProcessor.clearCache();
     this.popCounts.reset();
 
@@ -105,6 +108,40 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
     notifyDataSetChanged();
   }
 
+  /** Adds the next page of rows after the current ones. */
+  void appendRows(ImmutableList<CallLogEntryModel> pageModels) {
+    if (pageModels.isEmpty()) {
+      return;
+    }
+    callLogEntryModels =
+        new ImmutableList.Builder<CallLogEntryModel>()
+            .addAll(callLogEntryModels)
+            .addAll(pageModels)
+            .build();
+
+    // As rows are sorted by timestamp, the page can only add headers after the existing rows.
+    // Existing positions still move if the card changed eligibility or the day changed.
+    int oldItemCount = getItemCount();
+    Integer oldPromotionCardPosition = promotionCardPosition;
+    Integer oldTodayHeaderPosition = todayHeaderPosition;
+    Integer oldYesterdayHeaderPosition = yesterdayHeaderPosition;
+    Integer oldOlderHeaderPosition = olderHeaderPosition;
+    setCardAndHeaderPositions();
+    if (Objects.equals(oldPromotionCardPosition, promotionCardPosition)
+        && Objects.equals(oldTodayHeaderPosition, todayHeaderPosition)
+        && (oldYesterdayHeaderPosition == null
+            || oldYesterdayHeaderPosition.equals(yesterdayHeaderPosition))
+        && (oldOlderHeaderPosition == null || oldOlderHeaderPosition.equals(olderHeaderPosition))) {
+      notifyItemRangeInserted(oldItemCount, getItemCount() - oldItemCount);
+    } else {
+      notifyDataSetChanged();
+    }
+  }
+
+  ImmutableList<CallLogEntryModel> getCallLogEntryModels() {
+    return callLogEntryModels;
+  }
+
   void clearCache() {
     this.realtimeRowProcessor.clearCache();
   }
@@ -123,7 +160,7 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
     }
 
     // If there are no rows to display, set all header positions to null.
-    if (coalescedRows.isEmpty()) {
+    if (callLogEntryModels.isEmpty()) {
       todayHeaderPosition = null;
       yesterdayHeaderPosition = null;
       olderHeaderPosition = null;
@@ -136,15 +173,15 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
     int numItemsInToday = 0;
     int numItemsInYesterday = 0;
     int numItemsInOlder = 0;
-    for (CoalescedRow coalescedRow : coalescedRows) {
-      long timestamp = coalescedRow.getTimestamp();
+    for (CallLogEntryModel callLogEntryModel : callLogEntryModels) {
+      long timestamp = callLogEntryModel.getCoalescedRow().getTimestamp();
       long dayDifference = CallLogDates.getDayDifference(currentTimeMillis, timestamp);
       if (dayDifference == 0) {
         numItemsInToday++;
       } else if (dayDifference == 1) {
         numItemsInYesterday++;
       } else {
-        numItemsInOlder = coalescedRows.size() - numItemsInToday - numItemsInYesterday;
+        numItemsInOlder = callLogEntryModels.size() - numItemsInToday - numItemsInYesterday;
         break;
       }
     }
@@ -198,7 +235,7 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
             activity,
             LayoutInflater.from(activity)
                 .inflate(R.layout.new_call_log_entry, viewGroup, /* attachToRoot = */ false),
-            clock,
+            formatter,
             realtimeRowProcessor,
             popCounts);
       default:
@@ -242,7 +279,7 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
         if (olderHeaderPosition != null && position > olderHeaderPosition) {
           previousCardAndHeaders++;
         }
-        newCallLogViewHolder.bind(coalescedRows.get(position - previousCardAndHeaders));
+        newCallLogViewHolder.bind(callLogEntryModels.get(position - previousCardAndHeaders));
         break;
       default:
         throw Assert.createIllegalStateFailException(
@@ -285,7 +322,7 @@ final class NewCallLogAdapter extends RecyclerView.Adapter<ViewHolder> {
     if (olderHeaderPosition != null) {
       numberOfHeaders++;
     }
-    return coalescedRows.size() + numberOfHeaders + numberOfCards;
+    return callLogEntryModels.size() + numberOfHeaders + numberOfCards;
   }
 
   /**
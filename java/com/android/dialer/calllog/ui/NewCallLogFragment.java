@@ -34,6 +34,7 @@ import com.android.dialer.calllog.CallLogComponent;
 import com.android.dialer.calllog.RefreshAnnotatedCallLogReceiver;
 import com.android.dialer.calllog.database.CallLogDatabaseComponent;
 import com.android.dialer.calllog.database.Coalescer;
+import com.android.dialer.calllog.database.Coalescer.CoalescedPage;
 import com.android.dialer.calllog.model.CoalescedRow;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
@@ -65,10 +66,24 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
   @VisibleForTesting
   static final long MARK_ALL_CALLS_READ_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(3);
 
+  /** Number of coalesced rows shown at first, and added each time the user nears the end. */
+  private static final int PAGE_SIZE = 50;
+
+  /** The next page is loaded when the last visible row is this close to the end of the list. */
+  private static final int NEXT_PAGE_THRESHOLD = 20;
+
   private RecyclerView recyclerView;
   private EmptyContentView emptyContentView;
   private RefreshAnnotatedCallLogReceiver refreshAnnotatedCallLogReceiver;
-  private SupportUiListener<ImmutableList<CoalescedRow>> coalesingAnnotatedCallLogListener;
+  private SupportUiListener<ImmutableList<CallLogEntryModel>> coalesingAnnotatedCallLogListener;
+  private SupportUiListener<ImmutableList<CallLogEntryModel>> nextPageListener;
+  private CallLogEntryModelFormatter callLogEntryModelFormatter;
+
+  // The cursor from the loader which is being coalesced page by page, and where its next page
+  // starts.
+  @Nullable private Cursor pagedCursor;
+  private int nextPageCursorPosition = CoalescedPage.NO_MORE_ROWS;
+  private boolean isLoadingNextPage;
 
   private boolean shouldMarkCallsRead = false;
   private final Runnable setShouldMarkCallsReadTrue = () -> shouldMarkCallsRead = true;
@@ -174,9 +189,12 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
     // fetched at display time. Because of this, we need to clear the adapter's cache and update it
     // whenever the user arrives at the call log (rather than relying on changes to the CursorLoader
     // alone).
+    // The precomputed row models also contain relative dates (e.g., "5 min ago") which may now be
+    // stale, so the rows are formatted again as well.
     if (recyclerView.getAdapter() != null) {
       ((NewCallLogAdapter) recyclerView.getAdapter()).clearCache();
       recyclerView.getAdapter().notifyDataSetChanged();
+      reformatRows((NewCallLogAdapter) recyclerView.getAdapter());
     }
 
     // We shouldn't mark the calls as read immediately when the 3 second timer expires because we
@@ -187,6 +205,27 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
         .postDelayed(setShouldMarkCallsReadTrue, MARK_ALL_CALLS_READ_WAIT_MILLIS);
   }
 
+  private void reformatRows(NewCallLogAdapter adapter) {
+    ImmutableList<CallLogEntryModel> currentModels = adapter.getCallLogEntryModels();
+    ImmutableList.Builder<CoalescedRow> coalescedRows = new ImmutableList.Builder<>();
+    for (CallLogEntryModel model : currentModels) {
+      coalescedRows.add(model.getCoalescedRow());
+    }
+
+    coalesingAnnotatedCallLogListener.listen(
+        getContext(),
+        callLogEntryModelFormatter.formatAll(coalescedRows.build()),
+        reformattedModels -> {
+          // Don't overwrite rows delivered by the loader while the old rows were being formatted.
+          if (adapter.getCallLogEntryModels() == currentModels) {
+            adapter.updateRows(reformattedModels);
+          }
+        },
+        throwable -> {
+          throw new AssertionError(throwable);
+        });
+  }
+
   /**
    * To be called when the fragment becomes hidden.
    *
@@ -222,15 +261,24 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
     recyclerView.addOnScrollListener(
         new RecyclerViewJankLogger(
             MetricsComponent.get(getContext()).metrics(), Metrics.NEW_CALL_LOG_JANK_EVENT_NAME));
+    recyclerView.addOnScrollListener(new NextPageScrollListener());
 
     emptyContentView = view.findViewById(R.id.new_call_log_empty_content_view);
     configureEmptyContentView();
 
+    // Formatting uses the activity so that resources are resolved with the activity's theme.
+    callLogEntryModelFormatter =
+        new CallLogEntryModelFormatter(Assert.isNotNull(getActivity()), System::currentTimeMillis);
+
     coalesingAnnotatedCallLogListener =
         DialerExecutorComponent.get(getContext())
             .createUiListener(
                 getChildFragmentManager(),
                 /* taskId = */ "NewCallLogFragment.coalescingAnnotatedCallLog");
+    nextPageListener =
+        DialerExecutorComponent.get(getContext())
+            .createUiListener(
+                getChildFragmentManager(), /* taskId = */ "NewCallLogFragment.loadingNextPage");
 
     if (PermissionsUtil.hasCallLogReadPermissions(getContext())) {
       getLoaderManager().restartLoader(LOADER_ID, null, this);
@@ -304,16 +352,32 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
       return;
     }
 
+    // Pages of the previous cursor still being coalesced are discarded when they complete.
+    pagedCursor = newCursor;
+    nextPageCursorPosition = CoalescedPage.NO_MORE_ROWS;
+    isLoadingNextPage = false;
+
     // Start combining adjacent rows which should be collapsed for display purposes.
-    // This is a time-consuming process so we will do it in the background.
-    ListenableFuture<ImmutableList<CoalescedRow>> coalescedRowsFuture =
-        CallLogDatabaseComponent.get(getContext()).coalescer().coalesce(newCursor);
+    // This is a time-consuming process so we will do it in the background, and only for the first
+    // page of rows. Further pages are coalesced as the user scrolls.
+    ListenableFuture<CoalescedPage> coalescedPageFuture =
+        CallLogDatabaseComponent.get(getContext())
+            .coalescer()
+            .coalesce(
+                newCursor,
+                /* startCursorPosition = */ 0,
+                PAGE_SIZE,
+                /* firstCoalescedRowId = */ 0);
 
     coalesingAnnotatedCallLogListener.listen(
         getContext(),
-        coalescedRowsFuture,
-        coalescedRows -> {
+        formatPage(coalescedPageFuture),
+        callLogEntryModels -> {
           LogUtil.i("NewCallLogFragment.onLoadFinished", "coalescing succeeded");
+          if (pagedCursor == newCursor) {
+            nextPageCursorPosition =
+                Futures.getUnchecked(coalescedPageFuture).getNextCursorPosition();
+          }
 
           // TODO(zachh): Handle empty cursor by showing empty view.
           if (recyclerView.getAdapter() == null) {
@@ -325,14 +389,15 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
             recyclerView.setAdapter(
                 new NewCallLogAdapter(
                     activity,
-                    coalescedRows,
+                    callLogEntryModels,
                     System::currentTimeMillis,
+                    callLogEntryModelFormatter,
                     PromotionComponent.get(getContext())
                         .promotionManager()
                         .getHighestPriorityPromotion(PromotionType.CARD)
                         .orElse(null)));
           } else {
-            ((NewCallLogAdapter) recyclerView.getAdapter()).updateRows(coalescedRows);
+            ((NewCallLogAdapter) recyclerView.getAdapter()).updateRows(callLogEntryModels);
           }
         },
         throwable -> {
@@ -348,9 +413,84 @@ public final class NewCallLogFragment extends Fragment implements LoaderCallback
         });
   }
 
+  /**
+   * Formats the coalesced rows in the background as well, so that binding a row only needs to
+   * assign precomputed values to its views.
+   */
+  private ListenableFuture<ImmutableList<CallLogEntryModel>> formatPage(
+      ListenableFuture<CoalescedPage> coalescedPageFuture) {
+    return Futures.transformAsync(
+        coalescedPageFuture,
+        coalescedPage -> callLogEntryModelFormatter.formatAll(coalescedPage.getCoalescedRows()),
+        MoreExecutors.directExecutor());
+  }
+
+  /** Coalesces the next page of {@link #pagedCursor} and appends it to the adapter. */
+  private void loadNextPage(NewCallLogAdapter adapter) {
+    Cursor cursor = Assert.isNotNull(pagedCursor);
+    ImmutableList<CallLogEntryModel> currentModels = adapter.getCallLogEntryModels();
+    LogUtil.i(
+        "NewCallLogFragment.loadNextPage",
+        "loading rows after %d, cursor position: %d",
+        currentModels.size(),
+        nextPageCursorPosition);
+    isLoadingNextPage = true;
+
+    ListenableFuture<CoalescedPage> coalescedPageFuture =
+        CallLogDatabaseComponent.get(getContext())
+            .coalescer()
+            .coalesce(cursor, nextPageCursorPosition, PAGE_SIZE, currentModels.size());
+
+    nextPageListener.listen(
+        getContext(),
+        formatPage(coalescedPageFuture),
+        pageModels -> {
+          if (pagedCursor != cursor) {
+            // The loader delivered new data, which is coalesced from its first page again.
+            return;
+          }
+          isLoadingNextPage = false;
+          // Only append the page to the rows it was coalesced after. Otherwise it is loaded again
+          // on the next scroll.
+          if (adapter != recyclerView.getAdapter()
+              || adapter.getCallLogEntryModels().size() != currentModels.size()) {
+            return;
+          }
+          nextPageCursorPosition =
+              Futures.getUnchecked(coalescedPageFuture).getNextCursorPosition();
+          adapter.appendRows(pageModels);
+        },
+        throwable -> {
+          // See the failure listener in onLoadFinished.
+          if (!(throwable instanceof Coalescer.ExpectedCoalescerException)) {
+            throw new AssertionError(throwable);
+          }
+        });
+  }
+
+  /** Loads the next page of rows when the user scrolls close to the end of the loaded ones. */
+  private final class NextPageScrollListener extends RecyclerView.OnScrollListener {
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+      if (pagedCursor == null
+          || nextPageCursorPosition == CoalescedPage.NO_MORE_ROWS
+          || isLoadingNextPage
+          || recyclerView.getAdapter() == null) {
+        return;
+      }
+      LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+      if (layoutManager.findLastVisibleItemPosition()
+          >= recyclerView.getAdapter().getItemCount() - NEXT_PAGE_THRESHOLD) {
+        loadNextPage((NewCallLogAdapter) recyclerView.getAdapter());
+      }
+    }
+  }
+
   @Override
   public void onLoaderReset(Loader<Cursor> loader) {
     LogUtil.enterBlock("NewCallLogFragment.onLoaderReset");
+    pagedCursor = null;
     recyclerView.setAdapter(null);
   }
 }
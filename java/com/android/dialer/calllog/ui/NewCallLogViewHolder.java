@@ -22,8 +22,6 @@ import android.support.annotation.ColorInt;
 import android.support.annotation.DrawableRes;
 import android.support.v7.widget.RecyclerView;
 import android.telecom.PhoneAccount;
-import android.telecom.PhoneAccountHandle;
-import android.text.TextUtils;
 import android.view.View;
 import android.view.View.AccessibilityDelegate;
 import android.view.accessibility.AccessibilityNodeInfo;
@@ -33,21 +31,11 @@ import android.widget.TextView;
 import com.android.dialer.calllog.model.CoalescedRow;
 import com.android.dialer.calllog.ui.NewCallLogAdapter.PopCounts;
 import com.android.dialer.calllog.ui.menu.NewCallLogMenu;
-import com.android.dialer.calllogutils.CallLogEntryDescriptions;
-import com.android.dialer.calllogutils.CallLogEntryText;
 import com.android.dialer.calllogutils.CallLogRowActions;
-import com.android.dialer.calllogutils.PhoneAccountUtils;
-import com.android.dialer.calllogutils.PhotoInfoBuilder;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
-import com.android.dialer.compat.telephony.TelephonyManagerCompat;
-import com.android.dialer.oem.MotorolaUtils;
-import com.android.dialer.phonenumberutil.PhoneNumberHelper;
-import com.android.dialer.telecom.TelecomUtil;
-import com.android.dialer.time.Clock;
 import com.android.dialer.widget.ContactPhotoView;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
-import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 
 /** {@link RecyclerView.ViewHolder} for the new call log. */
@@ -66,7 +54,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
   private final ImageView callButton;
   private final View callLogEntryRootView;
 
-  private final Clock clock;
+  private final CallLogEntryModelFormatter formatter;
   private final RealtimeRowProcessor realtimeRowProcessor;
   private final ExecutorService uiExecutorService;
   private final PopCounts popCounts;
@@ -76,7 +64,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
   NewCallLogViewHolder(
       Activity activity,
       View view,
-      Clock clock,
+      CallLogEntryModelFormatter formatter,
       RealtimeRowProcessor realtimeRowProcessor,
       PopCounts popCounts) {
     super(view);
@@ -93,21 +81,23 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     phoneAccountView = view.findViewById(R.id.phone_account);
     callButton = view.findViewById(R.id.call_button);
 
-    this.clock = clock;
+    this.formatter = formatter;
     this.realtimeRowProcessor = realtimeRowProcessor;
     this.popCounts = popCounts;
     uiExecutorService = DialerExecutorComponent.get(activity).uiExecutor();
   }
 
-  void bind(CoalescedRow coalescedRow) {
+  void bind(CallLogEntryModel model) {
+    CoalescedRow coalescedRow = model.getCoalescedRow();
+
     // The row ID is used to make sure async updates are applied to the correct views.
     currentRowId = coalescedRow.getId();
 
     // Even if there is additional real time processing necessary, we still want to immediately show
     // what information we have, rather than an empty card. For example, if CP2 information needs to
     // be queried on the fly, we can still show the phone number until the contact name loads.
-    displayRow(coalescedRow);
-    configA11yForRow(coalescedRow);
+    displayRow(model);
+    configA11yForRow(model);
 
     // Note: This leaks the view holder via the callback (which is an inner class), but this is OK
     // because we only create ~10 of them (and they'll be collected assuming all jobs finish).
@@ -117,12 +107,20 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
         uiExecutorService);
   }
 
-  private void displayRow(CoalescedRow row) {
+  /**
+   * Assigns the precomputed values in the provided {@link CallLogEntryModel} to the views.
+   *
+   * <p>All formatting is done by {@link CallLogEntryModelFormatter} ahead of time so nothing
+   * expensive should be done here.
+   */
+  private void displayRow(CallLogEntryModel model) {
+    CoalescedRow row = model.getCoalescedRow();
+
     // TODO(zachh): Handle RTL properly.
-    primaryTextView.setText(CallLogEntryText.buildPrimaryText(activity, row));
-    secondaryTextView.setText(CallLogEntryText.buildSecondaryTextForEntries(activity, clock, row));
+    primaryTextView.setText(model.getPrimaryText());
+    secondaryTextView.setText(model.getSecondaryText());
 
-    if (isUnreadMissedCall(row)) {
+    if (model.getIsUnreadMissedCall()) {
       primaryTextView.setTextAppearance(R.style.primary_textview_unread_call);
       callCountTextView.setTextAppearance(R.style.primary_textview_unread_call);
       secondaryTextView.setTextAppearance(R.style.secondary_textview_unread_call);
@@ -134,19 +132,18 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
       phoneAccountView.setTextAppearance(R.style.phoneaccount_textview);
     }
 
-    setNumberCalls(row);
-    setPhoto(row);
-    setFeatureIcons(row);
-    setCallTypeIcon(row);
-    setPhoneAccounts(row);
-    setCallButon(row);
+    setNumberCalls(model);
+    contactPhotoView.setPhoto(model.getPhotoInfo());
+    setFeatureIcons(model);
+    setCallTypeIcon(row, model.getIsUnreadMissedCall());
+    setPhoneAccount(model);
+    setCallButon(model);
 
     itemView.setOnClickListener(NewCallLogMenu.createOnClickListener(activity, row));
   }
 
-  private void configA11yForRow(CoalescedRow row) {
-    callLogEntryRootView.setContentDescription(
-        CallLogEntryDescriptions.buildDescriptionForEntry(activity, clock, row));
+  private void configA11yForRow(CallLogEntryModel model) {
+    callLogEntryRootView.setContentDescription(model.getContentDescription());
 
     // Inform a11y users that double tapping an entry now makes a call.
     // This will instruct TalkBack to say "double tap to call" instead of
@@ -166,37 +163,25 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
         });
   }
 
-  private void setNumberCalls(CoalescedRow row) {
-    int numberCalls = row.getCoalescedIds().getCoalescedIdCount();
-    if (numberCalls > 1) {
-      callCountTextView.setText(String.format(Locale.getDefault(), "(%d)", numberCalls));
+  private void setNumberCalls(CallLogEntryModel model) {
+    if (model.getCallCountText() != null) {
+      callCountTextView.setText(model.getCallCountText());
       callCountTextView.setVisibility(View.VISIBLE);
     } else {
       callCountTextView.setVisibility(View.GONE);
     }
   }
 
-  private boolean isUnreadMissedCall(CoalescedRow row) {
-    // Show missed call styling if the most recent call in the group was missed and it is still
-    // marked as not read. The "NEW" column is presumably used for notifications and voicemails
-    // only.
-    return row.getCallType() == Calls.MISSED_TYPE && !row.getIsRead();
-  }
-
-  private void setPhoto(CoalescedRow row) {
-    contactPhotoView.setPhoto(PhotoInfoBuilder.fromCoalescedRow(activity, row).build());
-  }
-
-  private void setFeatureIcons(CoalescedRow row) {
+  private void setFeatureIcons(CallLogEntryModel model) {
     ColorStateList colorStateList =
         ColorStateList.valueOf(
             activity.getColor(
-                isUnreadMissedCall(row)
+                model.getIsUnreadMissedCall()
                     ? R.color.feature_icon_unread_color
                     : R.color.feature_icon_read_color));
 
     // Handle HD Icon
-    if ((row.getFeatures() & Calls.FEATURES_HD_CALL) == Calls.FEATURES_HD_CALL) {
+    if (model.getShowHdIcon()) {
       hdIcon.setVisibility(View.VISIBLE);
       hdIcon.setImageTintList(colorStateList);
     } else {
@@ -204,7 +189,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     }
 
     // Handle Wifi Icon
-    if (MotorolaUtils.shouldShowWifiIconInCallLog(activity, row.getFeatures())) {
+    if (model.getShowWifiIcon()) {
       wifiIcon.setVisibility(View.VISIBLE);
       wifiIcon.setImageTintList(colorStateList);
     } else {
@@ -212,8 +197,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     }
 
     // Handle Assisted Dialing Icon
-    if ((row.getFeatures() & TelephonyManagerCompat.FEATURES_ASSISTED_DIALING)
-        == TelephonyManagerCompat.FEATURES_ASSISTED_DIALING) {
+    if (model.getShowAssistedDialIcon()) {
       assistedDialIcon.setVisibility(View.VISIBLE);
       assistedDialIcon.setImageTintList(colorStateList);
     } else {
@@ -221,7 +205,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     }
   }
 
-  private void setCallTypeIcon(CoalescedRow row) {
+  private void setCallTypeIcon(CoalescedRow row, boolean isUnreadMissedCall) {
     @DrawableRes int resId;
     switch (row.getCallType()) {
       case Calls.INCOMING_TYPE:
@@ -249,7 +233,7 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     }
     callTypeIcon.setImageResource(resId);
 
-    if (isUnreadMissedCall(row)) {
+    if (isUnreadMissedCall) {
       callTypeIcon.setImageTintList(
           ColorStateList.valueOf(activity.getColor(R.color.call_type_icon_unread_color)));
     } else {
@@ -258,23 +242,13 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
     }
   }
 
-  private void setPhoneAccounts(CoalescedRow row) {
-    PhoneAccountHandle phoneAccountHandle =
-        TelecomUtil.composePhoneAccountHandle(
-            row.getPhoneAccountComponentName(), row.getPhoneAccountId());
-    if (phoneAccountHandle == null) {
+  private void setPhoneAccount(CallLogEntryModel model) {
+    if (model.getPhoneAccountLabel() == null) {
       phoneAccountView.setVisibility(View.GONE);
       return;
     }
 
-    String phoneAccountLabel = PhoneAccountUtils.getAccountLabel(activity, phoneAccountHandle);
-    if (TextUtils.isEmpty(phoneAccountLabel)) {
-      phoneAccountView.setVisibility(View.GONE);
-      return;
-    }
-
-    @ColorInt
-    int phoneAccountColor = PhoneAccountUtils.getAccountColor(activity, phoneAccountHandle);
+    @ColorInt int phoneAccountColor = model.getPhoneAccountColor();
     if (phoneAccountColor == PhoneAccount.NO_HIGHLIGHT_COLOR) {
       phoneAccountColor =
           activity
@@ -282,33 +256,25 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
               .getColor(R.color.dialer_secondary_text_color, activity.getTheme());
     }
 
-    phoneAccountView.setText(phoneAccountLabel);
+    phoneAccountView.setText(model.getPhoneAccountLabel());
     phoneAccountView.setTextColor(phoneAccountColor);
     phoneAccountView.setVisibility(View.VISIBLE);
   }
 
-  private void setCallButon(CoalescedRow row) {
-    if (!PhoneNumberHelper.canPlaceCallsTo(
-        row.getNumber().getNormalizedNumber(), row.getNumberPresentation())) {
+  private void setCallButon(CallLogEntryModel model) {
+    if (model.getCallButtonContentDescription() == null) {
       callButton.setVisibility(View.GONE);
       return;
     }
 
     callButton.setVisibility(View.VISIBLE);
-    if ((row.getFeatures() & Calls.FEATURES_VIDEO) == Calls.FEATURES_VIDEO) {
-      callButton.setImageResource(R.drawable.quantum_ic_videocam_vd_theme_24);
-      callButton.setContentDescription(
-          TextUtils.expandTemplate(
-              activity.getResources().getText(R.string.a11y_new_call_log_entry_video_call),
-              CallLogEntryText.buildPrimaryText(activity, row)));
-    } else {
-      callButton.setImageResource(R.drawable.quantum_ic_call_vd_theme_24);
-      callButton.setContentDescription(
-          TextUtils.expandTemplate(
-              activity.getResources().getText(R.string.a11y_new_call_log_entry_voice_call),
-              CallLogEntryText.buildPrimaryText(activity, row)));
-    }
+    callButton.setImageResource(
+        model.getIsVideoCall()
+            ? R.drawable.quantum_ic_videocam_vd_theme_24
+            : R.drawable.quantum_ic_call_vd_theme_24);
+    callButton.setContentDescription(model.getCallButtonContentDescription());
 
+    CoalescedRow row = model.getCoalescedRow();
     callButton.setOnClickListener(view -> CallLogRowActions.startCallForRow(activity, row));
   }
 
@@ -330,7 +296,9 @@ final class NewCallLogViewHolder extends RecyclerView.ViewHolder {
       // Only update the UI if the updated row differs from the original row (which has already
       // been displayed).
       if (!updatedRow.equals(originalRow)) {
-        displayRow(updatedRow);
+        // Only rows which need realtime processing get here, so formatting on the UI thread is
+        // acceptable.
+        displayRow(formatter.format(updatedRow));
         popCounts.popped++;
         return;
       }
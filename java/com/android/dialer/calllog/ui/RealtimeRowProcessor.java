@@ -40,6 +40,8 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -58,6 +60,12 @@ import javax.inject.Inject;
  * the CP2 information for all of them at once, and so information for those rows must be retrieved
  * at display time.
  *
+ * <p>Lookups requested while the same frame is being laid out are collected and dispatched together
+ * as one batch, in which CP2 looks up the valid numbers with a single query. Lookups for the same
+ * number share a single in-flight future, and results are cached until {@link #clearCache()}. This
+ * keeps a cold call log screen or a scroll jump from starting a separate lookup for every bound
+ * row.
+ *
  * <p>This class also updates {@link PhoneLookupHistory} with the results that it fetches.
  */
 public final class RealtimeRowProcessor {
@@ -74,6 +82,16 @@ public final class RealtimeRowProcessor {
 
   private final Map<DialerPhoneNumber, PhoneLookupInfo> cache = new ArrayMap<>();
 
+  /** Lookups which have been requested but not completed, keyed by the number being looked up. */
+  private final Map<DialerPhoneNumber, ListenableFuture<PhoneLookupInfo>> inFlightLookups =
+      new ArrayMap<>();
+
+  /** Lookups requested during the current frame which have not been dispatched yet. */
+  private final Map<DialerPhoneNumber, SettableFuture<PhoneLookupInfo>> pendingLookups =
+      new LinkedHashMap<>();
+
+  private final Runnable dispatchPendingLookupsRunnable = this::dispatchPendingLookups;
+
   private final Map<DialerPhoneNumber, PhoneLookupInfo> queuedPhoneLookupHistoryWrites =
       new LinkedHashMap<>(); // Keep the order so the most recent looked up value always wins
   private final Runnable writePhoneLookupHistoryRunnable = this::writePhoneLookupHistory;
@@ -106,16 +124,14 @@ public final class RealtimeRowProcessor {
       return Futures.immediateFuture(applyPhoneLookupInfoToRow(cachedPhoneLookupInfo, row));
     }
 
-    ListenableFuture<PhoneLookupInfo> phoneLookupInfoFuture =
-        compositePhoneLookup.lookup(row.getNumber());
+    ListenableFuture<PhoneLookupInfo> phoneLookupInfoFuture = inFlightLookups.get(row.getNumber());
+    if (phoneLookupInfoFuture == null) {
+      phoneLookupInfoFuture = queueLookup(row.getNumber());
+    }
     return Futures.transform(
         phoneLookupInfoFuture,
-        phoneLookupInfo -> {
-          queuePhoneLookupHistoryWrite(row.getNumber(), phoneLookupInfo);
-          cache.put(row.getNumber(), phoneLookupInfo);
-          return applyPhoneLookupInfoToRow(phoneLookupInfo, row);
-        },
-        uiExecutor /* ensures the cache is updated on a single thread */);
+        phoneLookupInfo -> applyPhoneLookupInfoToRow(phoneLookupInfo, row),
+        uiExecutor);
   }
 
   /** Clears the internal cache. */
@@ -125,6 +141,67 @@ public final class RealtimeRowProcessor {
     cache.clear();
   }
 
+  /**
+   * Queues a lookup for the provided number, to be dispatched together with the other lookups
+   * requested before the UI thread's message loop gets to run again (normally, all rows bound
+   * during the same frame). Later requests for the number share the lookup.
+   */
+  @MainThread
+  private ListenableFuture<PhoneLookupInfo> queueLookup(DialerPhoneNumber dialerPhoneNumber) {
+    Assert.isMainThread();
+    SettableFuture<PhoneLookupInfo> phoneLookupInfoFuture = SettableFuture.create();
+    inFlightLookups.put(dialerPhoneNumber, phoneLookupInfoFuture);
+    if (pendingLookups.isEmpty()) {
+      ThreadUtil.getUiThreadHandler().post(dispatchPendingLookupsRunnable);
+    }
+    pendingLookups.put(dialerPhoneNumber, phoneLookupInfoFuture);
+    return phoneLookupInfoFuture;
+  }
+
+  /**
+   * Looks up all the queued numbers with one batched {@link CompositePhoneLookup} lookup, which
+   * lets CP2 query the valid numbers of the batch together.
+   */
+  @MainThread
+  private void dispatchPendingLookups() {
+    Assert.isMainThread();
+    LogUtil.i(
+        "RealtimeRowProcessor.dispatchPendingLookups",
+        "dispatching %d lookups",
+        pendingLookups.size());
+
+    // Copy the batch so that lookups which complete immediately can safely queue new ones.
+    ImmutableMap<DialerPhoneNumber, SettableFuture<PhoneLookupInfo>> currentBatch =
+        ImmutableMap.copyOf(pendingLookups);
+    pendingLookups.clear();
+
+    ListenableFuture<ImmutableMap<DialerPhoneNumber, PhoneLookupInfo>> batchFuture =
+        Futures.transform(
+            compositePhoneLookup.lookup(currentBatch.keySet()),
+            phoneLookupInfos -> {
+              for (Entry<DialerPhoneNumber, PhoneLookupInfo> entry : phoneLookupInfos.entrySet()) {
+                queuePhoneLookupHistoryWrite(entry.getKey(), entry.getValue());
+                cache.put(entry.getKey(), entry.getValue());
+              }
+              return phoneLookupInfos;
+            },
+            uiExecutor /* ensures the cache is updated on a single thread */);
+    // Runs after the cache has been updated, so there is no window in which a number is neither
+    // cached nor in flight.
+    batchFuture.addListener(
+        () -> inFlightLookups.keySet().removeAll(currentBatch.keySet()), uiExecutor);
+    for (Entry<DialerPhoneNumber, SettableFuture<PhoneLookupInfo>> entry :
+        currentBatch.entrySet()) {
+      entry
+          .getValue()
+          .setFuture(
+              Futures.transform(
+                  batchFuture,
+                  phoneLookupInfos -> phoneLookupInfos.get(entry.getKey()),
+                  MoreExecutors.directExecutor()));
+    }
+  }
+
   @MainThread
   private void queuePhoneLookupHistoryWrite(
       DialerPhoneNumber dialerPhoneNumber, PhoneLookupInfo phoneLookupInfo) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring buffer of the most recent {@link LogUtil} calls which were logged to logcat, which can be
+ * dumped on demand (e.g. with the "logs" command line command). Calls at disabled levels are not
+ * recorded, so the buffer costs them nothing and holds nothing that logcat would not show.
+ *
+ * <p>Entries keep the message template and references to its arguments, which are only formatted
+ * when dumped. Recording does not lock: each call claims the next slot with an atomic counter and
+ * overwrites the oldest entry.
+ */
+public final class LogBuffer {
+
+  private static final int CAPACITY = 128;
+  private static final String LEVELS = "??VDIWEA";
+
+  private static final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+  private static final AtomicLong nextSequence = new AtomicLong();
+
+  private LogBuffer() {}
+
+  static void add(
+      int level, @NonNull String localTag, @Nullable String msg, @Nullable Object[] args) {
+    long sequence = nextSequence.getAndIncrement();
+    entries.set(
+        (int) (sequence % CAPACITY),
+        new Entry(sequence, System.currentTimeMillis(), level, localTag, msg, args));
+  }
+
+  /** @return the recorded entries, oldest first, one per line. */
+  @NonNull
+  public static String dump() {
+    long end = nextSequence.get();
+    SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+    StringBuilder builder = new StringBuilder();
+    for (long sequence = Math.max(0, end - CAPACITY); sequence < end; sequence++) {
+      Entry entry = entries.get((int) (sequence % CAPACITY));
+      // Skip slots which are not written yet, or were overwritten by newer entries.
+      if (entry == null || entry.sequence != sequence) {
+        continue;
+      }
+      builder
+          .append(dateFormat.format(new Date(entry.timeMillis)))
+          .append(' ')
+          .append(entry.level < LEVELS.length() ? LEVELS.charAt(entry.level) : '?')
+          .append(' ')
+          .append(format(entry))
+          .append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static String format(Entry entry) {
+    try {
+      return LogUtil.formatMessage(entry.localTag, entry.msg, entry.args);
+    } catch (RuntimeException e) {
+      // Arguments may have changed since they were logged, e.g. collections modified concurrently.
+      return LogUtil.formatMessage(entry.localTag, entry.msg, new Object[0]);
+    }
+  }
+
+  /**
+   * A recorded call. The arguments are referenced as passed and are not copied; they stay
+   * reachable until the entry is overwritten.
+   */
+  private static final class Entry {
+    final long sequence;
+    final long timeMillis;
+    final int level;
+    @NonNull final String localTag;
+    @Nullable final String msg;
+    @Nullable final Object[] args;
+
+    Entry(
+        long sequence,
+        long timeMillis,
+        int level,
+        @NonNull String localTag,
+        @Nullable String msg,
+        @Nullable Object[] args) {
+      this.sequence = sequence;
+      this.timeMillis = timeMillis;
+      this.level = level;
+      this.localTag = localTag;
+      this.msg = msg;
+      this.args = args;
+    }
+  }
+}
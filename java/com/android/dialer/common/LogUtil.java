@@ -202,16 +202,20 @@ public class LogUtil {
       @NonNull String localTag,
       @Nullable String msg,
       @Nullable Object... args) {
-    // Formatted message is computed lazily if required.
-    String formattedMsg;
-    // Either null is passed as a single argument or more than one argument is passed.
-    boolean hasArgs = args == null || args.length > 0;
     if ((level >= android.util.Log.INFO) || android.util.Log.isLoggable(tag, level)) {
-      formattedMsg = localTag;
-      if (!TextUtils.isEmpty(msg)) {
-        formattedMsg += SEPARATOR + (hasArgs ? String.format(msg, args) : msg);
-      }
-      android.util.Log.println(level, tag, formattedMsg);
+      // Recorded unformatted, the buffer only formats the message if it is dumped.
+      LogBuffer.add(level, localTag, msg, args);
+      android.util.Log.println(level, tag, formatMessage(localTag, msg, args));
     }
   }
+
+  static String formatMessage(
+      @NonNull String localTag, @Nullable String msg, @Nullable Object... args) {
+    if (TextUtils.isEmpty(msg)) {
+      return localTag;
+    }
+    // Either null is passed as a single argument or more than one argument is passed.
+    boolean hasArgs = args == null || args.length > 0;
+    return localTag + SEPARATOR + (hasArgs ? String.format(msg, args) : msg);
+  }
 }
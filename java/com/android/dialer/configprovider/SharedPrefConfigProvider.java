@@ -20,12 +20,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.support.annotation.Nullable;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.storage.StorageComponent;
 import com.android.dialer.storage.Unencrypted;
 import com.android.dialer.strictmode.StrictModeUtils;
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 
 /**
@@ -48,15 +52,32 @@ import javax.inject.Inject;
  *   adb shell cat \
  *     /data/user_de/0/com.android.dialer/shared_prefs/com.android.dialer_preferences.xml
  * </pre>
+ *
+ * <p>Flags are read from an immutable copy of all the config values, so that frequent reads are a
+ * map lookup without building the prefixed key or touching StrictMode. The copy is replaced when
+ * the shared preferences change.
  */
 public class SharedPrefConfigProvider implements ConfigProvider {
   private static final String PREF_PREFIX = "config_provider_prefs_";
 
   private final SharedPreferences sharedPreferences;
 
+  /** Config values by unprefixed key, or null until first read. */
+  private final AtomicReference<ImmutableMap<String, Object>> snapshot = new AtomicReference<>();
+
+  /** Kept as a field as shared preferences only hold weak references to listeners. */
+  private final OnSharedPreferenceChangeListener changeListener =
+      (prefs, key) -> {
+        // key is null when the preferences are cleared.
+        if (key == null || key.startsWith(PREF_PREFIX)) {
+          snapshot.set(readSnapshot());
+        }
+      };
+
   @Inject
   SharedPrefConfigProvider(@Unencrypted SharedPreferences sharedPreferences) {
     this.sharedPreferences = sharedPreferences;
+    sharedPreferences.registerOnSharedPreferenceChangeListener(changeListener);
   }
 
   /** Service to write values into {@link SharedPrefConfigProvider} using adb. */
@@ -108,22 +129,43 @@ public class SharedPrefConfigProvider implements ConfigProvider {
 
   @Override
   public String getString(String key, String defaultValue) {
-    // Reading shared prefs on the main thread is generally safe since a single instance is cached.
-    return StrictModeUtils.bypass(
-        () -> sharedPreferences.getString(PREF_PREFIX + key, defaultValue));
+    Object value = getSnapshot().get(key);
+    return value instanceof String ? (String) value : defaultValue;
   }
 
   @Override
   public long getLong(String key, long defaultValue) {
-    // Reading shared prefs on the main thread is generally safe since a single instance is cached.
-    return StrictModeUtils.bypass(() -> sharedPreferences.getLong(PREF_PREFIX + key, defaultValue));
+    Object value = getSnapshot().get(key);
+    return value instanceof Long ? (Long) value : defaultValue;
   }
 
   @Override
   public boolean getBoolean(String key, boolean defaultValue) {
+    Object value = getSnapshot().get(key);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  private ImmutableMap<String, Object> getSnapshot() {
+    ImmutableMap<String, Object> currentSnapshot = snapshot.get();
+    if (currentSnapshot == null) {
+      // A copy set by the listener meanwhile is at least as recent, and a copy read before a
+      // change is replaced by the listener once it runs.
+      snapshot.compareAndSet(null, readSnapshot());
+      currentSnapshot = snapshot.get();
+    }
+    return currentSnapshot;
+  }
+
+  private ImmutableMap<String, Object> readSnapshot() {
     // Reading shared prefs on the main thread is generally safe since a single instance is cached.
-    return StrictModeUtils.bypass(
-        () -> sharedPreferences.getBoolean(PREF_PREFIX + key, defaultValue));
+    Map<String, ?> allValues = StrictModeUtils.bypass(() -> sharedPreferences.getAll());
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    for (Map.Entry<String, ?> entry : allValues.entrySet()) {
+      if (entry.getKey().startsWith(PREF_PREFIX) && entry.getValue() != null) {
+        builder.put(entry.getKey().substring(PREF_PREFIX.length()), entry.getValue());
+      }
+    }
+    return builder.build();
   }
 
   private static SharedPreferences getSharedPrefs(Context appContext) {
@@ -52,10 +52,8 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
   private final @Header int header;
   private final OnContactSelectedListener onContactSelectedListener;
 
-  // List of contact sublist headers
-  private String[] headers = new String[0];
-  // Number of contacts that correspond to each header in {@code headers}.
-  private int[] counts = new int[0];
+  // Contact sublist headers and the positions they start at.
+  private ContactsSectionIndex sectionIndex = ContactsSectionIndex.EMPTY;
   // Cursor with list of contacts
   private Cursor cursor;
 
@@ -68,18 +66,13 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
   void updateCursor(Cursor cursor) {
     this.cursor = cursor;
-    headers = cursor.getExtras().getStringArray(Contacts.EXTRA_ADDRESS_BOOK_INDEX_TITLES);
-    counts = cursor.getExtras().getIntArray(Contacts.EXTRA_ADDRESS_BOOK_INDEX_COUNTS);
-    if (counts != null) {
-      int sum = 0;
-      for (int count : counts) {
-        sum += count;
-      }
-
-      if (sum != cursor.getCount()) {
-        LogUtil.e(
-            "ContactsAdapter", "Count sum (%d) != cursor count (%d).", sum, cursor.getCount());
-      }
+    sectionIndex = ContactsSectionIndex.fromCursor(cursor);
+    if (sectionIndex.getCount() != cursor.getCount()) {
+      LogUtil.e(
+          "ContactsAdapter",
+          "Count sum (%d) != cursor count (%d).",
+          sectionIndex.getCount(),
+          cursor.getCount());
     }
     notifyDataSetChanged();
   }
@@ -109,10 +102,7 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
     ContactViewHolder contactViewHolder = (ContactViewHolder) viewHolder;
     holderMap.put(contactViewHolder, position);
-    cursor.moveToPosition(position);
-    if (header != Header.NONE) {
-      cursor.moveToPrevious();
-    }
+    cursor.moveToPosition(getCursorPosition(position));
 
     String name = getDisplayName(cursor);
     String header = getHeaderString(position);
@@ -132,11 +122,8 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
             com.android.dialer.contactphoto.R.string.description_quick_contact_for, name);
     contactViewHolder.getPhoto().setContentDescription(photoDescription);
 
-    // Always show the view holder's header if it's the first item in the list. Otherwise, compare
-    // it to the previous element and only show the anchored header if the row elements fall into
-    // the same sublists.
-    boolean showHeader = position == 0 || !header.equals(getHeaderString(position - 1));
-    contactViewHolder.bind(header, name, contactUri, getContactId(cursor), showHeader);
+    contactViewHolder.bind(
+        header, name, contactUri, getContactId(cursor), isFirstInSection(position));
   }
 
   /**
@@ -161,10 +148,7 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
   void refreshHeaders() {
     for (ContactViewHolder holder : holderMap.keySet()) {
-      int position = holderMap.get(holder);
-      boolean showHeader =
-          position == 0 || !getHeaderString(position).equals(getHeaderString(position - 1));
-      int visibility = showHeader ? View.VISIBLE : View.INVISIBLE;
+      int visibility = isFirstInSection(holderMap.get(holder)) ? View.VISIBLE : View.INVISIBLE;
       holder.getHeaderView().setVisibility(visibility);
     }
   }
@@ -209,12 +193,25 @@ final class ContactsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
       }
       position--;
     }
+    return sectionIndex.getTitleForPosition(position);
+  }
 
-    int index = -1;
-    int sum = 0;
-    while (sum <= position) {
-      sum += counts[++index];
+  /**
+   * Returns whether the row at {@code position} starts a sublist, in which case its anchored header
+   * is shown.
+   */
+  private boolean isFirstInSection(int position) {
+    if (header != Header.NONE) {
+      if (position == 0) {
+        return true;
+      }
+      position--;
     }
-    return headers[index];
+    return sectionIndex.isFirstInSection(position);
+  }
+
+  /** Returns the position in {@link #cursor} of the contact shown at {@code position}. */
+  private int getCursorPosition(int position) {
+    return header == Header.NONE ? position : position - 1;
   }
 }
@@ -44,6 +44,9 @@ import android.widget.TextView;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.FragmentUtils;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
+import com.android.dialer.metrics.jank.RecyclerViewJankLogger;
 import com.android.dialer.performancereport.PerformanceReport;
 import com.android.dialer.util.DialerUtils;
 import com.android.dialer.util.IntentUtil;
@@ -92,6 +95,7 @@ public class ContactsFragment extends Fragment
   private LinearLayoutManager manager;
   private ContactsAdapter adapter;
   private EmptyContentView emptyContentView;
+  private RecyclerViewJankLogger jankLogger;
 
   private @Header int header;
 
@@ -185,6 +189,10 @@ public class ContactsFragment extends Fragment
         new ContactsAdapter(
             getContext(), header, FragmentUtils.getParent(this, OnContactSelectedListener.class));
     recyclerView.setAdapter(adapter);
+    jankLogger =
+        new RecyclerViewJankLogger(
+            MetricsComponent.get(getContext()).metrics(), Metrics.CONTACTS_JANK_EVENT_NAME);
+    recyclerView.addOnScrollListener(jankLogger);
     manager =
         new LinearLayoutManager(getContext()) {
           @Override
@@ -254,7 +262,7 @@ public class ContactsFragment extends Fragment
       adapter.updateCursor(cursor);
 
       PerformanceReport.logOnScrollStateChange(recyclerView);
-      fastScroller.setup(adapter, manager);
+      fastScroller.setup(adapter, manager, jankLogger);
     }
   }
 
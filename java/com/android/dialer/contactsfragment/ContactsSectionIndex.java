@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dialer.contactsfragment;
+
+import android.database.Cursor;
+import android.os.Bundle;
+import android.provider.ContactsContract.Contacts;
+import android.support.annotation.Nullable;
+
+/**
+ * Address book index of a contacts cursor, mapping cursor positions to the sublist headers shown by
+ * {@link ContactsAdapter} and back.
+ *
+ * <p>The start position of every section is computed once when the cursor is loaded, so lookups are
+ * a binary search instead of summing the section counts or moving the cursor.
+ */
+final class ContactsSectionIndex {
+
+  static final ContactsSectionIndex EMPTY = new ContactsSectionIndex(new String[0], new int[0]);
+
+  private final String[] titles;
+  /** Cursor position of the first contact of each section. */
+  private final int[] sectionStarts;
+  /** Number of contacts in all sections. */
+  private final int count;
+
+  private ContactsSectionIndex(String[] titles, int[] counts) {
+    this.titles = titles;
+    sectionStarts = new int[counts.length];
+    int sum = 0;
+    for (int i = 0; i < counts.length; i++) {
+      sectionStarts[i] = sum;
+      sum += counts[i];
+    }
+    count = sum;
+  }
+
+  /** Builds the index from {@link Contacts#EXTRA_ADDRESS_BOOK_INDEX_TITLES} and counts. */
+  static ContactsSectionIndex fromCursor(Cursor cursor) {
+    Bundle extras = cursor.getExtras();
+    @Nullable String[] titles = extras.getStringArray(Contacts.EXTRA_ADDRESS_BOOK_INDEX_TITLES);
+    @Nullable int[] counts = extras.getIntArray(Contacts.EXTRA_ADDRESS_BOOK_INDEX_COUNTS);
+    if (titles == null || counts == null) {
+      return EMPTY;
+    }
+    return new ContactsSectionIndex(titles, counts);
+  }
+
+  /** Returns the number of contacts covered by the index. */
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the section containing the contact at {@code position} in the cursor, or -1 if the
+   * index is empty.
+   */
+  int getSectionForPosition(int position) {
+    // Find the last section starting at or before position. Empty sections start at the same
+    // position as the section after them, so they are never returned for a contact.
+    int low = 0;
+    int high = sectionStarts.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sectionStarts[mid] <= position) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /** Returns the cursor position of the first contact in {@code section}. */
+  int getPositionForSection(int section) {
+    return sectionStarts[section];
+  }
+
+  /** Returns the title of the section containing {@code position}, or "" if there is none. */
+  String getTitleForPosition(int position) {
+    int section = getSectionForPosition(position);
+    return section < 0 ? "" : titles[section];
+  }
+
+  /** Returns whether the contact at {@code position} is the first one of its section. */
+  boolean isFirstInSection(int position) {
+    int section = getSectionForPosition(position);
+    return section < 0 || getPositionForSection(section) == position;
+  }
+}
@@ -25,6 +25,7 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
+import com.android.dialer.metrics.jank.RecyclerViewJankLogger;
 
 /** Widget to add fast scrolling to {@link ContactsFragment}. */
 public class FastScroller extends RelativeLayout {
@@ -33,6 +34,7 @@ public class FastScroller extends RelativeLayout {
 
   private ContactsAdapter adapter;
   private LinearLayoutManager layoutManager;
+  private RecyclerViewJankLogger jankLogger;
 
   private TextView container;
   private View scrollBar;
@@ -52,9 +54,13 @@ public class FastScroller extends RelativeLayout {
     scrollBar = findViewById(R.id.fast_scroller_scroll_bar);
   }
 
-  void setup(ContactsAdapter adapter, LinearLayoutManager layoutManager) {
+  void setup(
+      ContactsAdapter adapter,
+      LinearLayoutManager layoutManager,
+      RecyclerViewJankLogger jankLogger) {
     this.adapter = adapter;
     this.layoutManager = layoutManager;
+    this.jankLogger = jankLogger;
     setVisibility(VISIBLE);
   }
 
@@ -70,6 +76,7 @@ public class FastScroller extends RelativeLayout {
         dragStarted = true;
         container.setVisibility(VISIBLE);
         scrollBar.setSelected(true);
+        jankLogger.onDragStarted();
         // fall through
       case MotionEvent.ACTION_MOVE:
         setContainerAndScrollBarPosition(event.getY());
@@ -80,6 +87,7 @@ public class FastScroller extends RelativeLayout {
         dragStarted = false;
         container.setVisibility(INVISIBLE);
         scrollBar.setSelected(false);
+        jankLogger.onDragStopped();
         return true;
       default:
         return super.onTouchEvent(event);
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -32,6 +33,7 @@ import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Data;
 import android.provider.ContactsContract.Directory;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
@@ -40,10 +42,11 @@ import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.DefaultFutureCallback;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.common.concurrent.DialerFutureSerializer;
-import com.android.dialer.common.database.Selection;
 import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.contacts.resources.R;
 import com.android.dialer.database.FilteredNumberContract.FilteredNumberColumns;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
 import com.android.dialer.smartdial.util.SmartDialNameMatcher;
 import com.android.dialer.smartdial.util.SmartDialPrefix;
 import com.android.dialer.util.PermissionsUtil;
@@ -86,6 +89,18 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   private static final String DATABASE_VERSION_PROPERTY = "database_version";
   private static final int MAX_ENTRIES = 20;
 
+  /** Number of smart dial rows when the index statistics were last updated with ANALYZE. */
+  private static final String ANALYZED_ROW_COUNT_PROPERTY = "smartdial_analyzed_row_count";
+  /** Statistics are updated when the number of smart dial rows changed by more than 1/5. */
+  private static final int ANALYZE_ROW_COUNT_DRIFT_DIVISOR = 5;
+
+  /**
+   * Updates let queries waiting for the database run after this many rows, so that a large sync
+   * doesn't block smart dial searches until the whole update is done. Rows committed before an
+   * interrupted update are removed by {@link #removePotentiallyCorruptedContacts}.
+   */
+  private static final int ROWS_PER_BATCH = 200;
+
   private final Context context;
   private final DialerFutureSerializer dialerFutureSerializer = new DialerFutureSerializer();
 
@@ -385,7 +400,10 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
         return;
       }
 
+      SQLiteStatement smartDialDelete = compileDeleteByContactId(db, Tables.SMARTDIAL_TABLE);
+      SQLiteStatement prefixDelete = compileDeleteByContactId(db, Tables.PREFIX_TABLE);
       do {
+        yieldAfterBatch(db, deletedContactCursor);
         if (deletedContactCursor.isNull(DeleteContactQuery.DELETED_CONTACT_ID)) {
           LogUtil.i(
               "DialerDatabaseHelper.removeDeletedContacts",
@@ -394,20 +412,8 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
         }
 
         long deleteContactId = deletedContactCursor.getLong(DeleteContactQuery.DELETED_CONTACT_ID);
-
-        Selection smartDialSelection =
-            Selection.column(SmartDialDbColumns.CONTACT_ID).is("=", deleteContactId);
-        db.delete(
-            Tables.SMARTDIAL_TABLE,
-            smartDialSelection.getSelection(),
-            smartDialSelection.getSelectionArgs());
-
-        Selection prefixSelection =
-            Selection.column(PrefixColumns.CONTACT_ID).is("=", deleteContactId);
-        db.delete(
-            Tables.PREFIX_TABLE,
-            prefixSelection.getSelection(),
-            prefixSelection.getSelectionArgs());
+        deleteByContactId(smartDialDelete, deleteContactId);
+        deleteByContactId(prefixDelete, deleteContactId);
       } while (deletedContactCursor.moveToNext());
 
       db.setTransactionSuccessful();
@@ -467,8 +473,11 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   void removeUpdatedContacts(SQLiteDatabase db, Cursor updatedContactCursor) {
     db.beginTransaction();
     try {
+      SQLiteStatement smartDialDelete = compileDeleteByContactId(db, Tables.SMARTDIAL_TABLE);
+      SQLiteStatement prefixDelete = compileDeleteByContactId(db, Tables.PREFIX_TABLE);
       updatedContactCursor.moveToPosition(-1);
       while (updatedContactCursor.moveToNext()) {
+        yieldAfterBatch(db, updatedContactCursor);
         if (updatedContactCursor.isNull(UpdatedContactQuery.UPDATED_CONTACT_ID)) {
           LogUtil.i(
               "DialerDatabaseHelper.removeUpdatedContacts",
@@ -476,10 +485,9 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
           continue;
         }
 
-        final Long contactId = updatedContactCursor.getLong(UpdatedContactQuery.UPDATED_CONTACT_ID);
-
-        db.delete(Tables.SMARTDIAL_TABLE, SmartDialDbColumns.CONTACT_ID + "=" + contactId, null);
-        db.delete(Tables.PREFIX_TABLE, PrefixColumns.CONTACT_ID + "=" + contactId, null);
+        final long contactId = updatedContactCursor.getLong(UpdatedContactQuery.UPDATED_CONTACT_ID);
+        deleteByContactId(smartDialDelete, contactId);
+        deleteByContactId(prefixDelete, contactId);
       }
 
       db.setTransactionSuccessful();
@@ -548,6 +556,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
 
       updatedContactCursor.moveToPosition(-1);
       while (updatedContactCursor.moveToNext()) {
+        yieldAfterBatch(db, updatedContactCursor);
         insert.clearBindings();
 
         if (updatedContactCursor.isNull(PhoneQuery.PHONE_ID)) {
@@ -635,6 +644,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
       final SQLiteStatement insert = db.compileStatement(sqlInsert);
 
       while (nameCursor.moveToNext()) {
+        yieldAfterBatch(db, nameCursor);
         if (nameCursor.isNull(columnIndexContactId)) {
           LogUtil.i(
               "DialerDatabaseHelper.insertNamePrefixes",
@@ -660,6 +670,55 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
     }
   }
 
+  private static SQLiteStatement compileDeleteByContactId(SQLiteDatabase db, String table) {
+    // Both tables name the column contact_id.
+    return db.compileStatement(
+        "DELETE FROM " + table + " WHERE " + SmartDialDbColumns.CONTACT_ID + "=?");
+  }
+
+  private static void deleteByContactId(SQLiteStatement delete, long contactId) {
+    delete.bindLong(1, contactId);
+    delete.executeUpdateDelete();
+  }
+
+  /**
+   * Commits the current transaction and lets other threads use the database if they are waiting,
+   * once every {@link #ROWS_PER_BATCH} rows of {@code cursor}.
+   */
+  private static void yieldAfterBatch(SQLiteDatabase db, Cursor cursor) {
+    if (cursor.getPosition() > 0 && cursor.getPosition() % ROWS_PER_BATCH == 0) {
+      db.yieldIfContendedSafely();
+    }
+  }
+
+  /**
+   * Updates the index statistics, unless the number of smart dial rows is close to what it was
+   * the last time they were updated. The query plans only depend on the rough shape of the data,
+   * and ANALYZE reads every table and index.
+   */
+  private void analyzeIfStatisticsDrifted(SQLiteDatabase db, boolean forceUpdate) {
+    long rowCount = DatabaseUtils.queryNumEntries(db, Tables.SMARTDIAL_TABLE);
+    int analyzedRowCount = getPropertyAsInt(db, ANALYZED_ROW_COUNT_PROPERTY, -1);
+    if (!forceUpdate
+        && analyzedRowCount >= 0
+        && Math.abs(rowCount - analyzedRowCount) * ANALYZE_ROW_COUNT_DRIFT_DIVISOR
+            <= analyzedRowCount) {
+      LogUtil.i(
+          "DialerDatabaseHelper.analyzeIfStatisticsDrifted",
+          "skipped, %d rows, %d when analyzed",
+          rowCount,
+          analyzedRowCount);
+      return;
+    }
+    db.execSQL("ANALYZE " + Tables.SMARTDIAL_TABLE);
+    db.execSQL("ANALYZE " + Tables.PREFIX_TABLE);
+    db.execSQL("ANALYZE smartdial_contact_id_index");
+    db.execSQL("ANALYZE smartdial_last_update_index");
+    db.execSQL("ANALYZE nameprefix_index");
+    db.execSQL("ANALYZE nameprefix_contact_id_index");
+    setProperty(db, ANALYZED_ROW_COUNT_PROPERTY, String.valueOf(rowCount));
+  }
+
   /**
    * Updates the smart dial and prefix database. This method queries the Delta API to get changed
    * contacts since last update, and updates the records in smartdial database and prefix database
@@ -672,6 +731,37 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   public void updateSmartDialDatabase(boolean forceUpdate) {
     LogUtil.enterBlock("DialerDatabaseHelper.updateSmartDialDatabase");
 
+    Metrics metrics = MetricsComponent.get(context).metrics();
+    Integer timerId = metrics.startUnnamedTimer();
+    String timerEventName = null;
+    try {
+      timerEventName = updateSmartDialTables(forceUpdate);
+    } finally {
+      if (timerId != null) {
+        metrics.stopUnnamedTimer(
+            timerId, timerEventName != null ? timerEventName : Metrics.SMART_DIAL_FAILED_UPDATE);
+      }
+    }
+    if (timerEventName == null) {
+      return;
+    }
+
+    LogUtil.i("DialerDatabaseHelper.updateSmartDialDatabase", "broadcasting smart dial update");
+
+    // Notify content observers that smart dial database has been updated.
+    Intent intent = new Intent(ACTION_SMART_DIAL_UPDATED);
+    intent.setPackage(context.getPackageName());
+    context.sendBroadcast(intent);
+  }
+
+  /**
+   * Does the work of {@link #updateSmartDialDatabase(boolean)}.
+   *
+   * @return the name of the timer event for the update, or null if the contacts could not be
+   *     queried
+   */
+  @Nullable
+  private String updateSmartDialTables(boolean forceUpdate) {
     final SQLiteDatabase db = getWritableDatabase();
 
     LogUtil.v("DialerDatabaseHelper.updateSmartDialDatabase", "starting to update database");
@@ -701,6 +791,8 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
       stopWatch.lap("Queried the Contacts database");
     }
 
+    int updatedContactCount = 0;
+
     /** Removes contacts that have been deleted. */
     removeDeletedContacts(db, lastUpdateMillis);
     removePotentiallyCorruptedContacts(db, lastUpdateMillis);
@@ -732,9 +824,10 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
         LogUtil.e(
             "DialerDatabaseHelper.updateSmartDialDatabase",
             "smartDial query received null for cursor");
-        return;
+        return null;
       }
       try {
+        updatedContactCount = updatedContactCursor.getCount();
         removeUpdatedContacts(db, updatedContactCursor);
       } finally {
         updatedContactCursor.close();
@@ -761,9 +854,10 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
       LogUtil.e(
           "DialerDatabaseHelper.updateSmartDialDatabase",
           "smartDial query received null for cursor");
-      return;
+      return null;
     }
 
+    final int updatedPhoneCount = updatedPhoneCursor.getCount();
     try {
       /** Inserts recently updated phone numbers to the smartdial database. */
       insertUpdatedContactsAndNumberPrefix(db, updatedPhoneCursor, currentMillis);
@@ -862,12 +956,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
     }
 
     /** Updates the database index statistics. */
-    db.execSQL("ANALYZE " + Tables.SMARTDIAL_TABLE);
-    db.execSQL("ANALYZE " + Tables.PREFIX_TABLE);
-    db.execSQL("ANALYZE smartdial_contact_id_index");
-    db.execSQL("ANALYZE smartdial_last_update_index");
-    db.execSQL("ANALYZE nameprefix_index");
-    db.execSQL("ANALYZE nameprefix_contact_id_index");
+    analyzeIfStatisticsDrifted(db, lastUpdateMillis.equals("0"));
     if (DEBUG) {
       stopWatch.stopAndLog(TAG + "Finished updating index stats", 0);
     }
@@ -876,12 +965,14 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
     editor.putLong(LAST_UPDATED_MILLIS, currentMillis);
     editor.apply();
 
-    LogUtil.i("DialerDatabaseHelper.updateSmartDialDatabase", "broadcasting smart dial update");
-
-    // Notify content observers that smart dial database has been updated.
-    Intent intent = new Intent(ACTION_SMART_DIAL_UPDATED);
-    intent.setPackage(context.getPackageName());
-    context.sendBroadcast(intent);
+    LogUtil.i(
+        "DialerDatabaseHelper.updateSmartDialDatabase",
+        "%d updated contacts, %d updated numbers",
+        updatedContactCount,
+        updatedPhoneCount);
+    return lastUpdateMillis.equals("0")
+        ? Metrics.SMART_DIAL_FULL_UPDATE
+        : Metrics.SMART_DIAL_INCREMENTAL_UPDATE;
   }
 
   /**
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.lettertile;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Process wide cache of rendered letter tiles, shared by all {@link LetterTileDrawable}s.
+ *
+ * <p>Lists show many identical tiles, and notifications rasterize a new tile for every update.
+ * Rendering each distinct tile once and drawing the bitmap afterwards avoids repeating the text
+ * measurement and shape drawing.
+ */
+final class LetterTileBitmapCache {
+
+  private static final int MAX_SIZE_BYTES = 2 * 1024 * 1024;
+
+  /** Tiles which would take more than this fraction of the cache are not cached. */
+  private static final int MAX_ENTRY_FRACTION = 8;
+
+  private static final LruCache<Key, Bitmap> cache =
+      new LruCache<Key, Bitmap>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Bitmap value) {
+          return value.getByteCount();
+        }
+      };
+
+  private LetterTileBitmapCache() {}
+
+  /** @return whether a tile of the given size in pixels should be cached. */
+  static boolean isCacheable(int width, int height) {
+    return (long) width * height * 4 <= MAX_SIZE_BYTES / MAX_ENTRY_FRACTION;
+  }
+
+  @Nullable
+  static Bitmap get(Key key) {
+    return cache.get(key);
+  }
+
+  static void put(Key key, Bitmap bitmap) {
+    cache.put(key, bitmap);
+  }
+
+  /** Everything that affects how a tile is rendered. */
+  @AutoValue
+  abstract static class Key {
+
+    /** The letter, or 0 if the tile shows the avatar for the contact type instead. */
+    abstract char getLetter();
+
+    abstract int getColor();
+
+    abstract int getContactType();
+
+    abstract boolean getIsCircle();
+
+    abstract float getScale();
+
+    abstract float getOffset();
+
+    abstract int getWidth();
+
+    abstract int getHeight();
+
+    /** Resource values, which may change with the configuration. */
+    abstract int getTileFontColor();
+
+    abstract float getLetterToTileRatio();
+
+    static Key create(
+        char letter,
+        int color,
+        int contactType,
+        boolean isCircle,
+        float scale,
+        float offset,
+        int width,
+        int height,
+        int tileFontColor,
+        float letterToTileRatio) {
+      return new AutoValue_LetterTileBitmapCache_Key(
+          letter,
+          color,
+          contactType,
+          isCircle,
+          scale,
+          offset,
+          width,
+          height,
+          tileFontColor,
+          letterToTileRatio);
+    }
+  }
+}
@@ -90,6 +90,9 @@ public class LetterTileDrawable extends Drawable {
   /** Reusable components to avoid new allocations */
   private final Paint paint = new Paint();
 
+  /** Draws tiles from {@link LetterTileBitmapCache}. */
+  private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
   private final Rect rect = new Rect();
   private final char[] firstChar = new char[1];
 
@@ -116,6 +119,9 @@ public class LetterTileDrawable extends Drawable {
 
   private String displayName;
 
+  /** Tiles drawn with a color filter are not cached. */
+  private boolean hasColorFilter;
+
   public LetterTileDrawable(final Resources res) {
     colors = res.obtainTypedArray(R.array.letter_tile_colors);
     spamColor = res.getColor(R.color.spam_contact_background);
@@ -183,18 +189,60 @@ public class LetterTileDrawable extends Drawable {
     if (!isVisible() || bounds.isEmpty()) {
       return;
     }
-    // Draw letter tile.
-    drawLetterTile(canvas);
+    if (!isCacheable()) {
+      // Draw letter tile.
+      drawLetterTile(canvas);
+      return;
+    }
+    canvas.drawBitmap(getCachedTile(), bounds.left, bounds.top, bitmapPaint);
   }
 
+  /**
+   * Renders the tile into a bitmap. The bitmap may be shared with other callers and must not be
+   * modified or recycled.
+   */
   public Bitmap getBitmap(int width, int height) {
-    Bitmap bitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
     this.setBounds(0, 0, width, height);
+    if (isCacheable()) {
+      return getCachedTile();
+    }
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
     Canvas canvas = new Canvas(bitmap);
     this.draw(canvas);
     return bitmap;
   }
 
+  private boolean isCacheable() {
+    final Rect bounds = getBounds();
+    return !hasColorFilter && LetterTileBitmapCache.isCacheable(bounds.width(), bounds.height());
+  }
+
+  /** @return the tile for the current state and bounds, rendering it if it is not cached. */
+  private Bitmap getCachedTile() {
+    final Rect bounds = getBounds();
+    LetterTileBitmapCache.Key key =
+        LetterTileBitmapCache.Key.create(
+            letter == null ? 0 : letter,
+            color,
+            contactType,
+            isCircle,
+            scale,
+            offset,
+            bounds.width(),
+            bounds.height(),
+            tileFontColor,
+            letterToTileRatio);
+    Bitmap tile = LetterTileBitmapCache.get(key);
+    if (tile == null) {
+      tile = Bitmap.createBitmap(bounds.width(), bounds.height(), Config.ARGB_8888);
+      Canvas canvas = new Canvas(tile);
+      canvas.translate(-bounds.left, -bounds.top);
+      drawLetterTile(canvas);
+      LetterTileBitmapCache.put(key, tile);
+    }
+    return tile;
+  }
+
   private void drawLetterTile(final Canvas canvas) {
     // Draw background color.
     paint.setColor(color);
@@ -279,6 +327,7 @@ public class LetterTileDrawable extends Drawable {
   @Override
   public void setColorFilter(final ColorFilter cf) {
     paint.setColorFilter(cf);
+    hasColorFilter = cf != null;
   }
 
   @Override
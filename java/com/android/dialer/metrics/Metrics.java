@@ -29,15 +29,29 @@ public interface Metrics {
       "CallList.onCallAdded_To_InCallActivity.onCreate_Incoming";
   String ON_CALL_ADDED_TO_ON_INCALL_UI_SHOWN_OUTGOING =
       "CallList.onCallAdded_To_InCallActivity.onCreate_Outgoing";
+  String ON_CALL_ADDED_TO_CONTACT_NAME_SHOWN_INCOMING =
+      "CallList.onCallAdded_To_ContactInfoCache.nameFound_Incoming";
+  String ON_CALL_ADDED_TO_CONTACT_PHOTO_SHOWN_INCOMING =
+      "CallList.onCallAdded_To_ContactInfoCache.photoLoaded_Incoming";
   String DIALTACTS_ON_RESUME_MEMORY_EVENT_NAME = "GoogleDialtactsActivity.onResume";
   String OLD_MAIN_ACTIVITY_PEER_ON_RESUME_MEMORY_EVENT_NAME = "OldMainActivityPeer.onResume";
   String INCALL_ACTIVITY_ON_RESUME_MEMORY_EVENT_NAME = "IncallActivity.OnResume";
   String INCALL_ACTIVITY_ON_STOP_MEMORY_EVENT_NAME = "IncallActivity.OnStop";
   String OLD_CALL_LOG_JANK_EVENT_NAME = "OldCallLog.Jank";
   String NEW_CALL_LOG_JANK_EVENT_NAME = "NewCallLog.Jank";
+  String CONTACTS_JANK_EVENT_NAME = "Contacts.Jank";
+  String SEARCH_KEYSTROKE_TO_CONTACTS_RESULTS = "NewSearchFragment.KeystrokeToContactsResults";
+  String VIDEO_CALL_BLUR_BACKGROUND = "VideoCallFragment.BlurBackground";
+
+  // Timers of DialerDatabaseHelper.updateSmartDialDatabase. The number of updated contacts and
+  // numbers is only logged to LogUtil, as there are no counters to report it with.
+  String SMART_DIAL_FULL_UPDATE = "DialerDatabaseHelper.FullUpdate";
+  String SMART_DIAL_INCREMENTAL_UPDATE = "DialerDatabaseHelper.IncrementalUpdate";
+  String SMART_DIAL_FAILED_UPDATE = "DialerDatabaseHelper.FailedUpdate";
 
   // Events related to refreshing the annotated call log.
   String NEW_CALL_LOG_COALESCE = "NewCallLog.Coalesce";
+  String NEW_CALL_LOG_FORMAT_ROWS = "NewCallLog.FormatRows";
   String ANNOTATED_CALL_LOG_NOT_DIRTY = "RefreshAnnotatedCallLogReceiver.NotDirty";
   String ANNOTATED_CALL_LOG_CHANGES_NEEDED = "RefreshAnnotatedCallLogReceiver.ChangesNeeded";
   String ANNOTATED_LOG_NO_CHANGES_NEEDED = "RefreshAnnotatedCallLogReceiver.NoChangesNeeded";
@@ -68,6 +82,7 @@ public interface Metrics {
   String ON_SUCCESSFUL_BULK_UPDATE_TEMPLATE = "%s.OnSuccessfulBulkUpdate";
   String LOOKUP_FOR_CALL_TEMPLATE = "%s.LookupForCall";
   String LOOKUP_FOR_NUMBER_TEMPLATE = "%s.LookupForNumber";
+  String LOOKUP_FOR_NUMBERS_TEMPLATE = "%s.LookupForNumbers";
 
   /** Start a timer. */
   void startTimer(String timerEventName);
@@ -92,6 +107,9 @@ public interface Metrics {
   /** Stop a timer. */
   void stopTimer(String timerEventName);
 
+  /** Discard a timer started with {@link #startTimer(String)} without recording it. */
+  void cancelTimer(String timerEventName);
+
   /** Start a jank recorder. */
   void startJankRecorder(String eventName);
 
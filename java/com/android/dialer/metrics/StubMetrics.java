@@ -64,6 +64,13 @@ public final class StubMetrics implements Metrics {
         SystemClock.elapsedRealtime() - stubTimerEvent.startTime);
   }
 
+  @Override
+  public void cancelTimer(String timerEventName) {
+    if (namedEvents.remove(timerEventName) != null) {
+      LogUtil.d("StubMetrics.cancelTimer", "cancelled timer for %s", timerEventName);
+    }
+  }
+
   @Override
   public void stopUnnamedTimer(int timerId, String timerEventName) {
     long startTime =
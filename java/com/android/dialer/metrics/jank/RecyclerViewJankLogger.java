@@ -35,10 +35,27 @@ public final class RecyclerViewJankLogger extends OnScrollListener {
 
   @Override
   public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-    if (!isScrolling && newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+    if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+      onDragStarted();
+    } else if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+      onDragStopped();
+    }
+  }
+
+  /**
+   * Starts recording jank for a scroll the {@link RecyclerView} doesn't see as a drag, such as one
+   * driven by a fast scroller calling {@link RecyclerView.LayoutManager#scrollToPosition(int)}.
+   */
+  public void onDragStarted() {
+    if (!isScrolling) {
       isScrolling = true;
       metrics.startJankRecorder(eventName);
-    } else if (isScrolling && newState == RecyclerView.SCROLL_STATE_IDLE) {
+    }
+  }
+
+  /** Stops recording jank started by {@link #onDragStarted()} or a drag of the list. */
+  public void onDragStopped() {
+    if (isScrolling) {
       isScrolling = false;
       metrics.stopJankRecorder(eventName);
     }
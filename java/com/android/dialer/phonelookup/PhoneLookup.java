@@ -24,12 +24,15 @@ import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.location.GeoUtil;
 import com.android.dialer.phonenumberproto.DialerPhoneNumberUtil;
 import com.android.dialer.telecom.TelecomCallUtil;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Provides operations related to retrieving information about phone numbers.
@@ -82,6 +85,32 @@ public interface PhoneLookup<T> {
    */
   ListenableFuture<T> lookup(DialerPhoneNumber dialerPhoneNumber);
 
+  /**
+   * Returns a future containing a new info for each of the provided numbers, as {@link
+   * #lookup(DialerPhoneNumber)} would. The returned map must contain exactly the provided numbers.
+   *
+   * <p>The default implementation looks up each number separately. Implementations which can look
+   * up several numbers with fewer queries should override this method.
+   */
+  default ListenableFuture<ImmutableMap<DialerPhoneNumber, T>> lookup(
+      ImmutableSet<DialerPhoneNumber> dialerPhoneNumbers) {
+    ImmutableList<DialerPhoneNumber> numbers = dialerPhoneNumbers.asList();
+    List<ListenableFuture<T>> futures = new ArrayList<>();
+    for (DialerPhoneNumber dialerPhoneNumber : numbers) {
+      futures.add(lookup(dialerPhoneNumber));
+    }
+    return Futures.transform(
+        Futures.allAsList(futures),
+        infos -> {
+          ImmutableMap.Builder<DialerPhoneNumber, T> infoMap = ImmutableMap.builder();
+          for (int i = 0; i < numbers.size(); i++) {
+            infoMap.put(numbers.get(i), infos.get(i));
+          }
+          return infoMap.build();
+        },
+        MoreExecutors.directExecutor());
+  }
+
   /**
    * Returns a future which returns true if the information for any of the provided phone numbers
    * has changed, usually since {@link #onSuccessfulBulkUpdate()} was last invoked.
@@ -123,6 +123,51 @@ public final class CompositePhoneLookup {
     return combinedFuture;
   }
 
+  /**
+   * Delegates to a set of dependent lookups to build a complete {@link PhoneLookupInfo} for each of
+   * the provided numbers. Each dependent lookup looks up all the numbers together.
+   *
+   * <p>Note: If any of the dependent lookups fails, the returned future will also fail. If any of
+   * the dependent lookups does not complete, the returned future will also not complete.
+   */
+  @SuppressWarnings("unchecked")
+  public ListenableFuture<ImmutableMap<DialerPhoneNumber, PhoneLookupInfo>> lookup(
+      ImmutableSet<DialerPhoneNumber> dialerPhoneNumbers) {
+    List<ListenableFuture<ImmutableMap<DialerPhoneNumber, ?>>> futures = new ArrayList<>();
+    for (PhoneLookup phoneLookup : phoneLookups) {
+      ListenableFuture<ImmutableMap<DialerPhoneNumber, ?>> lookupFuture =
+          phoneLookup.lookup(dialerPhoneNumbers);
+      String eventName =
+          String.format(Metrics.LOOKUP_FOR_NUMBERS_TEMPLATE, phoneLookup.getLoggingName());
+      futureTimer.applyTiming(lookupFuture, eventName);
+      futures.add(lookupFuture);
+    }
+    ListenableFuture<ImmutableMap<DialerPhoneNumber, PhoneLookupInfo>> combinedFuture =
+        Futures.transform(
+            Futures.allAsList(futures),
+            allMaps -> {
+              Preconditions.checkNotNull(allMaps);
+              ImmutableMap.Builder<DialerPhoneNumber, PhoneLookupInfo> combinedMap =
+                  ImmutableMap.builder();
+              for (DialerPhoneNumber dialerPhoneNumber : dialerPhoneNumbers) {
+                Builder combinedInfo = PhoneLookupInfo.newBuilder();
+                for (int i = 0; i < allMaps.size(); i++) {
+                  phoneLookups
+                      .get(i)
+                      .setSubMessage(
+                          combinedInfo,
+                          Preconditions.checkNotNull(allMaps.get(i).get(dialerPhoneNumber)));
+                }
+                combinedMap.put(dialerPhoneNumber, combinedInfo.build());
+              }
+              return combinedMap.build();
+            },
+            lightweightExecutorService);
+    String eventName = String.format(Metrics.LOOKUP_FOR_NUMBERS_TEMPLATE, getLoggingName());
+    futureTimer.applyTiming(combinedFuture, eventName);
+    return combinedFuture;
+  }
+
   /** Combines a list of sub-message futures into a future for {@link PhoneLookupInfo}. */
   @SuppressWarnings({"unchecked", "rawtype"})
   private ListenableFuture<PhoneLookupInfo> combineSubMessageFutures(
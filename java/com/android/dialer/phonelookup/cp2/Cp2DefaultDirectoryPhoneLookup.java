@@ -102,6 +102,80 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
     return backgroundExecutorService.submit(() -> lookupInternal(dialerPhoneNumber));
   }
 
+  /**
+   * Looks up the valid numbers with a single query of the PHONE table, and each invalid number with
+   * a query of PHONE_LOOKUP, all in one background task.
+   */
+  @Override
+  public ListenableFuture<ImmutableMap<DialerPhoneNumber, Cp2Info>> lookup(
+      ImmutableSet<DialerPhoneNumber> dialerPhoneNumbers) {
+    if (!PermissionsUtil.hasContactsReadPermissions(appContext)) {
+      return Futures.immediateFuture(
+          Maps.toMap(dialerPhoneNumbers, unused -> Cp2Info.getDefaultInstance()));
+    }
+    return backgroundExecutorService.submit(() -> lookupAllInternal(dialerPhoneNumbers));
+  }
+
+  private ImmutableMap<DialerPhoneNumber, Cp2Info> lookupAllInternal(
+      ImmutableSet<DialerPhoneNumber> dialerPhoneNumbers) {
+    Map<DialerPhoneNumber, Set<Cp2ContactInfo>> cp2ContactInfos = new ArrayMap<>();
+    PartitionedNumbers partitionedNumbers = new PartitionedNumbers(dialerPhoneNumbers);
+
+    if (!partitionedNumbers.validE164Numbers().isEmpty()) {
+      try (Cursor cursor =
+          queryPhoneTableBasedOnE164(
+              Cp2Projections.getProjectionForPhoneTable(), partitionedNumbers.validE164Numbers())) {
+        if (cursor == null) {
+          LogUtil.w("Cp2DefaultDirectoryPhoneLookup.lookupAllInternal", "null cursor");
+        } else {
+          while (cursor.moveToNext()) {
+            addInfo(
+                cp2ContactInfos,
+                partitionedNumbers.dialerPhoneNumbersForValidE164(
+                    Cp2Projections.getNormalizedNumberFromCursor(cursor)),
+                ImmutableSet.of(
+                    Cp2Projections.buildCp2ContactInfoFromCursor(
+                        appContext, cursor, Directory.DEFAULT)));
+          }
+        }
+      }
+    }
+
+    for (String invalidNumber : partitionedNumbers.invalidNumbers()) {
+      if (invalidNumber.isEmpty()) {
+        continue;
+      }
+      try (Cursor cursor =
+          queryPhoneLookup(Cp2Projections.getProjectionForPhoneLookupTable(), invalidNumber)) {
+        if (cursor == null) {
+          LogUtil.w("Cp2DefaultDirectoryPhoneLookup.lookupAllInternal", "null cursor");
+          continue;
+        }
+        Set<DialerPhoneNumber> dialerPhoneNumbersForInvalid =
+            partitionedNumbers.dialerPhoneNumbersForInvalid(invalidNumber);
+        while (cursor.moveToNext()) {
+          addInfo(
+              cp2ContactInfos,
+              dialerPhoneNumbersForInvalid,
+              ImmutableSet.of(
+                  Cp2Projections.buildCp2ContactInfoFromCursor(
+                      appContext, cursor, Directory.DEFAULT)));
+        }
+      }
+    }
+
+    ImmutableMap.Builder<DialerPhoneNumber, Cp2Info> cp2Infos = ImmutableMap.builder();
+    for (DialerPhoneNumber dialerPhoneNumber : dialerPhoneNumbers) {
+      Set<Cp2ContactInfo> infos = cp2ContactInfos.get(dialerPhoneNumber);
+      cp2Infos.put(
+          dialerPhoneNumber,
+          infos == null
+              ? Cp2Info.getDefaultInstance()
+              : Cp2Info.newBuilder().addAllCp2ContactInfo(infos).build());
+    }
+    return cp2Infos.build();
+  }
+
   private Cp2Info lookupInternal(DialerPhoneNumber dialerPhoneNumber) {
     String number = dialerPhoneNumber.getNormalizedNumber();
     if (TextUtils.isEmpty(number)) {
@@ -17,11 +17,15 @@
 package com.android.dialer.phonelookup.cp2;
 
 import android.content.Context;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Directory;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.util.LruCache;
 import com.android.dialer.DialerPhoneNumber;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
@@ -38,9 +42,11 @@ import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.util.PermissionsUtil;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
@@ -48,13 +54,19 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 /**
  * PhoneLookup implementation for contacts in both local and remote directories other than the
  * default directory.
  *
  * <p>Contacts in these directories are accessible only by specifying a directory ID.
+ *
+ * <p>Querying remote directories is slow, so results (including empty ones) are cached for a
+ * configurable time, unless a directory could not be queried. The list of directory IDs is cached
+ * for the same time, or until the directories change.
  */
+@Singleton
 public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Info> {
 
   /** Config flag for timeout (in ms). */
@@ -62,6 +74,17 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
   static final String CP2_EXTENDED_DIRECTORY_PHONE_LOOKUP_TIMEOUT_MILLIS =
       "cp2_extended_directory_phone_lookup_timout_millis";
 
+  /**
+   * Config flag for how long (in ms) results and the directory IDs are cached. They are not cached
+   * if 0.
+   */
+  @VisibleForTesting
+  static final String CP2_EXTENDED_DIRECTORY_PHONE_LOOKUP_CACHE_TTL_MILLIS =
+      "cp2_extended_directory_phone_lookup_cache_ttl_millis";
+
+  private static final long DEFAULT_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final int CACHE_SIZE = 100;
+
   private final Context appContext;
   private final ConfigProvider configProvider;
   private final ListeningExecutorService backgroundExecutorService;
@@ -69,6 +92,29 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
   private final MissingPermissionsOperations missingPermissionsOperations;
   private final ScheduledExecutorService scheduledExecutorService;
 
+  /** Results by normalized number. */
+  private final LruCache<String, CachedCp2Info> cp2InfoCache = new LruCache<>(CACHE_SIZE);
+
+  private final ContentObserver directoryObserver =
+      new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+          LogUtil.i("Cp2ExtendedDirectoryPhoneLookup.onChange", "directories changed");
+          clearCaches();
+        }
+      };
+
+  // Guarded by this.
+  @Nullable private ListenableFuture<List<Long>> directoryIdsFuture;
+  private long directoryIdsExpirationMillis;
+  private boolean isDirectoryObserverRegistered;
+
+  /**
+   * Incremented when the caches are cleared, so that lookups started before then don't write their
+   * results back. Guarded by this.
+   */
+  private long cacheGeneration;
+
   @Inject
   Cp2ExtendedDirectoryPhoneLookup(
       @ApplicationContext Context appContext,
@@ -91,11 +137,39 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
       return Futures.immediateFuture(Cp2Info.getDefaultInstance());
     }
 
-    ListenableFuture<Cp2Info> cp2InfoFuture =
+    // Note: This loses country info when number is not valid.
+    String number = dialerPhoneNumber.getNormalizedNumber();
+    CachedCp2Info cachedCp2Info = cp2InfoCache.get(number);
+    if (cachedCp2Info != null) {
+      if (SystemClock.elapsedRealtime() < cachedCp2Info.expirationMillis) {
+        return Futures.immediateFuture(cachedCp2Info.cp2Info);
+      }
+      cp2InfoCache.remove(number);
+    }
+
+    long generation = getCacheGeneration();
+    ListenableFuture<DirectoryContactsResult> resultFuture =
         Futures.transformAsync(
-            queryCp2ForExtendedDirectoryIds(),
-            directoryIds -> queryCp2ForDirectoryContact(dialerPhoneNumber, directoryIds),
+            getExtendedDirectoryIds(),
+            directoryIds -> queryCp2ForDirectoryContact(number, directoryIds),
             lightweightExecutorService);
+    // Cached even if the lookup below times out, so that the next lookup can use the result.
+    Futures.addCallback(
+        resultFuture,
+        new FutureCallback<DirectoryContactsResult>() {
+          @Override
+          public void onSuccess(DirectoryContactsResult result) {
+            if (result.isComplete) {
+              cacheCp2Info(number, result.cp2Info, generation);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable throwable) {}
+        },
+        MoreExecutors.directExecutor());
+    ListenableFuture<Cp2Info> cp2InfoFuture =
+        Futures.transform(resultFuture, result -> result.cp2Info, MoreExecutors.directExecutor());
 
     long timeoutMillis =
         configProvider.getLong(CP2_EXTENDED_DIRECTORY_PHONE_LOOKUP_TIMEOUT_MILLIS, Long.MAX_VALUE);
@@ -119,6 +193,75 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
             lightweightExecutorService);
   }
 
+  private long getCacheTtlMillis() {
+    return configProvider.getLong(
+        CP2_EXTENDED_DIRECTORY_PHONE_LOOKUP_CACHE_TTL_MILLIS, DEFAULT_CACHE_TTL_MILLIS);
+  }
+
+  private synchronized long getCacheGeneration() {
+    return cacheGeneration;
+  }
+
+  private synchronized void cacheCp2Info(String number, Cp2Info cp2Info, long generation) {
+    long ttlMillis = getCacheTtlMillis();
+    if (ttlMillis > 0 && generation == cacheGeneration) {
+      cp2InfoCache.put(
+          number, new CachedCp2Info(cp2Info, SystemClock.elapsedRealtime() + ttlMillis));
+    }
+  }
+
+  /**
+   * Returns the cached directory IDs, querying them if they expired or the directories changed
+   * since. The future resolves to null if the directories could not be queried.
+   */
+  private synchronized ListenableFuture<List<Long>> getExtendedDirectoryIds() {
+    if (!isDirectoryObserverRegistered) {
+      appContext
+          .getContentResolver()
+          .registerContentObserver(
+              Directory.CONTENT_URI, /* notifyForDescendants = */ true, directoryObserver);
+      isDirectoryObserverRegistered = true;
+    }
+    if (directoryIdsFuture != null
+        && SystemClock.elapsedRealtime() >= directoryIdsExpirationMillis) {
+      directoryIdsFuture = null;
+    }
+    if (directoryIdsFuture == null) {
+      long generation = cacheGeneration;
+      ListenableFuture<List<Long>> future = queryCp2ForExtendedDirectoryIds();
+      directoryIdsFuture = future;
+      directoryIdsExpirationMillis = SystemClock.elapsedRealtime() + getCacheTtlMillis();
+      Futures.addCallback(
+          future,
+          new FutureCallback<List<Long>>() {
+            @Override
+            public void onSuccess(@Nullable List<Long> directoryIds) {
+              if (directoryIds == null) {
+                onFailure(new IllegalStateException("null cursor"));
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              // Query again next time.
+              synchronized (Cp2ExtendedDirectoryPhoneLookup.this) {
+                if (directoryIdsFuture == future && cacheGeneration == generation) {
+                  directoryIdsFuture = null;
+                }
+              }
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+    return directoryIdsFuture;
+  }
+
+  private synchronized void clearCaches() {
+    cacheGeneration++;
+    directoryIdsFuture = null;
+    cp2InfoCache.evictAll();
+  }
+
   private ListenableFuture<List<Long>> queryCp2ForExtendedDirectoryIds() {
     return backgroundExecutorService.submit(
         () -> {
@@ -135,7 +278,7 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
             if (cursor == null) {
               LogUtil.e(
                   "Cp2ExtendedDirectoryPhoneLookup.queryCp2ForExtendedDirectoryIds", "null cursor");
-              return directoryIds;
+              return null;
             }
 
             if (!cursor.moveToFirst()) {
@@ -158,15 +301,14 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
         });
   }
 
-  private ListenableFuture<Cp2Info> queryCp2ForDirectoryContact(
-      DialerPhoneNumber dialerPhoneNumber, List<Long> directoryIds) {
-    if (directoryIds.isEmpty()) {
-      return Futures.immediateFuture(Cp2Info.getDefaultInstance());
+  private ListenableFuture<DirectoryContactsResult> queryCp2ForDirectoryContact(
+      String number, @Nullable List<Long> directoryIds) {
+    if (directoryIds == null || directoryIds.isEmpty()) {
+      return Futures.immediateFuture(
+          new DirectoryContactsResult(
+              Cp2Info.getDefaultInstance(), /* isComplete = */ directoryIds != null));
     }
 
-    // Note: This loses country info when number is not valid.
-    String number = dialerPhoneNumber.getNormalizedNumber();
-
     List<ListenableFuture<Cp2Info>> cp2InfoFutures = new ArrayList<>();
     for (long directoryId : directoryIds) {
       cp2InfoFutures.add(queryCp2ForDirectoryContact(number, directoryId));
@@ -176,14 +318,25 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
         Futures.allAsList(cp2InfoFutures),
         cp2InfoList -> {
           Cp2Info.Builder cp2InfoBuilder = Cp2Info.newBuilder();
+          boolean isComplete = true;
           for (Cp2Info cp2Info : cp2InfoList) {
+            if (cp2Info == null) {
+              isComplete = false;
+              continue;
+            }
             cp2InfoBuilder.addAllCp2ContactInfo(cp2Info.getCp2ContactInfoList());
           }
-          return cp2InfoBuilder.build();
+          return new DirectoryContactsResult(cp2InfoBuilder.build(), isComplete);
         },
         lightweightExecutorService);
   }
 
+  /**
+   * Queries a single directory for contacts matching the number.
+   *
+   * <p>The future resolves to null if the directory returned a null cursor, which means the
+   * directory could not be queried.
+   */
   private ListenableFuture<Cp2Info> queryCp2ForDirectoryContact(String number, long directoryId) {
     return backgroundExecutorService.submit(
         () -> {
@@ -202,7 +355,7 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
                   "Cp2ExtendedDirectoryPhoneLookup.queryCp2ForDirectoryContact",
                   "null cursor returned when querying directory %d",
                   directoryId);
-              return cp2InfoBuilder.build();
+              return null;
             }
 
             if (!cursor.moveToFirst()) {
@@ -292,6 +445,7 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
 
   @Override
   public ListenableFuture<Void> clearData() {
+    clearCaches();
     return Futures.immediateFuture(null);
   }
 
@@ -299,4 +453,26 @@ public final class Cp2ExtendedDirectoryPhoneLookup implements PhoneLookup<Cp2Inf
   public String getLoggingName() {
     return "Cp2ExtendedDirectoryPhoneLookup";
   }
+
+  /** The contacts found in all directories, and whether every directory could be queried. */
+  private static final class DirectoryContactsResult {
+    final Cp2Info cp2Info;
+    final boolean isComplete;
+
+    DirectoryContactsResult(Cp2Info cp2Info, boolean isComplete) {
+      this.cp2Info = cp2Info;
+      this.isComplete = isComplete;
+    }
+  }
+
+  /** A result and when it stops being valid, in {@link SystemClock#elapsedRealtime()} time. */
+  private static final class CachedCp2Info {
+    final Cp2Info cp2Info;
+    final long expirationMillis;
+
+    CachedCp2Info(Cp2Info cp2Info, long expirationMillis) {
+      this.cp2Info = cp2Info;
+      this.expirationMillis = expirationMillis;
+    }
+  }
 }
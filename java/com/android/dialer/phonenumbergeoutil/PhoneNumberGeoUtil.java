@@ -22,4 +22,10 @@ import android.content.Context;
 public interface PhoneNumberGeoUtil {
   /** Returns geo location information for a phone number, e.g. California. */
   String getGeoDescription(Context context, String number, String countryIso);
+
+  /**
+   * Loads, in the background, the data needed to describe numbers of the user's region so that the
+   * first {@link #getGeoDescription(Context, String, String)} doesn't have to.
+   */
+  void warmUp(Context context);
 }
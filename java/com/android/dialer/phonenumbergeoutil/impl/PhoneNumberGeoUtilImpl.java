@@ -17,59 +17,111 @@
 package com.android.dialer.phonenumbergeoutil.impl;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
+import android.util.LruCache;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.i18n.LocaleUtils;
+import com.android.dialer.location.GeoUtil;
 import com.android.dialer.phonenumbergeoutil.PhoneNumberGeoUtil;
+import com.google.auto.value.AutoValue;
 import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberType;
 import com.google.i18n.phonenumbers.Phonenumber;
 import com.google.i18n.phonenumbers.geocoding.PhoneNumberOfflineGeocoder;
 import java.util.Locale;
 import javax.inject.Inject;
 
-/** Implementation of {@link PhoneNumberGeoUtil}. */
+/**
+ * Implementation of {@link PhoneNumberGeoUtil}.
+ *
+ * <p>Descriptions are cached per number, country and locale, as the same numbers are described
+ * again every time the call log, the blocked numbers or an incoming call are shown.
+ */
 public class PhoneNumberGeoUtilImpl implements PhoneNumberGeoUtil {
 
+  private static final int CACHE_SIZE = 256;
+
+  private final LruCache<Key, String> descriptionCache = new LruCache<>(CACHE_SIZE);
+
   @Inject
   public PhoneNumberGeoUtilImpl() {}
 
   @Override
   public String getGeoDescription(Context context, String number, String countryIso) {
-    LogUtil.v("PhoneNumberGeoUtilImpl.getGeoDescription", "" + LogUtil.sanitizePii(number));
+    LogUtil.v("PhoneNumberGeoUtilImpl.getGeoDescription", "%s", LogUtil.sanitizePii(number));
 
     if (TextUtils.isEmpty(number)) {
       return null;
     }
 
-    PhoneNumberUtil util = PhoneNumberUtil.getInstance();
-    PhoneNumberOfflineGeocoder geocoder = PhoneNumberOfflineGeocoder.getInstance();
-
     Locale locale = LocaleUtils.getLocale(context);
-    Phonenumber.PhoneNumber pn = null;
+    Key key = Key.create(number, countryIso, locale);
+    String cachedDescription = descriptionCache.get(key);
+    if (cachedDescription != null) {
+      return cachedDescription;
+    }
+
+    Phonenumber.PhoneNumber pn;
     try {
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription",
-          "parsing '" + LogUtil.sanitizePii(number) + "' for countryIso '" + countryIso + "'...");
-      pn = util.parse(number, countryIso);
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription",
-          "- parsed number: " + LogUtil.sanitizePii(pn));
+      pn = PhoneNumberUtil.getInstance().parse(number, countryIso);
     } catch (NumberParseException e) {
       LogUtil.e(
           "PhoneNumberGeoUtilImpl.getGeoDescription",
-          "getGeoDescription: NumberParseException for incoming number '"
-              + LogUtil.sanitizePii(number)
-              + "'");
+          "NumberParseException for incoming number '%s'",
+          LogUtil.sanitizePii(number));
+      return null;
     }
 
-    if (pn != null) {
-      String description = geocoder.getDescriptionForNumber(pn, locale);
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription", "- got description: '" + description + "'");
-      return description;
+    String description =
+        PhoneNumberOfflineGeocoder.getInstance().getDescriptionForNumber(pn, locale);
+    LogUtil.v("PhoneNumberGeoUtilImpl.getGeoDescription", "got description: '%s'", description);
+    descriptionCache.put(key, description);
+    return description;
+  }
+
+  @Override
+  public void warmUp(Context context) {
+    Context appContext = context.getApplicationContext();
+    DialerExecutorComponent.get(appContext)
+        .backgroundExecutor()
+        .submit(() -> loadGeocodingData(appContext));
+  }
+
+  /**
+   * Describes an example number of the user's region, which loads the phone number metadata and
+   * the geocoding data of the region's country code and the user's language.
+   */
+  @WorkerThread
+  private static void loadGeocodingData(Context context) {
+    String countryIso = GeoUtil.getCurrentCountryIso(context);
+    Phonenumber.PhoneNumber exampleNumber =
+        PhoneNumberUtil.getInstance()
+            .getExampleNumberForType(countryIso, PhoneNumberType.FIXED_LINE);
+    if (exampleNumber == null) {
+      LogUtil.i("PhoneNumberGeoUtilImpl.loadGeocodingData", "no example number for %s", countryIso);
+      return;
     }
+    PhoneNumberOfflineGeocoder.getInstance()
+        .getDescriptionForNumber(exampleNumber, LocaleUtils.getLocale(context));
+  }
 
-    return null;
+  /** Everything the description of a number depends on. */
+  @AutoValue
+  abstract static class Key {
+
+    abstract String getNumber();
+
+    @Nullable
+    abstract String getCountryIso();
+
+    abstract Locale getLocale();
+
+    static Key create(String number, @Nullable String countryIso, Locale locale) {
+      return new AutoValue_PhoneNumberGeoUtilImpl_Key(number, countryIso, locale);
+    }
   }
 }
@@ -29,4 +29,7 @@ public final class PhoneNumberGeoUtilStub implements PhoneNumberGeoUtil {
   public String getGeoDescription(Context context, String number, String countryIso) {
     return null;
   }
+
+  @Override
+  public void warmUp(Context context) {}
 }
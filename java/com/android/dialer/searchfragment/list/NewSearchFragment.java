@@ -56,6 +56,7 @@ import com.android.dialer.enrichedcall.EnrichedCallComponent;
 import com.android.dialer.enrichedcall.EnrichedCallManager.CapabilitiesListener;
 import com.android.dialer.logging.DialerImpression;
 import com.android.dialer.logging.Logger;
+import com.android.dialer.metrics.MetricsComponent;
 import com.android.dialer.precall.PreCall;
 import com.android.dialer.searchfragment.common.RowClickListener;
 import com.android.dialer.searchfragment.common.SearchCursor;
@@ -87,6 +88,9 @@ public final class NewSearchFragment extends Fragment
   // Since some of our queries can generate network requests, we should delay them until the user
   // stops typing to prevent generating too much network traffic.
   private static final int NETWORK_SEARCH_DELAY_MILLIS = 300;
+  // CP2 queries are local, so they only need to be delayed long enough to skip the intermediate
+  // queries of fast typists.
+  private static final int CP2_SEARCH_DELAY_MILLIS = 100;
   // To prevent constant capabilities updates refreshing the adapter, we want to add a delay between
   // updates so they are bundled together
   private static final int ENRICHED_CALLING_CAPABILITIES_UPDATED_DELAY = 400;
@@ -120,24 +124,7 @@ public final class NewSearchFragment extends Fragment
   // Information about all local & remote directories (including ID, display name, etc, but not
   // the contacts in them).
   private final List<Directory> directories = new ArrayList<>();
-  private final Runnable loaderCp2ContactsRunnable =
-      () -> {
-        if (getHost() != null) {
-          getLoaderManager().restartLoader(CONTACTS_LOADER_ID, null, this);
-        }
-      };
-  private final Runnable loadNearbyPlacesRunnable =
-      () -> {
-        if (getHost() != null) {
-          getLoaderManager().restartLoader(NEARBY_PLACES_LOADER_ID, null, this);
-        }
-      };
-  private final Runnable loadDirectoryContactsRunnable =
-      () -> {
-        if (getHost() != null) {
-          getLoaderManager().restartLoader(DIRECTORY_CONTACTS_LOADER_ID, null, this);
-        }
-      };
+  private SearchQueryScheduler queryScheduler;
   private final Runnable capabilitiesUpdatedRunnable = () -> adapter.notifyDataSetChanged();
 
   private Runnable updatePositionRunnable;
@@ -146,6 +133,32 @@ public final class NewSearchFragment extends Fragment
     return new NewSearchFragment();
   }
 
+  @Override
+  public void onCreate(@Nullable Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    queryScheduler =
+        new SearchQueryScheduler(
+            new SearchQueryScheduler.LoaderStarter() {
+              @Override
+              public boolean restartLoader(int loaderId) {
+                if (getHost() == null) {
+                  return false;
+                }
+                getLoaderManager().restartLoader(loaderId, null, NewSearchFragment.this);
+                return true;
+              }
+
+              @Nullable
+              @Override
+              public Loader<?> getLoader(int loaderId) {
+                return getHost() == null ? null : getLoaderManager().getLoader(loaderId);
+              }
+            },
+            MetricsComponent.get(getContext()).metrics(),
+            new int[] {CONTACTS_LOADER_ID, NEARBY_PLACES_LOADER_ID, DIRECTORY_CONTACTS_LOADER_ID},
+            CONTACTS_LOADER_ID);
+  }
+
   @Nullable
   @Override
   public View onCreateView(
@@ -229,6 +242,7 @@ public final class NewSearchFragment extends Fragment
 
     if (loader instanceof SearchContactsCursorLoader) {
       adapter.setContactsCursor((SearchCursor) cursor);
+      queryScheduler.onLoadFinished(CONTACTS_LOADER_ID);
 
     } else if (loader instanceof NearbyPlacesCursorLoader) {
       adapter.setNearbyPlacesCursor((SearchCursor) cursor);
@@ -275,6 +289,11 @@ public final class NewSearchFragment extends Fragment
       adapter.setQuery(query, rawNumber);
       adapter.setSearchActions(getActions());
       showLocationPermission();
+
+      // Results already loaded for the same query are still valid, so don't load them again.
+      if (!queryScheduler.onQueryChanged(query, isRegularSearch())) {
+        return;
+      }
       loadCp2ContactsCursor();
       loadNearbyPlacesCursor();
       loadDirectoryContactsCursors();
@@ -336,9 +355,7 @@ public final class NewSearchFragment extends Fragment
   @Override
   public void onDestroy() {
     super.onDestroy();
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loaderCp2ContactsRunnable);
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loadNearbyPlacesRunnable);
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loadDirectoryContactsRunnable);
+    queryScheduler.cancelPendingLoads();
     ThreadUtil.getUiThreadHandler().removeCallbacks(capabilitiesUpdatedRunnable);
   }
 
@@ -391,17 +408,11 @@ public final class NewSearchFragment extends Fragment
       return;
     }
 
-    // Cancel existing load if one exists.
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loadDirectoryContactsRunnable);
-    ThreadUtil.getUiThreadHandler()
-        .postDelayed(loadDirectoryContactsRunnable, NETWORK_SEARCH_DELAY_MILLIS);
+    queryScheduler.scheduleLoad(DIRECTORY_CONTACTS_LOADER_ID, NETWORK_SEARCH_DELAY_MILLIS);
   }
 
   private void loadCp2ContactsCursor() {
-    // Cancel existing load if one exists.
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loaderCp2ContactsRunnable);
-    ThreadUtil.getUiThreadHandler()
-        .postDelayed(loaderCp2ContactsRunnable, NETWORK_SEARCH_DELAY_MILLIS);
+    queryScheduler.scheduleLoad(CONTACTS_LOADER_ID, CP2_SEARCH_DELAY_MILLIS);
   }
 
   /**
@@ -421,14 +432,13 @@ public final class NewSearchFragment extends Fragment
     }
 
     // Cancel existing load if one exists.
-    ThreadUtil.getUiThreadHandler().removeCallbacks(loadNearbyPlacesRunnable);
+    queryScheduler.cancelPendingLoad(NEARBY_PLACES_LOADER_ID);
 
     // If nearby places is not enabled, do not try to load them.
     if (!PhoneDirectoryExtenderAccessor.get(getContext()).isEnabled(getContext())) {
       return;
     }
-    ThreadUtil.getUiThreadHandler()
-        .postDelayed(loadNearbyPlacesRunnable, NETWORK_SEARCH_DELAY_MILLIS);
+    queryScheduler.scheduleLoad(NEARBY_PLACES_LOADER_ID, NETWORK_SEARCH_DELAY_MILLIS);
   }
 
   private void requestLocationPermission() {
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.searchfragment.list;
+
+import android.content.Loader;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import com.android.dialer.metrics.Metrics;
+
+/**
+ * Single scheduler for the loaders restarted by {@link NewSearchFragment} when the query changes.
+ *
+ * <p>Every keystroke in the dialpad changes the query. When the query changes, loads which have
+ * been scheduled for the previous query are dropped and loads which are still running for it are
+ * cancelled, so that fast typists don't generate overlapping loader restarts. The time from the
+ * latest query change to the CP2 results for it being delivered is recorded to {@link Metrics}. The
+ * timer is started when the CP2 load is scheduled, and cancelled if that load is dropped before it
+ * delivers results.
+ */
+final class SearchQueryScheduler {
+
+  /** Restarts the loader with the given ID. */
+  interface LoaderStarter {
+    /** @return false if the loader could not be restarted, e.g. because the fragment is detached */
+    boolean restartLoader(int loaderId);
+
+    @Nullable
+    Loader<?> getLoader(int loaderId);
+  }
+
+  private final LoaderStarter loaderStarter;
+  private final Metrics metrics;
+  private final int[] queryLoaderIds;
+  private final int resultsLoaderId;
+
+  /** Runnables for loads which have been scheduled but not started, keyed by loader ID. */
+  private final SparseArray<Runnable> pendingLoads = new SparseArray<>();
+
+  @Nullable private String currentQuery;
+  private boolean currentQueryIsRegularSearch;
+  /** Whether {@link Metrics#SEARCH_KEYSTROKE_TO_CONTACTS_RESULTS} is running. */
+  private boolean isTimingQuery;
+  /** Whether the next load of the results loader is for a new query, so it should be timed. */
+  private boolean isQueryUntimed;
+
+  /**
+   * @param queryLoaderIds IDs of all loaders whose results depend on the query
+   * @param resultsLoaderId ID of the loader whose results complete the keystroke-to-results timer
+   */
+  SearchQueryScheduler(
+      LoaderStarter loaderStarter, Metrics metrics, int[] queryLoaderIds, int resultsLoaderId) {
+    this.loaderStarter = loaderStarter;
+    this.metrics = metrics;
+    this.queryLoaderIds = queryLoaderIds;
+    this.resultsLoaderId = resultsLoaderId;
+  }
+
+  /**
+   * Records a new query, dropping scheduled loads and cancelling running loads for the previous
+   * one.
+   *
+   * @param isRegularSearch whether the query was typed in the search bar rather than the dialpad
+   * @return false if the query is the same as the current one, in which case nothing is done
+   */
+  @MainThread
+  boolean onQueryChanged(@Nullable String query, boolean isRegularSearch) {
+    Assert.isMainThread();
+    if (currentQuery != null
+        && TextUtils.equals(query, currentQuery)
+        && isRegularSearch == currentQueryIsRegularSearch) {
+      return false;
+    }
+    currentQuery = query;
+    currentQueryIsRegularSearch = isRegularSearch;
+
+    cancelPendingLoads();
+    for (int loaderId : queryLoaderIds) {
+      Loader<?> loader = loaderStarter.getLoader(loaderId);
+      if (loader != null && loader.isStarted()) {
+        loader.cancelLoad();
+      }
+    }
+
+    isQueryUntimed = true;
+    return true;
+  }
+
+  /**
+   * Restarts the loader after {@code delayMillis}, unless the query changes or the load is
+   * scheduled again before then.
+   */
+  @MainThread
+  void scheduleLoad(int loaderId, long delayMillis) {
+    Assert.isMainThread();
+    // Replaces the scheduled load, which keeps the timer running.
+    removePendingLoad(loaderId);
+    Runnable load =
+        () -> {
+          pendingLoads.remove(loaderId);
+          if (!loaderStarter.restartLoader(loaderId) && loaderId == resultsLoaderId) {
+            cancelTimer();
+          }
+        };
+    pendingLoads.put(loaderId, load);
+    if (loaderId == resultsLoaderId && isQueryUntimed) {
+      isQueryUntimed = false;
+      isTimingQuery = true;
+      metrics.startTimer(Metrics.SEARCH_KEYSTROKE_TO_CONTACTS_RESULTS);
+    }
+    ThreadUtil.getUiThreadHandler().postDelayed(load, delayMillis);
+  }
+
+  /** To be called when a loader delivers its results. */
+  @MainThread
+  void onLoadFinished(int loaderId) {
+    Assert.isMainThread();
+    if (loaderId != resultsLoaderId || !isTimingQuery || pendingLoads.get(loaderId) != null) {
+      // Results for a superseded query.
+      return;
+    }
+    isTimingQuery = false;
+    metrics.stopTimer(Metrics.SEARCH_KEYSTROKE_TO_CONTACTS_RESULTS);
+    LogUtil.v("SearchQueryScheduler.onLoadFinished", "results delivered for current query");
+  }
+
+  /** Drops all scheduled loads, and the timer of the query they were scheduled for. */
+  @MainThread
+  void cancelPendingLoads() {
+    Assert.isMainThread();
+    for (int i = 0; i < pendingLoads.size(); i++) {
+      ThreadUtil.getUiThreadHandler().removeCallbacks(pendingLoads.valueAt(i));
+    }
+    pendingLoads.clear();
+    cancelTimer();
+  }
+
+  @MainThread
+  void cancelPendingLoad(int loaderId) {
+    if (removePendingLoad(loaderId) && loaderId == resultsLoaderId) {
+      cancelTimer();
+    }
+  }
+
+  /** @return whether a load was scheduled */
+  private boolean removePendingLoad(int loaderId) {
+    Runnable pendingLoad = pendingLoads.get(loaderId);
+    if (pendingLoad == null) {
+      return false;
+    }
+    ThreadUtil.getUiThreadHandler().removeCallbacks(pendingLoad);
+    pendingLoads.remove(loaderId);
+    return true;
+  }
+
+  private void cancelTimer() {
+    if (isTimingQuery) {
+      isTimingQuery = false;
+      metrics.cancelTimer(Metrics.SEARCH_KEYSTROKE_TO_CONTACTS_RESULTS);
+    }
+  }
+}
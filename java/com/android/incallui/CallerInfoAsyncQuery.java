@@ -23,9 +23,11 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.net.Uri;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.OperationCanceledException;
 import android.os.Trace;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Directory;
@@ -33,16 +35,24 @@ import android.support.annotation.MainThread;
 import android.support.annotation.RequiresPermission;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.phonenumbercache.CachedNumberLookupService;
 import com.android.dialer.phonenumbercache.CachedNumberLookupService.CachedContactInfo;
 import com.android.dialer.phonenumbercache.ContactInfoHelper;
 import com.android.dialer.phonenumbercache.PhoneNumberCache;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.strictmode.StrictModeUtils;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Helper class to make it easier to run asynchronous caller-id lookup queries.
@@ -78,6 +88,22 @@ public class CallerInfoAsyncQuery {
   /* Directory lookup related code - START */
   private static final String[] DIRECTORY_PROJECTION = new String[] {Directory._ID};
 
+  /**
+   * Whether the default directory and the other (e.g. work profile and enterprise) directories
+   * should be queried concurrently instead of one after the other.
+   */
+  private static final String CONFIG_ENABLE_PARALLEL_DIRECTORY_QUERY =
+      "enable_parallel_directory_caller_info_query";
+
+  /**
+   * How long to wait for the other directories after the default directory missed, when querying
+   * directories concurrently.
+   */
+  private static final String CONFIG_PARALLEL_DIRECTORY_QUERY_DEADLINE_MILLIS =
+      "parallel_directory_caller_info_query_deadline_millis";
+
+  private static final long PARALLEL_DIRECTORY_QUERY_DEADLINE_MILLIS_DEFAULT = 1000L;
+
   /** Private constructor for factory methods. */
   private CallerInfoAsyncQuery() {}
 
@@ -92,6 +118,11 @@ public class CallerInfoAsyncQuery {
     Log.d(LOG_TAG, "- number: " + info.phoneNumber);
     Log.d(LOG_TAG, "- cookie: " + cookie);
 
+    if (shouldQueryDirectoriesInParallel(context, info)) {
+      new ParallelDirectoryQuery(token, context, info, listener, cookie).start();
+      return;
+    }
+
     OnQueryCompleteListener contactsProviderQueryCompleteListener =
         new OnQueryCompleteListener() {
           @Override
@@ -215,6 +246,43 @@ public class CallerInfoAsyncQuery {
     return true;
   }
 
+  private static void addDirectoryCallerInfoIntoCache(
+      Context context, CallerInfo ci, long directoryId) {
+    CachedNumberLookupService cachedNumberLookupService =
+        PhoneNumberCache.get(context).getCachedNumberLookupService();
+    if (ci.contactExists && cachedNumberLookupService != null) {
+      // 1. Cache caller info
+      CachedContactInfo cachedContactInfo =
+          CallerInfoUtils.buildCachedContactInfo(cachedNumberLookupService, ci);
+      String directoryLabel = context.getString(R.string.directory_search_label);
+      cachedContactInfo.setDirectorySource(directoryLabel, directoryId);
+      cachedNumberLookupService.addContact(context, cachedContactInfo);
+
+      // 2. Cache photo
+      if (ci.contactDisplayPhotoUri != null && ci.normalizedNumber != null) {
+        try (InputStream in =
+            context.getContentResolver().openInputStream(ci.contactDisplayPhotoUri)) {
+          if (in != null) {
+            cachedNumberLookupService.addPhoto(context, ci.normalizedNumber, in);
+          }
+        } catch (IOException e) {
+          Log.e(LOG_TAG, "failed to fetch directory contact photo", e);
+        }
+      }
+    }
+  }
+
+  private static boolean shouldQueryDirectoriesInParallel(Context context, CallerInfo info) {
+    if (!ConfigProviderComponent.get(context)
+        .getConfigProvider()
+        .getBoolean(CONFIG_ENABLE_PARALLEL_DIRECTORY_QUERY, false)) {
+      return false;
+    }
+    // Emergency and voicemail numbers are answered without a query, so there is nothing to gain.
+    return !PhoneNumberHelper.isLocalEmergencyNumber(context, info.phoneNumber)
+        && !info.isVoiceMailNumber();
+  }
+
   private static long[] getDirectoryIds(Context context) {
     ArrayList<Long> results = new ArrayList<>();
 
@@ -307,36 +375,11 @@ public class CallerInfoAsyncQuery {
       // Don't call callback in synchronized block because mListener.onQueryComplete may
       // take long time to complete
       if (shouldCallListener && listener != null) {
-        addCallerInfoIntoCache(ci, directoryId);
+        addDirectoryCallerInfoIntoCache(context, ci, directoryId);
         listener.onQueryComplete(token, cookie, ci);
       }
     }
 
-    private void addCallerInfoIntoCache(CallerInfo ci, long directoryId) {
-      CachedNumberLookupService cachedNumberLookupService =
-          PhoneNumberCache.get(context).getCachedNumberLookupService();
-      if (ci.contactExists && cachedNumberLookupService != null) {
-        // 1. Cache caller info
-        CachedContactInfo cachedContactInfo =
-            CallerInfoUtils.buildCachedContactInfo(cachedNumberLookupService, ci);
-        String directoryLabel = context.getString(R.string.directory_search_label);
-        cachedContactInfo.setDirectorySource(directoryLabel, directoryId);
-        cachedNumberLookupService.addContact(context, cachedContactInfo);
-
-        // 2. Cache photo
-        if (ci.contactDisplayPhotoUri != null && ci.normalizedNumber != null) {
-          try (InputStream in =
-              context.getContentResolver().openInputStream(ci.contactDisplayPhotoUri)) {
-            if (in != null) {
-              cachedNumberLookupService.addPhoto(context, ci.normalizedNumber, in);
-            }
-          } catch (IOException e) {
-            Log.e(LOG_TAG, "failed to fetch directory contact photo", e);
-          }
-        }
-      }
-    }
-
     OnQueryCompleteListener newListener(long directoryId) {
       return new DirectoryQueryCompleteListener(directoryId);
     }
@@ -363,6 +406,306 @@ public class CallerInfoAsyncQuery {
     }
   }
 
+  /**
+   * Builds the {@link CallerInfo} for a lookup of {@code number} in {@code queryUri}, including the
+   * secondary lookup for numeric SIP usernames and the geocoded description.
+   */
+  @WorkerThread
+  private static CallerInfo buildCallerInfoFromCursor(
+      Context context, Uri queryUri, Cursor cursor, String number, String countryIso) {
+    CallerInfo callerInfo = CallerInfo.getCallerInfo(context, queryUri, cursor);
+    Log.d(LOG_TAG, "==> Got mCallerInfo: " + callerInfo);
+
+    CallerInfo newCallerInfo = CallerInfo.doSecondaryLookupIfNecessary(context, number, callerInfo);
+    if (newCallerInfo != callerInfo) {
+      callerInfo = newCallerInfo;
+      Log.d(LOG_TAG, "#####async contact look up with numeric username" + callerInfo);
+    }
+    callerInfo.countryIso = countryIso;
+
+    // Final step: look up the geocoded description.
+    if (ENABLE_UNKNOWN_NUMBER_GEO_DESCRIPTION) {
+      // Note we do this only if we *don't* have a valid name (i.e. if
+      // no contacts matched the phone number of the incoming call),
+      // since that's the only case where the incoming-call UI cares
+      // about this field.
+      //
+      // (TODO: But if we ever want the UI to show the geoDescription
+      // even when we *do* match a contact, we'll need to either call
+      // updateGeoDescription() unconditionally here, or possibly add a
+      // new parameter to CallerInfoAsyncQuery.startQuery() to force
+      // the geoDescription field to be populated.)
+
+      if (TextUtils.isEmpty(callerInfo.name)) {
+        // Actually when no contacts match the incoming phone number,
+        // the CallerInfo object is totally blank here (i.e. no name
+        // *or* phoneNumber).  So we need to pass in the queried number as
+        // a fallback number.
+        callerInfo.updateGeoDescription(context, number);
+      }
+    }
+
+    // Use the number entered by the user for display.
+    if (!TextUtils.isEmpty(number)) {
+      callerInfo.phoneNumber = number;
+    }
+    return callerInfo;
+  }
+
+  /**
+   * Queries the default directory and all other directories concurrently, instead of only querying
+   * the other directories after the default directory missed.
+   *
+   * <p>The default directory is queried right away, while the IDs of the other directories are
+   * looked up in the background; the other directories are queried once their IDs are known,
+   * unless the default directory already found a contact.
+   *
+   * <p>Results are ranked by priority: the default directory first, followed by the other
+   * directories in the order they are returned by the provider. The first directory that found a
+   * contact wins once all directories ranked above it have missed, and the remaining queries are
+   * cancelled with their {@link CancellationSignal}. The default directory is always waited for;
+   * once it has missed, the other directories get {@link
+   * #CONFIG_PARALLEL_DIRECTORY_QUERY_DEADLINE_MILLIS} to find a contact before the best result so
+   * far is delivered.
+   *
+   * <p>Unlike {@link AsyncQueryHandler}, which runs all queries on one shared worker thread, the
+   * queries are run on the background thread pool so they really do run concurrently.
+   */
+  private static final class ParallelDirectoryQuery {
+
+    private final int token;
+    private final Context context;
+    private final CallerInfo info;
+    private final OnQueryCompleteListener listener;
+    private final Object cookie;
+    private final ListeningExecutorService backgroundExecutor;
+    private final ListeningExecutorService uiExecutor;
+
+    /**
+     * Directory IDs by priority. The default directory is first, and the only one until the other
+     * directory IDs are loaded. Only accessed on the main thread.
+     */
+    private long[] directoryIds = {Directory.DEFAULT};
+
+    private boolean areDirectoryIdsLoaded;
+
+    private final List<ListenableFuture<CallerInfo>> futures = new ArrayList<>();
+    private final List<CancellationSignal> cancellationSignals = new ArrayList<>();
+    /** Results by priority, null while pending. Only accessed on the main thread. */
+    private CallerInfo[] results = new CallerInfo[1];
+
+    private boolean hasPendingDeadline;
+    private boolean deadlinePassed;
+    private boolean isListenerCalled;
+    private final Runnable onDeadline =
+        () -> {
+          deadlinePassed = true;
+          maybeDeliverResult();
+        };
+
+    ParallelDirectoryQuery(
+        int token,
+        Context context,
+        CallerInfo info,
+        OnQueryCompleteListener listener,
+        Object cookie) {
+      this.token = token;
+      this.context = context;
+      this.info = info;
+      this.listener = listener;
+      this.cookie = cookie;
+      this.backgroundExecutor = DialerExecutorComponent.get(context).backgroundExecutor();
+      this.uiExecutor = DialerExecutorComponent.get(context).uiExecutor();
+    }
+
+    @MainThread
+    void start() {
+      Trace.beginSection("CallerInfoAsyncQuery.ParallelDirectoryQuery.start");
+      startQuery(0 /* priority */);
+      Futures.addCallback(
+          backgroundExecutor.submit(() -> getDirectoryIds(context)),
+          new FutureCallback<long[]>() {
+            @Override
+            public void onSuccess(long[] otherDirectoryIds) {
+              onDirectoryIdsLoaded(otherDirectoryIds);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              Log.e(LOG_TAG, "ParallelDirectoryQuery failed to get directory IDs, " + throwable);
+              onDirectoryIdsLoaded(new long[0]);
+            }
+          },
+          uiExecutor);
+      Trace.endSection();
+    }
+
+    @MainThread
+    private void onDirectoryIdsLoaded(long[] otherDirectoryIds) {
+      areDirectoryIdsLoaded = true;
+      if (isListenerCalled) {
+        // The default directory found a contact, so the other directories are not needed.
+        return;
+      }
+      directoryIds = new long[otherDirectoryIds.length + 1];
+      directoryIds[0] = Directory.DEFAULT;
+      System.arraycopy(otherDirectoryIds, 0, directoryIds, 1, otherDirectoryIds.length);
+      results = Arrays.copyOf(results, directoryIds.length);
+      for (int i = 1; i < directoryIds.length; i++) {
+        startQuery(i);
+      }
+      maybeDeliverResult();
+    }
+
+    @MainThread
+    private void startQuery(int priority) {
+      Uri uri =
+          priority == 0
+              ? ContactInfoHelper.getContactInfoLookupUri(info.phoneNumber)
+              : ContactInfoHelper.getContactInfoLookupUri(
+                  info.phoneNumber, directoryIds[priority]);
+      CancellationSignal cancellationSignal = new CancellationSignal();
+      ListenableFuture<CallerInfo> future =
+          backgroundExecutor.submit(() -> query(uri, cancellationSignal));
+      futures.add(future);
+      cancellationSignals.add(cancellationSignal);
+      Futures.addCallback(
+          future,
+          new FutureCallback<CallerInfo>() {
+            @Override
+            public void onSuccess(CallerInfo callerInfo) {
+              results[priority] = callerInfo;
+              maybeDeliverResult();
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              if (isListenerCalled) {
+                // Cancelled because a result has already been delivered.
+                return;
+              }
+              Log.e(
+                  LOG_TAG,
+                  "ParallelDirectoryQuery failed, directoryId: "
+                      + directoryIds[priority]
+                      + ", "
+                      + throwable);
+              // Treated as a miss, so that the other directories can still deliver a result.
+              CallerInfo miss = CallerInfo.getCallerInfo(context, uri, null /* cursor */);
+              miss.countryIso = info.countryIso;
+              results[priority] = miss;
+              maybeDeliverResult();
+            }
+          },
+          uiExecutor);
+    }
+
+    @WorkerThread
+    private CallerInfo query(Uri uri, CancellationSignal cancellationSignal) {
+      Cursor cursor = null;
+      try {
+        try {
+          cursor =
+              context
+                  .getContentResolver()
+                  .query(
+                      uri,
+                      CallerInfo.getDefaultPhoneLookupProjection(),
+                      null,
+                      null,
+                      null,
+                      cancellationSignal);
+        } catch (OperationCanceledException e) {
+          Log.d(LOG_TAG, "Directory query cancelled");
+        } catch (Exception e) {
+          Log.e(LOG_TAG, "Exception thrown during directory query", e);
+        }
+        return buildCallerInfoFromCursor(context, uri, cursor, info.phoneNumber, info.countryIso);
+      } finally {
+        // The cursor may have been closed in CallerInfo.getCallerInfo()
+        if (cursor != null && !cursor.isClosed()) {
+          cursor.close();
+        }
+      }
+    }
+
+    @MainThread
+    private void maybeDeliverResult() {
+      if (isListenerCalled) {
+        return;
+      }
+      CallerInfo defaultDirectoryResult = results[0];
+      if (defaultDirectoryResult == null) {
+        return;
+      }
+      if (!defaultDirectoryResult.contactExists && !areDirectoryIdsLoaded) {
+        // The other directories have not been queried yet.
+        return;
+      }
+
+      // If no directory found a contact, the default directory's result (a miss) is delivered.
+      int winner = 0;
+      for (int i = 0; i < results.length; i++) {
+        if (results[i] == null) {
+          if (deadlinePassed) {
+            continue;
+          }
+          // A directory with a higher priority may still find a contact.
+          if (!hasPendingDeadline) {
+            startDeadline();
+          }
+          return;
+        }
+        if (results[i].contactExists) {
+          winner = i;
+          break;
+        }
+      }
+
+      isListenerCalled = true;
+      ThreadUtil.getUiThreadHandler().removeCallbacks(onDeadline);
+      for (ListenableFuture<CallerInfo> future : futures) {
+        // The background executor's threads are shared, so they must not be interrupted. Queries
+        // which are already running are stopped with their cancellation signal instead.
+        future.cancel(false /* mayInterruptIfRunning */);
+      }
+      for (CancellationSignal cancellationSignal : cancellationSignals) {
+        cancellationSignal.cancel();
+      }
+
+      boolean isDefaultDirectory = winner == 0;
+      CallerInfo callerInfo = results[winner];
+      long directoryId = directoryIds[winner];
+      Log.d(LOG_TAG, "ParallelDirectoryQuery done, directoryId: " + directoryId);
+      if (listener == null) {
+        return;
+      }
+      // OnQueryCompleteListener#onDataLoaded must be called on a worker thread, before
+      // OnQueryCompleteListener#onQueryComplete is called on the main thread.
+      backgroundExecutor.execute(
+          () -> {
+            if (!isDefaultDirectory) {
+              addDirectoryCallerInfoIntoCache(context, callerInfo, directoryId);
+            }
+            listener.onDataLoaded(token, cookie, callerInfo);
+            ThreadUtil.postOnUiThread(() -> listener.onQueryComplete(token, cookie, callerInfo));
+          });
+    }
+
+    @MainThread
+    private void startDeadline() {
+      hasPendingDeadline = true;
+      ThreadUtil.getUiThreadHandler()
+          .postDelayed(
+              onDeadline,
+              ConfigProviderComponent.get(context)
+                  .getConfigProvider()
+                  .getLong(
+                      CONFIG_PARALLEL_DIRECTORY_QUERY_DEADLINE_MILLIS,
+                      PARALLEL_DIRECTORY_QUERY_DEADLINE_MILLIS_DEFAULT));
+    }
+  }
+
   /** Our own implementation of the AsyncQueryHandler. */
   private static class CallerInfoAsyncQueryHandler extends AsyncQueryHandler {
 
@@ -482,43 +825,9 @@ public class CallerInfoAsyncQuery {
           } else if (cw.event == EVENT_VOICEMAIL_NUMBER) {
             callerInfo = new CallerInfo().markAsVoiceMail(queryContext);
           } else {
-            callerInfo = CallerInfo.getCallerInfo(queryContext, queryUri, cursor);
-            Log.d(this, "==> Got mCallerInfo: " + callerInfo);
-
-            CallerInfo newCallerInfo =
-                CallerInfo.doSecondaryLookupIfNecessary(queryContext, cw.number, callerInfo);
-            if (newCallerInfo != callerInfo) {
-              callerInfo = newCallerInfo;
-              Log.d(this, "#####async contact look up with numeric username" + callerInfo);
-            }
-            callerInfo.countryIso = cw.countryIso;
-
-            // Final step: look up the geocoded description.
-            if (ENABLE_UNKNOWN_NUMBER_GEO_DESCRIPTION) {
-              // Note we do this only if we *don't* have a valid name (i.e. if
-              // no contacts matched the phone number of the incoming call),
-              // since that's the only case where the incoming-call UI cares
-              // about this field.
-              //
-              // (TODO: But if we ever want the UI to show the geoDescription
-              // even when we *do* match a contact, we'll need to either call
-              // updateGeoDescription() unconditionally here, or possibly add a
-              // new parameter to CallerInfoAsyncQuery.startQuery() to force
-              // the geoDescription field to be populated.)
-
-              if (TextUtils.isEmpty(callerInfo.name)) {
-                // Actually when no contacts match the incoming phone number,
-                // the CallerInfo object is totally blank here (i.e. no name
-                // *or* phoneNumber).  So we need to pass in cw.number as
-                // a fallback number.
-                callerInfo.updateGeoDescription(queryContext, cw.number);
-              }
-            }
-
-            // Use the number entered by the user for display.
-            if (!TextUtils.isEmpty(cw.number)) {
-              callerInfo.phoneNumber = cw.number;
-            }
+            callerInfo =
+                buildCallerInfoFromCursor(
+                    queryContext, queryUri, cursor, cw.number, cw.countryIso);
           }
 
           Log.d(this, "constructing CallerInfo object for token: " + token);
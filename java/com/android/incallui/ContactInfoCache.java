@@ -44,6 +44,7 @@ import com.android.dialer.common.Assert;
 import com.android.dialer.common.concurrent.DialerExecutor;
 import com.android.dialer.common.concurrent.DialerExecutor.Worker;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.logging.ContactLookupResult;
 import com.android.dialer.logging.ContactSource;
 import com.android.dialer.oem.CequintCallerIdManager;
@@ -57,12 +58,16 @@ import com.android.dialer.util.MoreStrings;
 import com.android.incallui.CallerInfoAsyncQuery.OnQueryCompleteListener;
 import com.android.incallui.ContactsAsyncHelper.OnImageLoadCompleteListener;
 import com.android.incallui.bindings.PhoneNumberService;
+import com.android.incallui.call.CallList;
 import com.android.incallui.call.DialerCall;
 import com.android.incallui.incall.protocol.ContactPhotoType;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -76,6 +81,8 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
 
   private static final String TAG = ContactInfoCache.class.getSimpleName();
   private static final int TOKEN_UPDATE_PHOTO_FOR_CALL_STATE = 0;
+  /** How long a remote lookup which found nothing is remembered before the number is retried. */
+  private static final long REMOTE_LOOKUP_MISS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
   private static ContactInfoCache cache = null;
   private final Context context;
   private final PhoneNumberService phoneNumberService;
@@ -83,6 +90,12 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
   // worker thread.
   private final ConcurrentHashMap<String, ContactCacheEntry> infoMap = new ConcurrentHashMap<>();
   private final Map<String, Set<ContactInfoCacheCallback>> callBacks = new ArrayMap<>();
+  // Remote lookups are keyed by normalized number rather than by call, so that calls to the same
+  // number (e.g. call waiting, or a number being re-queried after it changed) share a single
+  // lookup. Only accessed on the main thread.
+  private final Map<String, List<PhoneNumberServiceListener>> inFlightRemoteLookups =
+      new ArrayMap<>();
+  private final Map<String, Long> remoteLookupMissTimestamps = new ArrayMap<>();
   private int queryId;
   private final DialerExecutor<CnapInformationWrapper> cachedNumberLookupExecutor;
 
@@ -612,10 +625,71 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
     clearCallbacks(callId);
   }
 
+  /**
+   * Starts a remote lookup for the provided number, or attaches the listener to the lookup already
+   * in flight for the same number.
+   */
+  @MainThread
+  private void startOrJoinRemoteLookup(String number, PhoneNumberServiceListener listener) {
+    Assert.isMainThread();
+    String key = getRemoteLookupKey(number);
+    List<PhoneNumberServiceListener> listeners = inFlightRemoteLookups.get(key);
+    if (listeners != null) {
+      Log.d(TAG, "Remote lookup for the same number already in flight, joining it.");
+      listeners.add(listener);
+      return;
+    }
+
+    listeners = new ArrayList<>();
+    listeners.add(listener);
+    inFlightRemoteLookups.put(key, listeners);
+    // PhoneNumberService doesn't specify which thread the listener is called on.
+    phoneNumberService.getPhoneNumberInfo(
+        number, info -> ThreadUtil.postOnUiThread(() -> onRemoteLookupComplete(key, info)));
+  }
+
+  @MainThread
+  private void onRemoteLookupComplete(
+      String key, @Nullable PhoneNumberService.PhoneNumberInfo info) {
+    Assert.isMainThread();
+    if (info == null) {
+      remoteLookupMissTimestamps.put(key, SystemClock.elapsedRealtime());
+    }
+    List<PhoneNumberServiceListener> joinedListeners = inFlightRemoteLookups.remove(key);
+    if (joinedListeners == null) {
+      // The cache was cleared while the lookup was in flight.
+      return;
+    }
+    for (PhoneNumberServiceListener joinedListener : joinedListeners) {
+      joinedListener.onPhoneNumberInfoComplete(info);
+    }
+  }
+
+  @MainThread
+  private boolean isRecentRemoteLookupMiss(String number) {
+    Assert.isMainThread();
+    String key = getRemoteLookupKey(number);
+    Long missTimestamp = remoteLookupMissTimestamps.get(key);
+    if (missTimestamp == null) {
+      return false;
+    }
+    if (SystemClock.elapsedRealtime() - missTimestamp >= REMOTE_LOOKUP_MISS_TTL_MILLIS) {
+      remoteLookupMissTimestamps.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  private static String getRemoteLookupKey(@Nullable String number) {
+    return number == null ? "" : PhoneNumberUtils.normalizeNumber(number);
+  }
+
   /** Blows away the stored cache values. */
   public void clearCache() {
     infoMap.clear();
     callBacks.clear();
+    inFlightRemoteLookups.clear();
+    remoteLookupMissTimestamps.clear();
     queryId = 0;
   }
 
@@ -665,6 +739,10 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
         callBack.onContactInfoComplete(callId, entry);
       }
     }
+    DialerCall call = CallList.getInstance().getCallById(callId);
+    if (call != null && !TextUtils.isEmpty(entry.namePrimary)) {
+      call.onContactNameShown();
+    }
     Trace.endSection();
   }
 
@@ -678,11 +756,20 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
         callBack.onImageLoadComplete(callId, entry);
       }
     }
+    DialerCall call = CallList.getInstance().getCallById(callId);
+    if (call != null && entry != null && entry.photo != null) {
+      call.onContactPhotoShown();
+    }
     Trace.endSection();
   }
 
   private void clearCallbacks(String callId) {
     callBacks.remove(callId);
+    // No more names or photos will be shown for this call, e.g. if the lookup was a miss.
+    DialerCall call = CallList.getInstance().getCallById(callId);
+    if (call != null) {
+      call.cancelContactInfoShownTimers();
+    }
   }
 
   /** Callback interface for the contact query. */
@@ -832,11 +919,14 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
       // contact wasn't found in the local DB.  We don't check the if the cache entry already
       // has a name because we allow overriding cnap data with data from other services.
       if (!callerInfo.contactExists && phoneNumberService != null) {
-        Log.d(TAG, "Contact lookup. Local contacts miss, checking remote");
-        final PhoneNumberServiceListener listener =
-            new PhoneNumberServiceListener(callId, queryToken.queryId);
-        cacheEntry.hasPendingQuery = true;
-        phoneNumberService.getPhoneNumberInfo(cacheEntry.number, listener);
+        if (isRecentRemoteLookupMiss(cacheEntry.number)) {
+          Log.d(TAG, "Contact lookup. Local contacts miss, remote recently missed too");
+        } else {
+          Log.d(TAG, "Contact lookup. Local contacts miss, checking remote");
+          cacheEntry.hasPendingQuery = true;
+          startOrJoinRemoteLookup(
+              cacheEntry.number, new PhoneNumberServiceListener(callId, queryToken.queryId));
+        }
       }
       sendInfoNotifications(callId, cacheEntry);
       if (!cacheEntry.hasPendingQuery) {
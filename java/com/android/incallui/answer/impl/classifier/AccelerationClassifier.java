@@ -42,19 +42,20 @@ class AccelerationClassifier extends StrokeClassifier {
 
   @Override
   public void onTouchEvent(MotionEvent event) {
-    int action = event.getActionMasked();
-
-    if (action == MotionEvent.ACTION_DOWN) {
-      strokeMap.clear();
-    }
-
     for (int i = 0; i < event.getPointerCount(); i++) {
       Stroke stroke = classifierData.getStroke(event.getPointerId(i));
-      Point point = stroke.getPoints().get(stroke.getPoints().size() - 1);
-      if (strokeMap.get(stroke) == null) {
-        strokeMap.put(stroke, new Data(point));
+      int last = stroke.getCount() - 1;
+      float x = stroke.getX(last);
+      float y = stroke.getY(last);
+      long timeOffsetNano = stroke.getTimeOffsetNano(last);
+      Data data = strokeMap.get(stroke);
+      if (data == null) {
+        strokeMap.put(stroke, new Data(x, y, timeOffsetNano));
+      } else if (last == 0) {
+        // The stroke has been reused for a new pointer.
+        data.reset(x, y, timeOffsetNano);
       } else {
-        strokeMap.get(stroke).addPoint(point);
+        data.addPoint(x, y, timeOffsetNano);
       }
     }
   }
@@ -69,23 +70,35 @@ class AccelerationClassifier extends StrokeClassifier {
 
     static final float MILLIS_TO_NANOS = 1e6f;
 
-    Point previousPoint;
-    float previousSpeed = 0;
-    float maxSpeedRatio = 0;
+    float previousX;
+    float previousY;
+    long previousTimeOffsetNano;
+    float previousSpeed;
+    float maxSpeedRatio;
+
+    public Data(float x, float y, long timeOffsetNano) {
+      reset(x, y, timeOffsetNano);
+    }
 
-    public Data(Point point) {
-      previousPoint = point;
+    public void reset(float x, float y, long timeOffsetNano) {
+      previousX = x;
+      previousY = y;
+      previousTimeOffsetNano = timeOffsetNano;
+      previousSpeed = 0;
+      maxSpeedRatio = 0;
     }
 
-    public void addPoint(Point point) {
-      float distance = previousPoint.dist(point);
-      float duration = (float) (point.timeOffsetNano - previousPoint.timeOffsetNano + 1);
+    public void addPoint(float x, float y, long timeOffsetNano) {
+      float distance = Point.dist(previousX, previousY, x, y);
+      float duration = (float) (timeOffsetNano - previousTimeOffsetNano + 1);
       float speed = distance / duration;
 
+      previousX = x;
+      previousY = y;
+      previousTimeOffsetNano = timeOffsetNano;
       if (duration > 20 * MILLIS_TO_NANOS || duration < 5 * MILLIS_TO_NANOS) {
         // reject this segment and ensure we won't use data about it in the next round.
         previousSpeed = 0;
-        previousPoint = point;
         return;
       }
       if (previousSpeed != 0.0f) {
@@ -93,7 +106,6 @@ class AccelerationClassifier extends StrokeClassifier {
       }
 
       previousSpeed = speed;
-      previousPoint = point;
     }
   }
 }
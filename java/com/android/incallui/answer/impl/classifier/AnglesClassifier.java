@@ -18,8 +18,6 @@ package com.android.incallui.answer.impl.classifier;
 
 import android.util.ArrayMap;
 import android.view.MotionEvent;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -60,19 +58,19 @@ class AnglesClassifier extends StrokeClassifier {
 
   @Override
   public void onTouchEvent(MotionEvent event) {
-    int action = event.getActionMasked();
-
-    if (action == MotionEvent.ACTION_DOWN) {
-      strokeMap.clear();
-    }
-
     for (int i = 0; i < event.getPointerCount(); i++) {
       Stroke stroke = classifierData.getStroke(event.getPointerId(i));
-
-      if (strokeMap.get(stroke) == null) {
-        strokeMap.put(stroke, new Data());
+      int last = stroke.getCount() - 1;
+
+      Data data = strokeMap.get(stroke);
+      if (data == null) {
+        data = new Data();
+        strokeMap.put(stroke, data);
+      } else if (last == 0) {
+        // The stroke has been reused for a new pointer.
+        data.reset();
       }
-      strokeMap.get(stroke).addPoint(stroke.getPoints().get(stroke.getPoints().size() - 1));
+      data.addPoint(stroke.getX(last), stroke.getY(last));
     }
   }
 
@@ -87,7 +85,11 @@ class AnglesClassifier extends StrokeClassifier {
     private static final float ANGLE_DEVIATION = (float) Math.PI / 20.0f;
     private static final float MIN_MOVE_DIST_DP = .01f;
 
-    private List<Point> lastThreePoints = new ArrayList<>();
+    /** The last three distinct points of the stroke, oldest first. */
+    private final float[] lastThreeXs = new float[3];
+
+    private final float[] lastThreeYs = new float[3];
+    private int lastThreeCount;
     private float firstAngleVariance;
     private float previousAngle;
     private float biggestAngle;
@@ -105,6 +107,11 @@ class AnglesClassifier extends StrokeClassifier {
     private float straightAngles;
 
     public Data() {
+      reset();
+    }
+
+    public void reset() {
+      lastThreeCount = 0;
       firstAngleVariance = 0.0f;
       previousAngle = (float) Math.PI;
       biggestAngle = 0.0f;
@@ -115,22 +122,32 @@ class AnglesClassifier extends StrokeClassifier {
       anglesCount = leftAngles = rightAngles = straightAngles = 0.0f;
     }
 
-    public void addPoint(Point point) {
+    public void addPoint(float x, float y) {
       // Checking if the added point is different than the previously added point
       // Repetitions and short distances are being ignored so that proper angles are calculated.
-      if (lastThreePoints.isEmpty()
-          || (!lastThreePoints.get(lastThreePoints.size() - 1).equals(point)
-              && (lastThreePoints.get(lastThreePoints.size() - 1).dist(point)
-                  > MIN_MOVE_DIST_DP))) {
-        if (!lastThreePoints.isEmpty()) {
-          length += lastThreePoints.get(lastThreePoints.size() - 1).dist(point);
+      float lastX = lastThreeCount == 0 ? 0 : lastThreeXs[lastThreeCount - 1];
+      float lastY = lastThreeCount == 0 ? 0 : lastThreeYs[lastThreeCount - 1];
+      if (lastThreeCount == 0
+          || (!(lastX == x && lastY == y) && (Point.dist(lastX, lastY, x, y) > MIN_MOVE_DIST_DP))) {
+        if (lastThreeCount != 0) {
+          length += Point.dist(lastX, lastY, x, y);
         }
-        lastThreePoints.add(point);
-        if (lastThreePoints.size() == 4) {
-          lastThreePoints.remove(0);
+        if (lastThreeCount < 3) {
+          lastThreeXs[lastThreeCount] = x;
+          lastThreeYs[lastThreeCount] = y;
+          lastThreeCount++;
+        } else {
+          shiftIn(lastThreeXs, x);
+          shiftIn(lastThreeYs, y);
 
           float angle =
-              lastThreePoints.get(1).getAngle(lastThreePoints.get(0), lastThreePoints.get(2));
+              Point.getAngle(
+                  lastThreeXs[1],
+                  lastThreeYs[1],
+                  lastThreeXs[0],
+                  lastThreeYs[0],
+                  lastThreeXs[2],
+                  lastThreeYs[2]);
 
           anglesCount++;
           if (angle < Math.PI - ANGLE_DEVIATION) {
@@ -167,6 +184,12 @@ class AnglesClassifier extends StrokeClassifier {
       }
     }
 
+    private static void shiftIn(float[] values, float value) {
+      values[0] = values[1];
+      values[1] = values[2];
+      values[2] = value;
+    }
+
     public float getAnglesVariance(float sumSquares, float sum, float count) {
       return sumSquares / count - (sum / count) * (sum / count);
     }
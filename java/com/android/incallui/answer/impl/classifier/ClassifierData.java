@@ -27,6 +27,12 @@ import java.util.concurrent.TimeUnit;
  */
 class ClassifierData {
   private SparseArray<Stroke> currentStrokes = new SparseArray<>();
+  /**
+   * Strokes are reused for the same pointer id once they have ended, so that touch events don't
+   * allocate. Classifiers can tell a reused stroke started over by {@link Stroke#getCount()} being
+   * 1.
+   */
+  private final SparseArray<Stroke> strokePool = new SparseArray<>();
   private ArrayList<Stroke> endingStrokes = new ArrayList<>();
   private final float dpi;
   private final float screenHeight;
@@ -47,8 +53,15 @@ class ClassifierData {
       int id = event.getPointerId(i);
       if (currentStrokes.get(id) == null) {
         // TODO (keyboardr): See if there's a way to use event.getEventTimeNanos() instead
-        currentStrokes.put(
-            id, new Stroke(TimeUnit.MILLISECONDS.toNanos(event.getEventTime()), dpi));
+        long eventTimeNano = TimeUnit.MILLISECONDS.toNanos(event.getEventTime());
+        Stroke stroke = strokePool.get(id);
+        if (stroke == null) {
+          stroke = new Stroke(eventTimeNano, dpi);
+          strokePool.put(id, stroke);
+        } else {
+          stroke.reset(eventTimeNano);
+        }
+        currentStrokes.put(id, stroke);
       }
       currentStrokes
           .get(id)
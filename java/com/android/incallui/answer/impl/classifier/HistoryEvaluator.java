@@ -17,7 +17,7 @@
 package com.android.incallui.answer.impl.classifier;
 
 import android.os.SystemClock;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Holds the evaluations for ended strokes and gestures. These values are decreased through time.
@@ -27,8 +27,8 @@ class HistoryEvaluator {
   private static final float HISTORY_FACTOR = 0.9f;
   private static final float EPSILON = 1e-5f;
 
-  private final ArrayList<Data> strokes = new ArrayList<>();
-  private final ArrayList<Data> gestureWeights = new ArrayList<>();
+  private final Evaluations strokes = new Evaluations();
+  private final Evaluations gestureWeights = new Evaluations();
   private long lastUpdate;
 
   public HistoryEvaluator() {
@@ -37,12 +37,12 @@ class HistoryEvaluator {
 
   public void addStroke(float evaluation) {
     decayValue();
-    strokes.add(new Data(evaluation));
+    strokes.add(evaluation);
   }
 
   public void addGesture(float evaluation) {
     decayValue();
-    gestureWeights.add(new Data(evaluation));
+    gestureWeights.add(evaluation);
   }
 
   /** Calculates the weighted average of strokes and adds to it the weighted average of gestures */
@@ -50,14 +50,12 @@ class HistoryEvaluator {
     return weightedAverage(strokes) + weightedAverage(gestureWeights);
   }
 
-  private float weightedAverage(ArrayList<Data> list) {
+  private float weightedAverage(Evaluations evaluations) {
     float sumValue = 0.0f;
     float sumWeight = 0.0f;
-    int size = list.size();
-    for (int i = 0; i < size; i++) {
-      Data data = list.get(i);
-      sumValue += data.evaluation * data.weight;
-      sumWeight += data.weight;
+    for (int i = 0; i < evaluations.size; i++) {
+      sumValue += evaluations.evaluations[i] * evaluations.weights[i];
+      sumWeight += evaluations.weights[i];
     }
 
     if (sumWeight == 0.0f) {
@@ -82,16 +80,17 @@ class HistoryEvaluator {
     lastUpdate = time;
   }
 
-  private void decayValue(ArrayList<Data> list, float factor) {
-    int size = list.size();
-    for (int i = 0; i < size; i++) {
-      list.get(i).weight *= factor;
+  private void decayValue(Evaluations evaluations, float factor) {
+    for (int i = 0; i < evaluations.size; i++) {
+      evaluations.weights[i] *= factor;
     }
 
     // Removing evaluations with such small weights that they do not matter anymore
-    while (!list.isEmpty() && isZero(list.get(0).weight)) {
-      list.remove(0);
+    int removed = 0;
+    while (removed < evaluations.size && isZero(evaluations.weights[removed])) {
+      removed++;
     }
+    evaluations.removeFirst(removed);
   }
 
   private boolean isZero(float x) {
@@ -99,16 +98,31 @@ class HistoryEvaluator {
   }
 
   /**
-   * For each stroke it holds its initial value and the current weight. Initially the weight is set
-   * to 1.0
+   * For each stroke or gesture it holds its initial value and the current weight, in parallel
+   * arrays. Initially the weight is set to 1.0
    */
-  private static class Data {
-    public float evaluation;
-    public float weight;
+  private static class Evaluations {
+    private float[] evaluations = new float[16];
+    private float[] weights = new float[16];
+    private int size;
+
+    void add(float evaluation) {
+      if (size == evaluations.length) {
+        evaluations = Arrays.copyOf(evaluations, size * 2);
+        weights = Arrays.copyOf(weights, size * 2);
+      }
+      evaluations[size] = evaluation;
+      weights[size] = 1.0f;
+      size++;
+    }
 
-    public Data(float evaluation) {
-      this.evaluation = evaluation;
-      weight = 1.0f;
+    void removeFirst(int count) {
+      if (count == 0) {
+        return;
+      }
+      System.arraycopy(evaluations, count, evaluations, 0, size - count);
+      System.arraycopy(weights, count, weights, 0, size - count);
+      size -= count;
     }
   }
 }
@@ -16,75 +16,51 @@
 
 package com.android.incallui.answer.impl.classifier;
 
-class Point {
-  public float x;
-  public float y;
-  public long timeOffsetNano;
-
-  public Point(float x, float y) {
-    this.x = x;
-    this.y = y;
-    this.timeOffsetNano = 0;
-  }
-
-  public Point(float x, float y, long timeOffsetNano) {
-    this.x = x;
-    this.y = y;
-    this.timeOffsetNano = timeOffsetNano;
-  }
-
-  @Override
-  public boolean equals(Object other) {
-    if (!(other instanceof Point)) {
-      return false;
-    }
-    Point otherPoint = ((Point) other);
-    return x == otherPoint.x && y == otherPoint.y;
-  }
+/**
+ * Geometry of points given by their coordinates. Strokes store their points in primitive arrays
+ * rather than as objects, so that recording a touch event does not allocate.
+ */
+final class Point {
 
-  @Override
-  public int hashCode() {
-    int result = (x != +0.0f ? Float.floatToIntBits(x) : 0);
-    result = 31 * result + (y != +0.0f ? Float.floatToIntBits(y) : 0);
-    return result;
-  }
+  private Point() {}
 
-  public float dist(Point a) {
-    return (float) Math.hypot(a.x - x, a.y - y);
+  /** Calculates the distance between point (x, y) and point (ax, ay). */
+  static float dist(float x, float y, float ax, float ay) {
+    return (float) Math.hypot(ax - x, ay - y);
   }
 
   /**
-   * Calculates the cross product of vec(this, a) and vec(this, b) where vec(x,y) is the vector from
-   * point x to point y
+   * Calculates the cross product of vec(p, a) and vec(p, b) where p is (x, y) and vec(x,y) is the
+   * vector from point x to point y
    */
-  public float crossProduct(Point a, Point b) {
-    return (a.x - x) * (b.y - y) - (a.y - y) * (b.x - x);
+  static float crossProduct(float x, float y, float ax, float ay, float bx, float by) {
+    return (ax - x) * (by - y) - (ay - y) * (bx - x);
   }
 
   /**
-   * Calculates the dot product of vec(this, a) and vec(this, b) where vec(x,y) is the vector from
-   * point x to point y
+   * Calculates the dot product of vec(p, a) and vec(p, b) where p is (x, y) and vec(x,y) is the
+   * vector from point x to point y
    */
-  public float dotProduct(Point a, Point b) {
-    return (a.x - x) * (b.x - x) + (a.y - y) * (b.y - y);
+  static float dotProduct(float x, float y, float ax, float ay, float bx, float by) {
+    return (ax - x) * (bx - x) + (ay - y) * (by - y);
   }
 
   /**
-   * Calculates the angle in radians created by points (a, this, b). If any two of these points are
-   * the same, the method will return 0.0f
+   * Calculates the angle in radians created by points (a, p, b) where p is (x, y). If any two of
+   * these points are the same, the method will return 0.0f
    *
    * @return the angle in radians
    */
-  public float getAngle(Point a, Point b) {
-    float dist1 = dist(a);
-    float dist2 = dist(b);
+  static float getAngle(float x, float y, float ax, float ay, float bx, float by) {
+    float dist1 = dist(x, y, ax, ay);
+    float dist2 = dist(x, y, bx, by);
 
     if (dist1 == 0.0f || dist2 == 0.0f) {
       return 0.0f;
     }
 
-    float crossProduct = crossProduct(a, b);
-    float dotProduct = dotProduct(a, b);
+    float crossProduct = crossProduct(x, y, ax, ay, bx, by);
+    float dotProduct = dotProduct(x, y, ax, ay, bx, by);
     float cos = Math.min(1.0f, Math.max(-1.0f, dotProduct / dist1 / dist2));
     float angle = (float) Math.acos(cos);
     if (crossProduct < 0.0) {
@@ -18,8 +18,6 @@ package com.android.incallui.answer.impl.classifier;
 
 import android.util.ArrayMap;
 import android.view.MotionEvent;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -48,21 +46,23 @@ class SpeedAnglesClassifier extends StrokeClassifier {
   public void onTouchEvent(MotionEvent event) {
     int action = event.getActionMasked();
 
-    if (action == MotionEvent.ACTION_DOWN) {
-      strokeMap.clear();
-    }
-
     for (int i = 0; i < event.getPointerCount(); i++) {
       Stroke stroke = classifierData.getStroke(event.getPointerId(i));
-
-      if (strokeMap.get(stroke) == null) {
-        strokeMap.put(stroke, new Data());
+      int last = stroke.getCount() - 1;
+
+      Data data = strokeMap.get(stroke);
+      if (data == null) {
+        data = new Data();
+        strokeMap.put(stroke, data);
+      } else if (last == 0) {
+        // The stroke has been reused for a new pointer.
+        data.reset();
       }
 
       if (action != MotionEvent.ACTION_UP
           && action != MotionEvent.ACTION_CANCEL
           && !(action == MotionEvent.ACTION_POINTER_UP && i == event.getActionIndex())) {
-        strokeMap.get(stroke).addPoint(stroke.getPoints().get(stroke.getPoints().size() - 1));
+        data.addPoint(stroke.getX(last), stroke.getY(last), stroke.getTimeOffsetNano(last));
       }
     }
   }
@@ -79,8 +79,14 @@ class SpeedAnglesClassifier extends StrokeClassifier {
     private static final float LENGTH_SCALE = 1.0f;
     private static final float ANGLE_DEVIATION = (float) Math.PI / 10.0f;
 
-    private List<Point> lastThreePoints = new ArrayList<>();
-    private Point previousPoint;
+    /** The last three distinct points of the speed curve, oldest first. */
+    private final float[] lastThreeXs = new float[3];
+
+    private final float[] lastThreeYs = new float[3];
+    private int lastThreeCount;
+    private boolean hasPreviousPoint;
+    private float previousX;
+    private float previousY;
     private float previousAngle;
     private float sumSquares;
     private float sum;
@@ -90,7 +96,12 @@ class SpeedAnglesClassifier extends StrokeClassifier {
     private float acceleratingAngles;
 
     public Data() {
-      previousPoint = null;
+      reset();
+    }
+
+    public void reset() {
+      lastThreeCount = 0;
+      hasPreviousPoint = false;
       previousAngle = (float) Math.PI;
       sumSquares = 0.0f;
       sum = 0.0f;
@@ -99,25 +110,38 @@ class SpeedAnglesClassifier extends StrokeClassifier {
       anglesCount = acceleratingAngles = 0.0f;
     }
 
-    public void addPoint(Point point) {
-      if (previousPoint != null) {
-        dist += previousPoint.dist(point);
+    public void addPoint(float x, float y, long timeOffsetNano) {
+      if (hasPreviousPoint) {
+        dist += Point.dist(previousX, previousY, x, y);
       }
 
-      previousPoint = point;
-      Point speedPoint =
-          new Point((float) point.timeOffsetNano / DURATION_SCALE, dist / LENGTH_SCALE);
+      hasPreviousPoint = true;
+      previousX = x;
+      previousY = y;
+      float speedX = (float) timeOffsetNano / DURATION_SCALE;
+      float speedY = dist / LENGTH_SCALE;
 
       // Checking if the added point is different than the previously added point
       // Repetitions are being ignored so that proper angles are calculated.
-      if (lastThreePoints.isEmpty()
-          || !lastThreePoints.get(lastThreePoints.size() - 1).equals(speedPoint)) {
-        lastThreePoints.add(speedPoint);
-        if (lastThreePoints.size() == 4) {
-          lastThreePoints.remove(0);
+      if (lastThreeCount == 0
+          || lastThreeXs[lastThreeCount - 1] != speedX
+          || lastThreeYs[lastThreeCount - 1] != speedY) {
+        if (lastThreeCount < 3) {
+          lastThreeXs[lastThreeCount] = speedX;
+          lastThreeYs[lastThreeCount] = speedY;
+          lastThreeCount++;
+        } else {
+          shiftIn(lastThreeXs, speedX);
+          shiftIn(lastThreeYs, speedY);
 
           float angle =
-              lastThreePoints.get(1).getAngle(lastThreePoints.get(0), lastThreePoints.get(2));
+              Point.getAngle(
+                  lastThreeXs[1],
+                  lastThreeYs[1],
+                  lastThreeXs[0],
+                  lastThreeYs[0],
+                  lastThreeXs[2],
+                  lastThreeYs[2]);
 
           anglesCount++;
           if (angle >= (float) Math.PI - ANGLE_DEVIATION) {
@@ -133,6 +157,12 @@ class SpeedAnglesClassifier extends StrokeClassifier {
       }
     }
 
+    private static void shiftIn(float[] values, float value) {
+      values[0] = values[1];
+      values[1] = values[2];
+      values[2] = value;
+    }
+
     public float getAnglesVariance() {
       return sumSquares / count - (sum / count) * (sum / count);
     }
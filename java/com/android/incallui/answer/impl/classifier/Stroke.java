@@ -16,17 +16,28 @@
 
 package com.android.incallui.answer.impl.classifier;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Contains data about a stroke (a single trace, all the events from a given id from the
  * DOWN/POINTER_DOWN event till the UP/POINTER_UP/CANCEL event.)
+ *
+ * <p>Points are stored in primitive arrays which are kept when the stroke is {@link
+ * #reset(long)} for reuse, so recording a touch event does not allocate.
  */
 class Stroke {
 
   private static final float NANOS_TO_SECONDS = 1e9f;
+  private static final int INITIAL_CAPACITY = 128;
+
+  /** Coordinates of the points, in inches. */
+  private float[] xs = new float[INITIAL_CAPACITY];
 
-  private ArrayList<Point> points = new ArrayList<>();
+  private float[] ys = new float[INITIAL_CAPACITY];
+  /** Time of the points relative to the start of the stroke. */
+  private long[] timeOffsetsNano = new long[INITIAL_CAPACITY];
+
+  private int count;
   private long startTimeNano;
   private long endTimeNano;
   private float length;
@@ -34,20 +45,51 @@ class Stroke {
 
   public Stroke(long eventTimeNano, float dpi) {
     this.dpi = dpi;
+    reset(eventTimeNano);
+  }
+
+  /** Removes all points so the stroke can be reused for a trace starting at the given time. */
+  public void reset(long eventTimeNano) {
     startTimeNano = endTimeNano = eventTimeNano;
+    count = 0;
+    length = 0;
   }
 
   public void addPoint(float x, float y, long eventTimeNano) {
     endTimeNano = eventTimeNano;
-    Point point = new Point(x / dpi, y / dpi, eventTimeNano - startTimeNano);
-    if (!points.isEmpty()) {
-      length += points.get(points.size() - 1).dist(point);
+    if (count == xs.length) {
+      xs = Arrays.copyOf(xs, count * 2);
+      ys = Arrays.copyOf(ys, count * 2);
+      timeOffsetsNano = Arrays.copyOf(timeOffsetsNano, count * 2);
+    }
+    float pointX = x / dpi;
+    float pointY = y / dpi;
+    if (count > 0) {
+      length += Point.dist(xs[count - 1], ys[count - 1], pointX, pointY);
     }
-    points.add(point);
+    xs[count] = pointX;
+    ys[count] = pointY;
+    timeOffsetsNano[count] = eventTimeNano - startTimeNano;
+    count++;
   }
 
   public int getCount() {
-    return points.size();
+    return count;
+  }
+
+  /** @return the x coordinate of the point at {@code index}, in inches. */
+  public float getX(int index) {
+    return xs[index];
+  }
+
+  /** @return the y coordinate of the point at {@code index}, in inches. */
+  public float getY(int index) {
+    return ys[index];
+  }
+
+  /** @return the time of the point at {@code index} relative to the start of the stroke. */
+  public long getTimeOffsetNano(int index) {
+    return timeOffsetsNano[index];
   }
 
   public float getTotalLength() {
@@ -55,7 +97,7 @@ class Stroke {
   }
 
   public float getEndPointLength() {
-    return points.get(0).dist(points.get(points.size() - 1));
+    return Point.dist(xs[0], ys[0], xs[count - 1], ys[count - 1]);
   }
 
   public long getDurationNanos() {
@@ -65,8 +107,4 @@ class Stroke {
   public float getDurationSeconds() {
     return (float) getDurationNanos() / NANOS_TO_SECONDS;
   }
-
-  public ArrayList<Point> getPoints() {
-    return points;
-  }
 }
@@ -136,6 +136,9 @@ public class CallList implements DialerCallDelegate {
     }
     final DialerCall call =
         new DialerCall(context, this, telecomCall, latencyReport, true /* registerCallback */);
+    if (telecomCall.getState() == Call.STATE_RINGING) {
+      call.startContactInfoShownTimers();
+    }
     if (getFirstCall() != null) {
       logSecondIncomingCall(context, getFirstCall(), call);
     }
@@ -270,6 +273,7 @@ public class CallList implements DialerCallDelegate {
     if (callByTelecomCall.containsKey(telecomCall)) {
       DialerCall call = callByTelecomCall.get(telecomCall);
       Assert.checkArgument(!call.isExternalCall());
+      call.cancelContactInfoShownTimers();
 
       EnrichedCallManager manager = EnrichedCallComponent.get(context).getEnrichedCallManager();
       manager.unregisterCapabilitiesListener(call);
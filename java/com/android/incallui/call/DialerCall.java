@@ -74,6 +74,8 @@ import com.android.dialer.logging.ContactLookupResult;
 import com.android.dialer.logging.ContactLookupResult.Type;
 import com.android.dialer.logging.DialerImpression;
 import com.android.dialer.logging.Logger;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
 import com.android.dialer.preferredsim.PreferredAccountRecorder;
 import com.android.dialer.rtt.RttTranscript;
 import com.android.dialer.rtt.RttTranscriptUtil;
@@ -203,6 +205,14 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
   @Nullable private PreferredAccountRecorder preferredAccountRecorder;
   private boolean isCallRemoved;
 
+  /**
+   * Timers from the call being added until its contact name and photo are shown, only started for
+   * incoming calls. Null once stopped or cancelled.
+   */
+  @Nullable private Integer contactNameShownTimerId;
+
+  @Nullable private Integer contactPhotoShownTimerId;
+
   public static String getNumberFromHandle(Uri handle) {
     return handle == null ? "" : handle.getSchemeSpecificPart();
   }
@@ -1381,6 +1391,45 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
     return latencyReport;
   }
 
+  /** Starts the timers until the contact name and photo of this incoming call are shown. */
+  public void startContactInfoShownTimers() {
+    Metrics metrics = MetricsComponent.get(context).metrics();
+    contactNameShownTimerId = metrics.startUnnamedTimer();
+    contactPhotoShownTimerId = metrics.startUnnamedTimer();
+  }
+
+  /** Called when the contact name of this call is shown. */
+  public void onContactNameShown() {
+    if (contactNameShownTimerId != null) {
+      MetricsComponent.get(context)
+          .metrics()
+          .stopUnnamedTimer(
+              contactNameShownTimerId, Metrics.ON_CALL_ADDED_TO_CONTACT_NAME_SHOWN_INCOMING);
+      contactNameShownTimerId = null;
+    }
+  }
+
+  /** Called when the contact photo of this call is shown. */
+  public void onContactPhotoShown() {
+    if (contactPhotoShownTimerId != null) {
+      MetricsComponent.get(context)
+          .metrics()
+          .stopUnnamedTimer(
+              contactPhotoShownTimerId, Metrics.ON_CALL_ADDED_TO_CONTACT_PHOTO_SHOWN_INCOMING);
+      contactPhotoShownTimerId = null;
+    }
+  }
+
+  /**
+   * Drops the timers which are still running, when no name or photo will be shown for this call
+   * (e.g. the caller is unknown or has no photo, or the call was removed). They are never stopped,
+   * so they are not reported.
+   */
+  public void cancelContactInfoShownTimers() {
+    contactNameShownTimerId = null;
+    contactPhotoShownTimerId = null;
+  }
+
   public int getAnswerAndReleaseButtonDisplayedTimes() {
     return answerAndReleaseButtonDisplayedTimes;
   }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui.video.impl;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RSRuntimeException;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.renderscript.Type;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.metrics.FutureTimer;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blurs snapshots of the video surfaces, shown by {@link VideoCallFragment} while the video is
+ * paused or held.
+ *
+ * <p>Blurs run on the background executor. The RenderScript context, the blur script and the
+ * allocations are kept between blurs, and the allocations are only recreated when the size of the
+ * snapshot changes. If RenderScript cannot be used, {@link StackBlur} is used instead.
+ *
+ * <p>Snapshots and blurred bitmaps come from {@link #obtainBitmap(int, int)}, and bitmaps which are
+ * no longer shown are handed back with {@link #recycleBitmap(Bitmap)}, so that blurring the same
+ * views again doesn't allocate new bitmaps.
+ */
+final class BackgroundBlurrer {
+
+  /** Factor the image is downscaled by before being blurred by {@link StackBlur}. */
+  private static final int STACK_BLUR_DOWNSCALE_FACTOR = 2;
+
+  /** Maximum number of unused bitmaps kept for reuse. */
+  private static final int MAX_FREE_BITMAPS = 4;
+
+  private final Context appContext;
+  private final ListeningExecutorService backgroundExecutor;
+  private final FutureTimer futureTimer;
+  private final Paint transformPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+  /** Guarded by itself. */
+  private final List<Bitmap> freeBitmaps = new ArrayList<>();
+
+  private volatile boolean isReleased;
+
+  // All fields below are guarded by this.
+  @Nullable private RenderScript renderScript;
+  @Nullable private ScriptIntrinsicBlur blurScript;
+  @Nullable private Allocation allocationIn;
+  @Nullable private Allocation allocationOut;
+  private boolean isRenderScriptUnavailable;
+
+  private int[] pixels = new int[0];
+  private int[] downscaledPixels = new int[0];
+  private int[] lineBuffer = new int[0];
+
+  BackgroundBlurrer(Context context) {
+    appContext = context.getApplicationContext();
+    backgroundExecutor = DialerExecutorComponent.get(context).backgroundExecutor();
+    futureTimer = MetricsComponent.get(context).futureTimer();
+  }
+
+  /**
+   * Returns a mutable ARGB_8888 bitmap of the given size, reusing one handed back with {@link
+   * #recycleBitmap(Bitmap)} if possible. Its content is undefined.
+   */
+  Bitmap obtainBitmap(int width, int height) {
+    synchronized (freeBitmaps) {
+      for (int i = 0; i < freeBitmaps.size(); i++) {
+        Bitmap bitmap = freeBitmaps.get(i);
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+          return freeBitmaps.remove(i);
+        }
+      }
+    }
+    return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+  }
+
+  /** Hands back a bitmap which is no longer used or shown, to be reused by later blurs. */
+  void recycleBitmap(Bitmap bitmap) {
+    if (isReleased || !bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+      return;
+    }
+    synchronized (freeBitmaps) {
+      if (freeBitmaps.size() >= MAX_FREE_BITMAPS) {
+        freeBitmaps.remove(0);
+      }
+      freeBitmaps.add(bitmap);
+    }
+  }
+
+  /**
+   * Blurs {@code bitmap}, which must come from {@link #obtainBitmap(int, int)}, in place on a
+   * background thread. The caller must not use {@code bitmap} until the blur is done.
+   *
+   * @param transform applied to the bitmap after it is blurred, if not null
+   * @return the blurred bitmap, which is another bitmap from {@link #obtainBitmap(int, int)} if
+   *     {@code transform} is not null, in which case {@code bitmap} is recycled
+   */
+  ListenableFuture<Bitmap> blur(Bitmap bitmap, float blurRadius, @Nullable Matrix transform) {
+    ListenableFuture<Bitmap> future =
+        backgroundExecutor.submit(() -> blurAndTransform(bitmap, blurRadius, transform));
+    futureTimer.applyTiming(future, Metrics.VIDEO_CALL_BLUR_BACKGROUND);
+    return future;
+  }
+
+  /**
+   * Releases the RenderScript resources and the bitmaps kept for reuse. Blurs after this use {@link
+   * StackBlur}. Does not wait for a blur in progress, which releases the resources when it is done.
+   */
+  void release() {
+    isReleased = true;
+    synchronized (freeBitmaps) {
+      freeBitmaps.clear();
+    }
+    backgroundExecutor.execute(this::destroyRenderScript);
+  }
+
+  @WorkerThread
+  private synchronized void destroyRenderScript() {
+    destroyAllocations();
+    if (blurScript != null) {
+      blurScript.destroy();
+      blurScript = null;
+    }
+    if (renderScript != null) {
+      renderScript.destroy();
+      renderScript = null;
+    }
+  }
+
+  @WorkerThread
+  private synchronized Bitmap blurAndTransform(
+      Bitmap bitmap, float blurRadius, @Nullable Matrix transform) {
+    if (!blurWithRenderScript(bitmap, blurRadius)) {
+      blurWithStackBlur(bitmap, blurRadius);
+    }
+    if (transform == null) {
+      return bitmap;
+    }
+    // Same result as Bitmap.createBitmap(bitmap, 0, 0, width, height, transform, true), drawn
+    // into a reused bitmap.
+    RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+    transform.mapRect(bounds);
+    Bitmap transformed =
+        obtainBitmap(
+            Math.max(1, Math.round(bounds.width())), Math.max(1, Math.round(bounds.height())));
+    transformed.eraseColor(Color.TRANSPARENT);
+    Canvas canvas = new Canvas(transformed);
+    canvas.translate(-bounds.left, -bounds.top);
+    canvas.concat(transform);
+    canvas.drawBitmap(bitmap, 0, 0, transformPaint);
+    recycleBitmap(bitmap);
+    return transformed;
+  }
+
+  /** @return false if RenderScript is not available. */
+  @WorkerThread
+  private boolean blurWithRenderScript(Bitmap bitmap, float blurRadius) {
+    if (isReleased || isRenderScriptUnavailable) {
+      return false;
+    }
+    try {
+      if (renderScript == null) {
+        renderScript = RenderScript.create(appContext);
+        blurScript = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
+      }
+      if (allocationIn == null
+          || allocationIn.getType().getX() != bitmap.getWidth()
+          || allocationIn.getType().getY() != bitmap.getHeight()) {
+        destroyAllocations();
+        // Not backed by the bitmap, so that later blurs don't write into bitmaps being shown.
+        Type type =
+            Type.createXY(
+                renderScript,
+                Element.U8_4(renderScript),
+                bitmap.getWidth(),
+                bitmap.getHeight());
+        allocationIn = Allocation.createTyped(renderScript, type, Allocation.USAGE_SCRIPT);
+        allocationOut = Allocation.createTyped(renderScript, type, Allocation.USAGE_SCRIPT);
+      }
+      allocationIn.copyFrom(bitmap);
+      blurScript.setRadius(blurRadius);
+      blurScript.setInput(allocationIn);
+      blurScript.forEach(allocationOut);
+      allocationOut.copyTo(bitmap);
+      return true;
+    } catch (RSRuntimeException e) {
+      LogUtil.e("BackgroundBlurrer.blurWithRenderScript", "falling back to stack blur", e);
+      isRenderScriptUnavailable = true;
+      return false;
+    }
+  }
+
+  @WorkerThread
+  private void blurWithStackBlur(Bitmap bitmap, float blurRadius) {
+    int width = bitmap.getWidth();
+    int height = bitmap.getHeight();
+    int factor =
+        Math.min(width, height) >= STACK_BLUR_DOWNSCALE_FACTOR ? STACK_BLUR_DOWNSCALE_FACTOR : 1;
+    int downscaledWidth = width / factor;
+    int downscaledHeight = height / factor;
+    if (pixels.length < width * height) {
+      pixels = new int[width * height];
+    }
+    if (downscaledPixels.length < downscaledWidth * downscaledHeight) {
+      downscaledPixels = new int[downscaledWidth * downscaledHeight];
+    }
+    if (lineBuffer.length < Math.max(downscaledWidth, downscaledHeight)) {
+      lineBuffer = new int[Math.max(downscaledWidth, downscaledHeight)];
+    }
+
+    bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+    StackBlur.downscale(pixels, width, height, factor, downscaledPixels);
+    StackBlur.blur(
+        downscaledPixels,
+        downscaledWidth,
+        downscaledHeight,
+        Math.round(blurRadius / factor),
+        lineBuffer);
+    StackBlur.upscale(downscaledPixels, width, height, factor, pixels);
+    bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+  }
+
+  private void destroyAllocations() {
+    if (allocationIn != null) {
+      allocationIn.destroy();
+      allocationIn = null;
+    }
+    if (allocationOut != null) {
+      allocationOut.destroy();
+      allocationOut = null;
+    }
+  }
+}
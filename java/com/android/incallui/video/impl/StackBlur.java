@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui.video.impl;
+
+/**
+ * Pure Java blur of ARGB pixel arrays, used by {@link BackgroundBlurrer} when RenderScript is not
+ * available.
+ *
+ * <p>Each channel is convolved with a triangular ("stack") kernel, horizontally then vertically,
+ * which looks close to a gaussian blur and costs a constant amount of work per pixel regardless of
+ * the radius. Images are downscaled before blurring to cut that work further.
+ */
+final class StackBlur {
+
+  private StackBlur() {}
+
+  /**
+   * Blurs {@code pixels}, an ARGB image of {@code width} x {@code height}, in place.
+   *
+   * @param lineBuffer scratch space of at least {@code max(width, height)} elements
+   */
+  static void blur(int[] pixels, int width, int height, int radius, int[] lineBuffer) {
+    if (radius < 1) {
+      return;
+    }
+    for (int y = 0; y < height; y++) {
+      blurLine(pixels, y * width, 1, width, radius, lineBuffer);
+    }
+    for (int x = 0; x < width; x++) {
+      blurLine(pixels, x, width, height, radius, lineBuffer);
+    }
+  }
+
+  /**
+   * Averages each {@code factor} x {@code factor} block of {@code pixels} into one pixel of {@code
+   * out}, which must hold at least {@code (width / factor) * (height / factor)} elements.
+   */
+  static void downscale(int[] pixels, int width, int height, int factor, int[] out) {
+    int outWidth = width / factor;
+    int outHeight = height / factor;
+    int blockSize = factor * factor;
+    for (int outY = 0; outY < outHeight; outY++) {
+      for (int outX = 0; outX < outWidth; outX++) {
+        int a = 0;
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        for (int y = outY * factor; y < (outY + 1) * factor; y++) {
+          for (int x = outX * factor; x < (outX + 1) * factor; x++) {
+            int pixel = pixels[y * width + x];
+            a += pixel >>> 24;
+            r += (pixel >> 16) & 0xff;
+            g += (pixel >> 8) & 0xff;
+            b += pixel & 0xff;
+          }
+        }
+        out[outY * outWidth + outX] =
+            ((a / blockSize) << 24)
+                | ((r / blockSize) << 16)
+                | ((g / blockSize) << 8)
+                | (b / blockSize);
+      }
+    }
+  }
+
+  /**
+   * Scales {@code pixels}, produced by {@link #downscale(int[], int, int, int, int[])} of a {@code
+   * width} x {@code height} image, back up into {@code out}. Rows and columns that were cut off
+   * by the downscale repeat the last ones.
+   */
+  static void upscale(int[] pixels, int width, int height, int factor, int[] out) {
+    int inWidth = width / factor;
+    int inHeight = height / factor;
+    for (int y = 0; y < height; y++) {
+      int inRow = Math.min(y / factor, inHeight - 1) * inWidth;
+      for (int x = 0; x < width; x++) {
+        out[y * width + x] = pixels[inRow + Math.min(x / factor, inWidth - 1)];
+      }
+    }
+  }
+
+  /** Blurs {@code length} pixels starting at {@code offset}, {@code stride} apart. */
+  private static void blurLine(
+      int[] pixels, int offset, int stride, int length, int radius, int[] line) {
+    for (int i = 0; i < length; i++) {
+      line[i] = pixels[offset + i * stride];
+    }
+    int divisor = (radius + 1) * (radius + 1);
+    for (int shift = 0; shift < 32; shift += 8) {
+      // sum is the kernel applied at the current pixel. sumOut holds the pixels whose weight
+      // drops by one when moving to the next pixel, sumIn the ones whose weight grows by one.
+      int sum = 0;
+      int sumOut = 0;
+      int sumIn = 0;
+      for (int i = -radius; i <= radius; i++) {
+        int value = channel(line, i, length, shift);
+        sum += (radius + 1 - Math.abs(i)) * value;
+        if (i <= 0) {
+          sumOut += value;
+        } else {
+          sumIn += value;
+        }
+      }
+      for (int x = 0; x < length; x++) {
+        int index = offset + x * stride;
+        pixels[index] = (pixels[index] & ~(0xff << shift)) | ((sum / divisor) << shift);
+
+        int next = channel(line, x + 1, length, shift);
+        sumIn += channel(line, x + 1 + radius, length, shift);
+        sum += sumIn - sumOut;
+        sumOut += next - channel(line, x - radius, length, shift);
+        sumIn -= next;
+      }
+    }
+  }
+
+  /** @return the channel at {@code shift} of {@code line[index]}, clamping to the edges. */
+  private static int channel(int[] line, int index, int length, int shift) {
+    int clamped = index < 0 ? 0 : (index >= length ? length - 1 : index);
+    return (line[clamped] >>> shift) & 0xff;
+  }
+}
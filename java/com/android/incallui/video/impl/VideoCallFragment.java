@@ -21,15 +21,11 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
 import android.graphics.Outline;
 import android.graphics.Point;
 import android.graphics.drawable.Animatable;
 import android.os.Bundle;
-import android.os.SystemClock;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
 import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -40,6 +36,7 @@ import android.support.v4.view.animation.FastOutLinearInInterpolator;
 import android.support.v4.view.animation.LinearOutSlowInInterpolator;
 import android.telecom.CallAudioState;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.view.LayoutInflater;
 import android.view.Surface;
 import android.view.TextureView;
@@ -60,6 +57,7 @@ import android.widget.TextView;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.FragmentUtils;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.util.PermissionsUtil;
 import com.android.incallui.audioroute.AudioRouteSelectorDialogFragment;
 import com.android.incallui.audioroute.AudioRouteSelectorDialogFragment.AudioRouteSelectorPresenter;
@@ -83,6 +81,11 @@ import com.android.incallui.video.protocol.VideoCallScreenDelegateFactory;
 import com.android.incallui.videosurface.bindings.VideoSurfaceBindings;
 import com.android.incallui.videosurface.protocol.VideoSurfaceTexture;
 import com.android.incallui.videotech.utils.VideoUtils;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /** Contains UI elements for a video call. */
 
@@ -139,6 +142,11 @@ public class VideoCallFragment extends Fragment
   private View mutePreviewOverlay;
   private View previewOffOverlay;
   private ImageView previewOffBlurredImageView;
+  @Nullable private BackgroundBlurrer backgroundBlurrer;
+  /** Blurs which have not been shown yet, keyed by the view they will be shown in. */
+  private final Map<ImageView, ListenableFuture<Bitmap>> pendingBlurs = new ArrayMap<>();
+  /** Blurred bitmaps being shown, to be handed back to {@link #backgroundBlurrer} once replaced. */
+  private final Map<ImageView, Bitmap> shownBlurs = new ArrayMap<>();
   private View controls;
   private View controlsContainer;
   private TextureView previewTextureView;
@@ -376,6 +384,15 @@ public class VideoCallFragment extends Fragment
   public void onDestroyView() {
     super.onDestroyView();
     LogUtil.i("VideoCallFragment.onDestroyView", null);
+    for (ListenableFuture<Bitmap> pendingBlur : pendingBlurs.values()) {
+      pendingBlur.cancel(false);
+    }
+    pendingBlurs.clear();
+    shownBlurs.clear();
+    if (backgroundBlurrer != null) {
+      backgroundBlurrer.release();
+      backgroundBlurrer = null;
+    }
     inCallButtonUiDelegate.onInCallButtonUiUnready();
     inCallScreenDelegate.onInCallScreenUnready();
   }
@@ -1198,53 +1215,83 @@ public class VideoCallFragment extends Fragment
       float blurRadius,
       float scaleFactor) {
     Context context = getContext();
+    cancelPendingBlur(blurredImageView);
 
     if (isVideoEnabled || context == null) {
-      blurredImageView.setImageBitmap(null);
-      blurredImageView.setVisibility(View.GONE);
+      showBlurredBitmap(blurredImageView, null);
       return;
     }
 
-    long startTimeMillis = SystemClock.elapsedRealtime();
     int width = Math.round(textureView.getWidth() * scaleFactor);
     int height = Math.round(textureView.getHeight() * scaleFactor);
 
     LogUtil.i("VideoCallFragment.updateBlurredImageView", "width: %d, height: %d", width, height);
 
-    // This call takes less than 10 milliseconds.
-    Bitmap bitmap = textureView.getBitmap(width, height);
-
-    if (bitmap == null) {
-      blurredImageView.setImageBitmap(null);
-      blurredImageView.setVisibility(View.GONE);
+    if (!textureView.isAvailable() || width <= 0 || height <= 0) {
+      showBlurredBitmap(blurredImageView, null);
       return;
     }
+    if (backgroundBlurrer == null) {
+      backgroundBlurrer = new BackgroundBlurrer(context);
+    }
+    BackgroundBlurrer blurrer = backgroundBlurrer;
+
+    // This call takes less than 10 milliseconds.
+    Bitmap bitmap = textureView.getBitmap(blurrer.obtainBitmap(width, height));
+
+    // TODO(mdooley): Figure out why only have to apply the transform in landscape mode
+    Matrix transform = width > height ? textureView.getTransform(null) : null;
 
     // TODO(mdooley): When the view is first displayed after a rotation the bitmap is empty
     // and thus this blur has no effect.
-    // This call can take 100 milliseconds.
-    blur(getContext(), bitmap, blurRadius);
+    // The blur can take 100 milliseconds, so it is done in the background.
+    ListenableFuture<Bitmap> blurFuture = blurrer.blur(bitmap, blurRadius, transform);
+    pendingBlurs.put(blurredImageView, blurFuture);
+    Futures.addCallback(
+        blurFuture,
+        new FutureCallback<Bitmap>() {
+          @Override
+          public void onSuccess(Bitmap blurredBitmap) {
+            if (pendingBlurs.get(blurredImageView) != blurFuture) {
+              // Superseded by a newer blur, or the view was destroyed.
+              blurrer.recycleBitmap(blurredBitmap);
+              return;
+            }
+            pendingBlurs.remove(blurredImageView);
+            showBlurredBitmap(blurredImageView, blurredBitmap);
+          }
 
-    // TODO(mdooley): Figure out why only have to apply the transform in landscape mode
-    if (width > height) {
-      bitmap =
-          Bitmap.createBitmap(
-              bitmap,
-              0,
-              0,
-              bitmap.getWidth(),
-              bitmap.getHeight(),
-              textureView.getTransform(null),
-              true);
+          @Override
+          public void onFailure(Throwable throwable) {
+            if (pendingBlurs.get(blurredImageView) == blurFuture) {
+              pendingBlurs.remove(blurredImageView);
+            }
+            if (!(throwable instanceof CancellationException)) {
+              LogUtil.e("VideoCallFragment.updateBlurredImageView", "blur failed", throwable);
+            }
+          }
+        },
+        DialerExecutorComponent.get(context).uiExecutor());
+  }
+
+  /** Shows {@code blurredBitmap}, or hides the view if null, and recycles the replaced bitmap. */
+  private void showBlurredBitmap(ImageView blurredImageView, @Nullable Bitmap blurredBitmap) {
+    blurredImageView.setImageBitmap(blurredBitmap);
+    blurredImageView.setVisibility(blurredBitmap == null ? View.GONE : View.VISIBLE);
+    Bitmap replacedBitmap =
+        blurredBitmap == null
+            ? shownBlurs.remove(blurredImageView)
+            : shownBlurs.put(blurredImageView, blurredBitmap);
+    if (replacedBitmap != null && replacedBitmap != blurredBitmap && backgroundBlurrer != null) {
+      backgroundBlurrer.recycleBitmap(replacedBitmap);
     }
+  }
 
-    blurredImageView.setImageBitmap(bitmap);
-    blurredImageView.setVisibility(View.VISIBLE);
-
-    LogUtil.i(
-        "VideoCallFragment.updateBlurredImageView",
-        "took %d millis",
-        (SystemClock.elapsedRealtime() - startTimeMillis));
+  private void cancelPendingBlur(ImageView blurredImageView) {
+    ListenableFuture<Bitmap> pendingBlur = pendingBlurs.remove(blurredImageView);
+    if (pendingBlur != null) {
+      pendingBlur.cancel(false);
+    }
   }
 
   private void updateOverlayBackground() {
@@ -1304,21 +1351,6 @@ public class VideoCallFragment extends Fragment
         .start();
   }
 
-  private static void blur(Context context, Bitmap image, float blurRadius) {
-    RenderScript renderScript = RenderScript.create(context);
-    ScriptIntrinsicBlur blurScript =
-        ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
-    Allocation allocationIn = Allocation.createFromBitmap(renderScript, image);
-    Allocation allocationOut = Allocation.createFromBitmap(renderScript, image);
-    blurScript.setRadius(blurRadius);
-    blurScript.setInput(allocationIn);
-    blurScript.forEach(allocationOut);
-    allocationOut.copyTo(image);
-    blurScript.destroy();
-    allocationIn.destroy();
-    allocationOut.destroy();
-  }
-
   @Override
   public void onSystemUiVisibilityChange(int visibility) {
     boolean navBarVisible = (visibility & View.SYSTEM_UI_FLAG_HIDE_NAVIGATION) == 0;
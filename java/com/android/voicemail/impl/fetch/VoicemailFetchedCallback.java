@@ -27,15 +27,13 @@ import com.android.dialer.common.Assert;
 import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.voicemail.impl.R;
 import com.android.voicemail.impl.VvmLog;
-import com.android.voicemail.impl.imap.VoicemailPayload;
 import com.android.voicemail.impl.transcribe.TranscriptionService;
 import java.io.IOException;
 import java.io.OutputStream;
-import org.apache.commons.io.IOUtils;
 
 /**
- * Callback for when a voicemail payload is fetched. It copies the returned stream to the data file
- * corresponding to the voicemail.
+ * Callback for when a voicemail payload is fetched. It provides the data file corresponding to the
+ * voicemail for the payload to be streamed into.
  */
 public class VoicemailFetchedCallback {
   private static final String TAG = "VoicemailFetchedCallback";
@@ -53,46 +51,32 @@ public class VoicemailFetchedCallback {
   }
 
   /**
-   * Saves the voicemail payload data into the voicemail provider then sets the "has_content" bit of
-   * the voicemail to "1".
+   * Opens the data file of the voicemail for writing. The audio should be written to it as it is
+   * received, after which {@link #onVoicemailContentWritten(String)} must be called.
    *
-   * @param voicemailPayload The object containing the content data for the voicemail
+   * @return the stream to write the audio to, or {@code null} if the data file could not be opened
    */
-  public void setVoicemailContent(@Nullable VoicemailPayload voicemailPayload) {
+  @Nullable
+  public OutputStream openVoicemailContentOutputStream() {
     Assert.isWorkerThread();
-    if (voicemailPayload == null) {
-      VvmLog.i(TAG, "Payload not found, message has unsupported format");
-      ContentValues values = new ContentValues();
-      values.put(
-          Voicemails.TRANSCRIPTION,
-          context.getString(
-              R.string.vvm_unsupported_message_format,
-              context
-                  .getSystemService(TelecomManager.class)
-                  .getVoiceMailNumber(phoneAccountHandle)));
-      updateVoicemail(values);
-      return;
-    }
-
     VvmLog.d(TAG, String.format("Writing new voicemail content: %s", uri));
-    OutputStream outputStream = null;
-
     try {
-      outputStream = contentResolver.openOutputStream(uri);
-      byte[] inputBytes = voicemailPayload.getBytes();
-      if (inputBytes != null) {
-        outputStream.write(inputBytes);
-      }
+      return contentResolver.openOutputStream(uri);
     } catch (IOException e) {
       VvmLog.w(TAG, String.format("File not found for %s", uri));
-      return;
-    } finally {
-      IOUtils.closeQuietly(outputStream);
+      return null;
     }
+  }
 
+  /**
+   * Sets the mime type and the "has_content" bit of the voicemail to "1" once its audio has been
+   * written to the stream returned by {@link #openVoicemailContentOutputStream()}.
+   */
+  public void onVoicemailContentWritten(String mimeType) {
+    Assert.isWorkerThread();
     // Update mime_type & has_content after we are done with file update.
     ContentValues values = new ContentValues();
-    values.put(Voicemails.MIME_TYPE, voicemailPayload.getMimeType());
+    values.put(Voicemails.MIME_TYPE, mimeType);
     values.put(Voicemails.HAS_CONTENT, true);
     if (updateVoicemail(values)) {
       ThreadUtil.postOnUiThread(
@@ -105,6 +89,37 @@ public class VoicemailFetchedCallback {
     }
   }
 
+  /**
+   * Truncates the data file of the voicemail after its audio could not be written completely to
+   * the stream returned by {@link #openVoicemailContentOutputStream()}, so that the partial audio
+   * is not kept. The "has_content" bit is left unset, so the payload will be fetched again.
+   */
+  public void onVoicemailContentDiscarded() {
+    Assert.isWorkerThread();
+    VvmLog.w(TAG, String.format("Discarding partial voicemail content: %s", uri));
+    try {
+      OutputStream outputStream = contentResolver.openOutputStream(uri, "wt");
+      if (outputStream != null) {
+        outputStream.close();
+      }
+    } catch (IOException e) {
+      VvmLog.e(TAG, String.format("Failed to truncate %s", uri), e);
+    }
+  }
+
+  /** Records that the voicemail has no audio attachment this client can play. */
+  public void onVoicemailContentUnsupported() {
+    Assert.isWorkerThread();
+    VvmLog.i(TAG, "Payload not found, message has unsupported format");
+    ContentValues values = new ContentValues();
+    values.put(
+        Voicemails.TRANSCRIPTION,
+        context.getString(
+            R.string.vvm_unsupported_message_format,
+            context.getSystemService(TelecomManager.class).getVoiceMailNumber(phoneAccountHandle)));
+    updateVoicemail(values);
+  }
+
   private boolean updateVoicemail(ContentValues values) {
     int updatedCount = contentResolver.update(uri, values, null, null);
     if (updatedCount != 1) {
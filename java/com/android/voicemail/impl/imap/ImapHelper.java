@@ -21,6 +21,9 @@ import android.net.Network;
 import android.net.NetworkInfo;
 import android.support.annotation.Nullable;
 import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.text.TextUtils;
 import android.util.Base64;
 import com.android.voicemail.PinChanger;
 import com.android.voicemail.PinChanger.ChangePinResult;
@@ -41,6 +44,7 @@ import com.android.voicemail.impl.mail.Flag;
 import com.android.voicemail.impl.mail.Message;
 import com.android.voicemail.impl.mail.MessagingException;
 import com.android.voicemail.impl.mail.Multipart;
+import com.android.voicemail.impl.mail.Part;
 import com.android.voicemail.impl.mail.TempDirectory;
 import com.android.voicemail.impl.mail.internet.MimeMessage;
 import com.android.voicemail.impl.mail.store.ImapConnection;
@@ -55,10 +59,13 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.IOUtils;
 
 /** A helper interface to abstract commands sent across IMAP interface for a given account. */
@@ -66,8 +73,12 @@ public class ImapHelper implements Closeable {
 
   private static final String TAG = "ImapHelper";
 
+  /** Maximum number of message structures requested by a single FETCH command when prefetching. */
+  private static final int PAYLOAD_FETCH_BATCH_SIZE = 10;
+
   private ImapFolder folder;
   private ImapStore imapStore;
+  @Nullable private ImapSyncState folderSyncState;
 
   private final Context context;
   private final PhoneAccountHandle phoneAccount;
@@ -212,6 +223,8 @@ public class ImapHelper implements Closeable {
         return null;
       }
 
+      folderSyncState = getSyncState(folder);
+
       // This method retrieves lightweight messages containing only the uid of the message.
       messages = folder.getMessages(null);
 
@@ -231,6 +244,174 @@ public class ImapHelper implements Closeable {
     }
   }
 
+  /**
+   * Fetch the changes on the server since a previous sync. Only the structure of messages that
+   * arrived since then is fetched; for the other messages only flags are fetched, and only if they
+   * have changed when the server supports CONDSTORE. Transcriptions are also fetched for the other
+   * messages in {@code untranscribedUids}.
+   *
+   * @param untranscribedUids UIDs of the local voicemails which have no transcription
+   * @return the changes, or {@code null} if the folder could not be opened, {@code previousState}
+   *     is no longer valid or a new message could not be fetched, in which case {@link
+   *     #fetchAllVoicemails()} should be used instead.
+   */
+  @Nullable
+  public VoicemailChanges fetchVoicemailChanges(
+      ImapSyncState previousState, Set<String> untranscribedUids) {
+    try {
+      folder = openImapFolder(ImapFolder.MODE_READ_WRITE);
+      if (folder == null) {
+        // This means we were unable to successfully open the folder.
+        return null;
+      }
+
+      folderSyncState = getSyncState(folder);
+      if (!folderSyncState.isUsable() || folderSyncState.uidValidity != previousState.uidValidity) {
+        LogUtils.i(TAG, "sync state invalidated, was " + previousState + " now " + folderSyncState);
+        return null;
+      }
+
+      VoicemailChanges changes = new VoicemailChanges();
+      List<Message> previousMessages = new ArrayList<>();
+      List<Message> untranscribedMessages = new ArrayList<>();
+      for (Message message : folder.getMessages(null)) {
+        changes.serverUids.add(message.getUid());
+        if (parseUid(message.getUid()) < previousState.uidNext) {
+          previousMessages.add(message);
+          if (untranscribedUids.contains(message.getUid())) {
+            untranscribedMessages.add(message);
+          }
+          continue;
+        }
+        MessageStructureWrapper messageStructureWrapper = fetchMessageStructure(message);
+        if (messageStructureWrapper == null) {
+          // The next sync state has already moved past this message, so an incremental sync would
+          // never retry it.
+          LogUtils.w(TAG, "unable to fetch structure of new message " + message.getUid());
+          return null;
+        }
+        changes.newVoicemails.add(getVoicemailFromMessageStructure(messageStructureWrapper));
+      }
+
+      fetchReadStates(previousMessages, previousState, changes.readStates);
+      fetchTranscriptions(untranscribedMessages, changes.transcriptions);
+      LogUtils.i(
+          TAG,
+          String.format(
+              Locale.US,
+              "fetched changes: %d on server, %d new, %d with flags, %d transcribed",
+              changes.serverUids.size(),
+              changes.newVoicemails.size(),
+              changes.readStates.size(),
+              changes.transcriptions.size()));
+      return changes;
+    } catch (MessagingException e) {
+      LogUtils.e(TAG, e, "Messaging Exception");
+      return null;
+    } finally {
+      closeImapFolder();
+    }
+  }
+
+  /**
+   * Fetches the {@link Flag#SEEN} state of {@code messages} into {@code readStates}, skipping the
+   * messages which have not changed since {@code previousState} if the server supports CONDSTORE.
+   */
+  private void fetchReadStates(
+      List<Message> messages, ImapSyncState previousState, Map<String, Boolean> readStates)
+      throws MessagingException {
+    if (messages.isEmpty()) {
+      return;
+    }
+    boolean useModSeq =
+        previousState.highestModSeq != ImapSyncState.UNKNOWN && folder.isCondstoreSupported();
+    if (useModSeq && folder.getHighestModSeq() == previousState.highestModSeq) {
+      LogUtils.d(TAG, "no flag changes since last sync");
+      return;
+    }
+
+    FetchProfile fetchProfile = new FetchProfile();
+    fetchProfile.add(FetchProfile.Item.FLAGS);
+    ImapFolder.MessageRetrievalListener listener =
+        message ->
+            readStates.put(
+                message.getUid(), Arrays.asList(message.getFlags()).contains(Flag.SEEN));
+    Message[] messageArray = messages.toArray(new Message[messages.size()]);
+    if (useModSeq) {
+      folder.fetchChangedSince(messageArray, fetchProfile, previousState.highestModSeq, listener);
+    } else {
+      folder.fetch(messageArray, fetchProfile, listener);
+    }
+  }
+
+  /**
+   * Fetches the transcriptions of {@code messages} into {@code transcriptions}. The structures of
+   * all the messages are fetched with a single FETCH command, then only the messages which have a
+   * transcription are fetched again for it.
+   */
+  private void fetchTranscriptions(List<Message> messages, Map<String, String> transcriptions)
+      throws MessagingException {
+    if (messages.isEmpty()) {
+      return;
+    }
+    List<MessageStructureWrapper> transcribedMessages = new ArrayList<>();
+    MessageStructureFetchedListener structureListener = new MessageStructureFetchedListener();
+    FetchProfile structureFetchProfile = new FetchProfile();
+    structureFetchProfile.add(FetchProfile.Item.STRUCTURE);
+    folder.fetch(
+        messages.toArray(new Message[messages.size()]),
+        structureFetchProfile,
+        message -> {
+          try {
+            MessageStructureWrapper messageStructureWrapper =
+                structureListener.getMessageOrNull(message);
+            if (messageStructureWrapper != null
+                && messageStructureWrapper.transcriptionBodyPart != null) {
+              transcribedMessages.add(messageStructureWrapper);
+            }
+          } catch (MessagingException e) {
+            LogUtils.e(TAG, e, "Messaging Exception");
+          }
+        });
+
+    for (MessageStructureWrapper messageStructureWrapper : transcribedMessages) {
+      TranscriptionFetchedListener listener = new TranscriptionFetchedListener();
+      FetchProfile fetchProfile = new FetchProfile();
+      fetchProfile.add(messageStructureWrapper.transcriptionBodyPart);
+      folder.fetch(
+          new Message[] {messageStructureWrapper.messageStructure}, fetchProfile, listener);
+      if (!TextUtils.isEmpty(listener.getVoicemailTranscription())) {
+        transcriptions.put(
+            messageStructureWrapper.messageStructure.getUid(),
+            listener.getVoicemailTranscription());
+      }
+    }
+  }
+
+  /**
+   * @return the state of the folder as of the last call to {@link #fetchAllVoicemails()} or {@link
+   *     #fetchVoicemailChanges(ImapSyncState, Set)}, or {@code null} if neither has opened the
+   *     folder.
+   */
+  @Nullable
+  public ImapSyncState getFolderSyncState() {
+    return folderSyncState;
+  }
+
+  private static ImapSyncState getSyncState(ImapFolder folder) {
+    return new ImapSyncState(
+        folder.getUidValidity(), folder.getUidNext(), folder.getHighestModSeq());
+  }
+
+  /** UIDs are unsigned 32 bit integers. Unparsable UIDs are treated as new. */
+  private static long parseUid(String uid) {
+    try {
+      return Long.parseLong(uid);
+    } catch (NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
   /**
    * Extract voicemail details from the message structure. Also fetch transcription if a
    * transcription exists.
@@ -310,42 +491,159 @@ public class ImapHelper implements Closeable {
     return listener.getMessageStructure();
   }
 
+  /**
+   * Fetches the payload of a single voicemail.
+   *
+   * @return {@code true} if the voicemail was found on the server and its payload handled
+   */
   public boolean fetchVoicemailPayload(VoicemailFetchedCallback callback, final String uid) {
+    Map<String, VoicemailFetchedCallback> callbacks = new ArrayMap<>();
+    callbacks.put(uid, callback);
+    return fetchVoicemailPayloads(callbacks);
+  }
+
+  /**
+   * Fetches the payloads of several voicemails while selecting the folder only once. The structure
+   * of up to {@link #PAYLOAD_FETCH_BATCH_SIZE} messages is requested per FETCH command, then their
+   * audio attachments are streamed with another FETCH command into the data files provided by
+   * their callbacks. Voicemails no longer on the server are skipped.
+   *
+   * @param callbacks the callbacks to invoke, keyed by the UID of the voicemail to fetch
+   * @return {@code true} if every voicemail was found on the server and its payload handled
+   */
+  public boolean fetchVoicemailPayloads(Map<String, VoicemailFetchedCallback> callbacks) {
+    if (callbacks.isEmpty()) {
+      return true;
+    }
     try {
       folder = openImapFolder(ImapFolder.MODE_READ_WRITE);
       if (folder == null) {
         // This means we were unable to successfully open the folder.
         return false;
       }
-      Message message = folder.getMessage(uid);
-      if (message == null) {
-        return false;
+
+      boolean fetchedAll = true;
+      List<String> uids = new ArrayList<>(callbacks.keySet());
+      for (int start = 0; start < uids.size(); start += PAYLOAD_FETCH_BATCH_SIZE) {
+        List<String> batch =
+            uids.subList(start, Math.min(uids.size(), start + PAYLOAD_FETCH_BATCH_SIZE));
+        Map<String, BodyPart> audioParts = fetchAudioParts(batch);
+        Map<String, Part> partsToStream = new ArrayMap<>();
+        for (String uid : batch) {
+          if (!audioParts.containsKey(uid)) {
+            VvmLog.w(TAG, "UID " + uid + " not found on server");
+            fetchedAll = false;
+            continue;
+          }
+          BodyPart audioPart = audioParts.get(uid);
+          if (audioPart == null) {
+            callbacks.get(uid).onVoicemailContentUnsupported();
+            continue;
+          }
+          partsToStream.put(uid, audioPart);
+        }
+        fetchedAll &= streamVoicemailContents(partsToStream, callbacks);
       }
-      VoicemailPayload voicemailPayload = fetchVoicemailPayload(message);
-      callback.setVoicemailContent(voicemailPayload);
-      return true;
+      return fetchedAll;
     } catch (MessagingException e) {
+      LogUtils.e(TAG, e, "Messaging Exception");
+      return false;
     } finally {
       closeImapFolder();
     }
-    return false;
   }
 
   /**
-   * Fetches the body of the given message and returns the parsed voicemail payload.
+   * Fetches the structure of the given messages with a single FETCH command.
    *
-   * @throws MessagingException if fetching the body of the message fails
+   * @return the audio attachment of each message found on the server keyed by UID, or {@code null}
+   *     for messages without an audio attachment
    */
-  private VoicemailPayload fetchVoicemailPayload(Message message) throws MessagingException {
-    LogUtils.d(TAG, "Fetching message body for " + message.getUid());
-
-    MessageBodyFetchedListener listener = new MessageBodyFetchedListener();
-
+  private Map<String, BodyPart> fetchAudioParts(List<String> uids) throws MessagingException {
+    LogUtils.d(TAG, "Fetching message structures for " + uids);
+    Map<String, BodyPart> audioParts = new ArrayMap<>();
     FetchProfile fetchProfile = new FetchProfile();
-    fetchProfile.add(FetchProfile.Item.BODY);
+    fetchProfile.add(FetchProfile.Item.STRUCTURE);
+    folder.fetch(
+        folder.getMessagesInternal(uids.toArray(new String[uids.size()])),
+        fetchProfile,
+        message -> audioParts.put(message.getUid(), getAudioPartOrNull(message)));
+    return audioParts;
+  }
 
-    folder.fetch(new Message[] {message}, fetchProfile, listener);
-    return listener.getVoicemailPayload();
+  @Nullable
+  private static BodyPart getAudioPartOrNull(Message message) {
+    try {
+      if (!(message.getBody() instanceof Multipart)) {
+        LogUtils.w(TAG, "Ignored non multi-part message");
+        return null;
+      }
+      Multipart multipart = (Multipart) message.getBody();
+      List<String> mimeTypes = new ArrayList<>();
+      for (int i = 0; i < multipart.getCount(); ++i) {
+        BodyPart bodyPart = multipart.getBodyPart(i);
+        String bodyPartMimeType = bodyPart.getMimeType().toLowerCase();
+        mimeTypes.add(bodyPartMimeType);
+        if (bodyPartMimeType.startsWith("audio/")) {
+          return bodyPart;
+        }
+      }
+      LogUtils.e(TAG, "No audio attachment found on this voicemail, mimeTypes:" + mimeTypes);
+    } catch (MessagingException e) {
+      LogUtils.e(TAG, e, "Messaging Exception");
+    }
+    return null;
+  }
+
+  /**
+   * Streams the audio attachments of several messages into the data files of their voicemails with
+   * a single FETCH command. Partially written audio is discarded.
+   *
+   * @return {@code true} if the audio of every message was written completely
+   */
+  private boolean streamVoicemailContents(
+      Map<String, Part> audioParts, Map<String, VoicemailFetchedCallback> callbacks)
+      throws MessagingException {
+    if (audioParts.isEmpty()) {
+      return true;
+    }
+    LogUtils.d(TAG, "Fetching message bodies for " + audioParts.keySet());
+    Map<String, String> mimeTypes = new ArrayMap<>();
+    for (Map.Entry<String, Part> entry : audioParts.entrySet()) {
+      mimeTypes.put(entry.getKey(), entry.getValue().getMimeType().toLowerCase());
+    }
+    Set<String> writtenUids = new ArraySet<>();
+    Set<String> openedUids = new ArraySet<>();
+    try {
+      folder.fetchPartContents(
+          audioParts,
+          new ImapFolder.PartContentListener() {
+            @Nullable
+            @Override
+            public OutputStream openPartContentOutputStream(String uid) {
+              OutputStream outputStream = callbacks.get(uid).openVoicemailContentOutputStream();
+              if (outputStream != null) {
+                openedUids.add(uid);
+              }
+              return outputStream;
+            }
+
+            @Override
+            public void onPartContentWritten(String uid, boolean isDecoded) {
+              if (isDecoded) {
+                writtenUids.add(uid);
+                callbacks.get(uid).onVoicemailContentWritten(mimeTypes.get(uid));
+              }
+            }
+          });
+    } finally {
+      for (String uid : openedUids) {
+        if (!writtenUids.contains(uid)) {
+          callbacks.get(uid).onVoicemailContentDiscarded();
+        }
+      }
+    }
+    return writtenUids.size() == audioParts.size();
   }
 
   public boolean fetchTranscription(TranscriptionFetchedCallback callback, String uid) {
@@ -508,6 +806,29 @@ public class ImapHelper implements Closeable {
     LogUtils.i(TAG, "Updated quota occupied and total");
   }
 
+  /** Changes on the server returned by {@link #fetchVoicemailChanges(ImapSyncState, Set)}. */
+  public static class VoicemailChanges {
+
+    /** UIDs of all messages on the server that are not deleted. */
+    public final Set<String> serverUids = new ArraySet<>();
+
+    /** Voicemails that arrived since the previous sync. */
+    public final List<Voicemail> newVoicemails = new ArrayList<>();
+
+    /**
+     * Read state of previously synced messages, keyed by UID. A message in {@link #serverUids}
+     * that is in neither this map nor {@link #newVoicemails} has not changed since the previous
+     * sync.
+     */
+    public final Map<String, Boolean> readStates = new ArrayMap<>();
+
+    /**
+     * Transcriptions of previously synced messages which have no local transcription, keyed by
+     * UID.
+     */
+    public final Map<String, String> transcriptions = new ArrayMap<>();
+  }
+
   /**
    * A wrapper to hold a message with its header details and the structure for transcriptions (so
    * they can be fetched in the future).
@@ -587,48 +908,6 @@ public class ImapHelper implements Closeable {
     }
   }
 
-  /** Listener for the message body being fetched. */
-  private final class MessageBodyFetchedListener implements ImapFolder.MessageRetrievalListener {
-
-    private VoicemailPayload voicemailPayload;
-
-    /** Returns the fetch voicemail payload. */
-    public VoicemailPayload getVoicemailPayload() {
-      return voicemailPayload;
-    }
-
-    @Override
-    public void messageRetrieved(Message message) {
-      LogUtils.d(TAG, "Fetched message body for " + message.getUid());
-      LogUtils.d(TAG, "Message retrieved: " + message);
-      try {
-        voicemailPayload = getVoicemailPayloadFromMessage(message);
-      } catch (MessagingException e) {
-        LogUtils.e(TAG, "Messaging Exception:", e);
-      } catch (IOException e) {
-        LogUtils.e(TAG, "IO Exception:", e);
-      }
-    }
-
-    private VoicemailPayload getVoicemailPayloadFromMessage(Message message)
-        throws MessagingException, IOException {
-      Multipart multipart = (Multipart) message.getBody();
-      List<String> mimeTypes = new ArrayList<>();
-      for (int i = 0; i < multipart.getCount(); ++i) {
-        BodyPart bodyPart = multipart.getBodyPart(i);
-        String bodyPartMimeType = bodyPart.getMimeType().toLowerCase();
-        mimeTypes.add(bodyPartMimeType);
-        if (bodyPartMimeType.startsWith("audio/")) {
-          byte[] bytes = getDataFromBody(bodyPart.getBody());
-          LogUtils.d(TAG, String.format("Fetched %s bytes of data", bytes.length));
-          return new VoicemailPayload(bodyPartMimeType, bytes);
-        }
-      }
-      LogUtils.e(TAG, "No audio attachment found on this voicemail, mimeTypes:" + mimeTypes);
-      return null;
-    }
-  }
-
   /** Listener for the transcription being fetched. */
   private final class TranscriptionFetchedListener implements ImapFolder.MessageRetrievalListener {
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.voicemail.impl.imap;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.telecom.PhoneAccountHandle;
+import com.android.voicemail.impl.VisualVoicemailPreferences;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of the voicemail folder on the IMAP server as of the last successful full or incremental
+ * sync, persisted per account so the next sync only has to fetch what changed since.
+ *
+ * <p>The state is tied to the UIDVALIDITY of the folder. If it changes, UIDs may have been
+ * reassigned and the state must be discarded.
+ */
+public class ImapSyncState {
+
+  public static final long UNKNOWN = -1;
+
+  /**
+   * Incremental syncs rely on the local database not having been modified behind our back. Do a
+   * full sync at least this often so any drift is eventually corrected.
+   */
+  private static final long FULL_SYNC_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private static final String PREF_UID_VALIDITY = "imap_sync_state_uid_validity";
+  private static final String PREF_UID_NEXT = "imap_sync_state_uid_next";
+  private static final String PREF_HIGHEST_MOD_SEQ = "imap_sync_state_highest_mod_seq";
+  private static final String PREF_LAST_FULL_SYNC_MILLIS = "imap_sync_state_last_full_sync_millis";
+
+  public final long uidValidity;
+  public final long uidNext;
+  /** {@link #UNKNOWN} if the server does not support CONDSTORE. */
+  public final long highestModSeq;
+
+  public ImapSyncState(long uidValidity, long uidNext, long highestModSeq) {
+    this.uidValidity = uidValidity;
+    this.uidNext = uidNext;
+    this.highestModSeq = highestModSeq;
+  }
+
+  /** @return whether the server reported enough information to sync incrementally from here. */
+  public boolean isUsable() {
+    return uidValidity != UNKNOWN && uidNext != UNKNOWN;
+  }
+
+  /**
+   * @return the state saved by the last successful sync, or {@code null} if there is none or a
+   *     full sync is due
+   */
+  @Nullable
+  public static ImapSyncState load(Context context, PhoneAccountHandle phoneAccountHandle) {
+    VisualVoicemailPreferences prefs = new VisualVoicemailPreferences(context, phoneAccountHandle);
+    long lastFullSyncMillis = prefs.getLong(PREF_LAST_FULL_SYNC_MILLIS, UNKNOWN);
+    long now = System.currentTimeMillis();
+    if (lastFullSyncMillis == UNKNOWN
+        || now < lastFullSyncMillis
+        || now - lastFullSyncMillis > FULL_SYNC_INTERVAL_MILLIS) {
+      return null;
+    }
+    ImapSyncState state =
+        new ImapSyncState(
+            prefs.getLong(PREF_UID_VALIDITY, UNKNOWN),
+            prefs.getLong(PREF_UID_NEXT, UNKNOWN),
+            prefs.getLong(PREF_HIGHEST_MOD_SEQ, UNKNOWN));
+    return state.isUsable() ? state : null;
+  }
+
+  /**
+   * Persists this state for the next sync.
+   *
+   * @param isFullSync whether the state was obtained by a full sync
+   */
+  public void save(Context context, PhoneAccountHandle phoneAccountHandle, boolean isFullSync) {
+    VisualVoicemailPreferences.Editor editor =
+        new VisualVoicemailPreferences(context, phoneAccountHandle)
+            .edit()
+            .putLong(PREF_UID_VALIDITY, uidValidity)
+            .putLong(PREF_UID_NEXT, uidNext)
+            .putLong(PREF_HIGHEST_MOD_SEQ, highestModSeq);
+    if (isFullSync) {
+      editor.putLong(PREF_LAST_FULL_SYNC_MILLIS, System.currentTimeMillis());
+    }
+    editor.apply();
+  }
+
+  /** Discards the saved state so that the next sync is a full sync. */
+  public static void clear(Context context, PhoneAccountHandle phoneAccountHandle) {
+    new VisualVoicemailPreferences(context, phoneAccountHandle)
+        .edit()
+        .putLong(PREF_LAST_FULL_SYNC_MILLIS, UNKNOWN)
+        .apply();
+  }
+
+  @Override
+  public String toString() {
+    return "ImapSyncState{uidValidity="
+        + uidValidity
+        + ", uidNext="
+        + uidNext
+        + ", highestModSeq="
+        + highestModSeq
+        + "}";
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.voicemail.impl.mail.store;
 
+import android.support.annotation.Nullable;
 import android.util.ArraySet;
 import android.util.Base64;
 import com.android.voicemail.impl.OmtpEvents;
@@ -28,6 +29,7 @@ import com.android.voicemail.impl.mail.store.imap.DigestMd5Utils;
 import com.android.voicemail.impl.mail.store.imap.ImapConstants;
 import com.android.voicemail.impl.mail.store.imap.ImapResponse;
 import com.android.voicemail.impl.mail.store.imap.ImapResponseParser;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParser.LiteralConsumer;
 import com.android.voicemail.impl.mail.store.imap.ImapUtility;
 import com.android.voicemail.impl.mail.utils.LogUtils;
 import java.io.IOException;
@@ -303,7 +305,7 @@ public class ImapConnection {
     LogUtils.d(TAG, "Capabilities: " + capabilities.toString());
   }
 
-  private boolean hasCapability(String capability) {
+  boolean hasCapability(String capability) {
     return capabilities.contains(capability);
   }
   /**
@@ -324,6 +326,13 @@ public class ImapConnection {
     }
   }
 
+  /** @see ImapResponseParser#setLiteralConsumer(LiteralConsumer) */
+  void setLiteralConsumer(@Nullable LiteralConsumer literalConsumer) {
+    if (parser != null) {
+      parser.setLiteralConsumer(literalConsumer);
+    }
+  }
+
   public ImapResponse readResponse() throws IOException, MessagingException {
     return parser.readResponse(false);
   }
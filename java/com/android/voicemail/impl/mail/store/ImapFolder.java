@@ -20,6 +20,7 @@ import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Base64DataException;
 import com.android.voicemail.impl.OmtpEvents;
 import com.android.voicemail.impl.VvmLog;
@@ -41,16 +42,20 @@ import com.android.voicemail.impl.mail.store.imap.ImapConstants;
 import com.android.voicemail.impl.mail.store.imap.ImapElement;
 import com.android.voicemail.impl.mail.store.imap.ImapList;
 import com.android.voicemail.impl.mail.store.imap.ImapResponse;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParser;
 import com.android.voicemail.impl.mail.store.imap.ImapString;
 import com.android.voicemail.impl.mail.utils.Utility;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class ImapFolder {
   private static final String TAG = "ImapFolder";
@@ -65,6 +70,9 @@ public class ImapFolder {
   private ImapConnection connection;
   private String mode;
   private boolean exists;
+  private long uidValidity = -1;
+  private long uidNext = -1;
+  private long highestModSeq = -1;
   /** A set of hashes that can be used to track dirtiness */
   Object[] hash;
 
@@ -149,6 +157,31 @@ public class ImapFolder {
     return messageCount;
   }
 
+  /** @return the UIDVALIDITY reported when the folder was selected, or -1 if there was none. */
+  public long getUidValidity() {
+    return uidValidity;
+  }
+
+  /** @return the UIDNEXT reported when the folder was selected, or -1 if there was none. */
+  public long getUidNext() {
+    return uidNext;
+  }
+
+  /**
+   * @return the HIGHESTMODSEQ reported when the folder was selected, or -1 if the server does not
+   *     support CONDSTORE (RFC 7162) or does not keep mod-sequences for this folder.
+   */
+  public long getHighestModSeq() {
+    return highestModSeq;
+  }
+
+  /** @return whether {@link #fetchChangedSince} can be used on this folder. */
+  public boolean isCondstoreSupported() {
+    return highestModSeq != -1
+        && connection != null
+        && connection.hasCapability(ImapConstants.CAPABILITY_CONDSTORE);
+  }
+
   String[] getSearchUids(List<ImapResponse> responses) {
     // S: * SEARCH 2 3 6
     final ArrayList<String> uids = new ArrayList<String>();
@@ -240,8 +273,36 @@ public class ImapFolder {
     }
   }
 
+  /**
+   * Same as {@link #fetch(Message[], FetchProfile, MessageRetrievalListener)}, but only messages
+   * whose mod-sequence is greater than {@code changedSince} are retrieved. Must only be called if
+   * {@link #isCondstoreSupported()}.
+   */
+  public void fetchChangedSince(
+      Message[] messages,
+      FetchProfile fp,
+      long changedSince,
+      MessageRetrievalListener listener)
+      throws MessagingException {
+    try {
+      fetchInternal(messages, fp, changedSince, listener);
+    } catch (RuntimeException e) { // Probably a parser error.
+      VvmLog.w(TAG, "Exception detected: " + e.getMessage());
+      throw e;
+    }
+  }
+
   public void fetchInternal(Message[] messages, FetchProfile fp, MessageRetrievalListener listener)
       throws MessagingException {
+    fetchInternal(messages, fp, -1, listener);
+  }
+
+  private void fetchInternal(
+      Message[] messages,
+      FetchProfile fp,
+      long changedSince,
+      MessageRetrievalListener listener)
+      throws MessagingException {
     if (messages.length == 0) {
       return;
     }
@@ -295,13 +356,21 @@ public class ImapFolder {
       }
     }
 
+    // C: UID FETCH 1,2,3 (UID FLAGS) (CHANGEDSINCE 12345)
+    String fetchModifiers = "";
+    if (changedSince != -1) {
+      fetchModifiers =
+          String.format(Locale.US, " (" + ImapConstants.CHANGEDSINCE + " %d)", changedSince);
+    }
+
     try {
       connection.sendCommand(
           String.format(
               Locale.US,
-              ImapConstants.UID_FETCH + " %s (%s)",
+              ImapConstants.UID_FETCH + " %s (%s)%s",
               ImapStore.joinMessageUids(messages),
-              Utility.combine(fetchFields.toArray(new String[fetchFields.size()]), ' ')),
+              Utility.combine(fetchFields.toArray(new String[fetchFields.size()]), ' '),
+              fetchModifiers),
           false);
       ImapResponse response;
       do {
@@ -422,6 +491,167 @@ public class ImapFolder {
     }
   }
 
+  /**
+   * Fetches the content of one part of each of the given messages and writes it to the stream
+   * provided by {@code listener} with its content transfer encoding removed. The content is decoded
+   * as it is read from the network, so it is never held in memory or in a temp file.
+   *
+   * <p>Messages whose parts share an ID are fetched with a single UID FETCH command. A literal is
+   * matched to its message by the UID preceding it in the FETCH response; messages whose literal
+   * arrives before their UID are fetched again on their own, so the UID is known in advance.
+   *
+   * @param parts parts with the headers set by a {@link FetchProfile.Item#STRUCTURE} fetch, keyed
+   *     by the UID of their message
+   */
+  public void fetchPartContents(Map<String, Part> parts, PartContentListener listener)
+      throws MessagingException {
+    checkOpen();
+    ArrayMap<String, List<String>> uidsByPartId = new ArrayMap<>();
+    for (Map.Entry<String, Part> entry : parts.entrySet()) {
+      String[] partIds =
+          entry.getValue().getHeader(MimeHeader.HEADER_ANDROID_ATTACHMENT_STORE_DATA);
+      if (partIds == null) {
+        throw new MessagingException("Part of " + entry.getKey() + " has no ID");
+      }
+      List<String> uids = uidsByPartId.get(partIds[0]);
+      if (uids == null) {
+        uids = new ArrayList<>();
+        uidsByPartId.put(partIds[0], uids);
+      }
+      uids.add(entry.getKey());
+    }
+
+    for (int i = 0; i < uidsByPartId.size(); i++) {
+      String partId = uidsByPartId.keyAt(i);
+      List<String> uids = uidsByPartId.valueAt(i);
+      PartLiteralConsumer consumer = new PartLiteralConsumer(parts, null /* uid */, listener);
+      fetchPartContents(uids, partId, consumer);
+      if (consumer.hasSkippedLiteral) {
+        for (String uid : uids) {
+          if (!consumer.consumedUids.contains(uid)) {
+            VvmLog.w(TAG, "Literal received before UID, fetching " + uid + " on its own");
+            fetchPartContents(
+                Collections.singletonList(uid),
+                partId,
+                new PartLiteralConsumer(parts, uid, listener));
+          }
+        }
+      }
+    }
+  }
+
+  private void fetchPartContents(List<String> uids, String partId, PartLiteralConsumer consumer)
+      throws MessagingException {
+    try {
+      connection.sendCommand(
+          String.format(
+              Locale.US,
+              ImapConstants.UID_FETCH + " %s (%s %s)",
+              TextUtils.join(",", uids),
+              ImapConstants.UID,
+              ImapConstants.FETCH_FIELD_BODY_PEEK_BARE + "[" + partId + "]"),
+          false);
+      connection.setLiteralConsumer(consumer);
+      ImapResponse response;
+      do {
+        try {
+          response = connection.readResponse();
+        } finally {
+          destroyResponses();
+        }
+      } while (!response.isTagged());
+    } catch (IOException ioe) {
+      store.getImapHelper().handleEvent(OmtpEvents.DATA_GENERIC_IMAP_IOE);
+      throw ioExceptionHandler(connection, ioe);
+    } finally {
+      if (connection != null) {
+        connection.setLiteralConsumer(null);
+      }
+    }
+  }
+
+  /**
+   * Receives the content of the parts fetched by {@link #fetchPartContents(Map,
+   * PartContentListener)}.
+   */
+  public interface PartContentListener {
+
+    /**
+     * @return the stream to write the decoded content of the part of message {@code uid} to, or
+     *     {@code null} to skip it. The stream is closed once the content has been written.
+     */
+    @Nullable
+    OutputStream openPartContentOutputStream(String uid);
+
+    /**
+     * Called once the stream returned for message {@code uid} has been closed.
+     *
+     * @param isDecoded whether the content was received and decoded completely. If not, the
+     *     stream may hold part of the content.
+     */
+    void onPartContentWritten(String uid, boolean isDecoded);
+  }
+
+  /** Decodes the literals it is given into the streams of a {@link PartContentListener}. */
+  private static class PartLiteralConsumer implements ImapResponseParser.LiteralConsumer {
+
+    private final Map<String, Part> parts;
+    /** The UID of the only message fetched, or {@code null} to take it from the FETCH response. */
+    @Nullable private final String uid;
+    private final PartContentListener listener;
+    private final Set<String> consumedUids = new ArraySet<>();
+    private boolean hasSkippedLiteral;
+
+    PartLiteralConsumer(
+        Map<String, Part> parts, @Nullable String uid, PartContentListener listener) {
+      this.parts = parts;
+      this.uid = uid;
+      this.listener = listener;
+    }
+
+    @Override
+    public void consumeLiteral(ImapList list, InputStream in) throws IOException {
+      String uid =
+          this.uid != null ? this.uid : list.getKeyedStringOrEmpty(ImapConstants.UID).getString();
+      Part part = parts.get(uid);
+      if (part == null) {
+        hasSkippedLiteral = true;
+        return;
+      }
+      consumedUids.add(uid);
+      OutputStream out = listener.openPartContentOutputStream(uid);
+      if (out == null) {
+        return;
+      }
+
+      String[] encodings = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING);
+      // According to http://tools.ietf.org/html/rfc2045#section-6.1
+      // "7bit" is the default.
+      InputStream decoded =
+          MimeUtility.getInputStreamForContentTransferEncoding(
+              in, encodings != null && encodings.length > 0 ? encodings[0] : "7bit");
+      byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      int n;
+      boolean isDecoded = false;
+      try {
+        while ((n = decoded.read(buffer)) != -1) {
+          out.write(buffer, 0, n);
+        }
+        isDecoded = true;
+      } catch (Base64DataException bde) {
+        VvmLog.e(TAG, "Error decoding part of " + uid, bde);
+      } finally {
+        try {
+          out.close();
+        } catch (IOException e) {
+          VvmLog.e(TAG, "Error closing the stream of " + uid, e);
+          isDecoded = false;
+        }
+        listener.onPartContentWritten(uid, isDecoded);
+      }
+    }
+  }
+
   /**
    * Removes any content transfer encoding from the stream and returns a Body. This code is
    * taken/condensed from MimeUtility.decodeBody
@@ -719,6 +949,9 @@ public class ImapFolder {
 
     // Assume the folder is opened read-write; unless we are notified otherwise
     mode = MODE_READ_WRITE;
+    uidValidity = -1;
+    uidNext = -1;
+    highestModSeq = -1;
     int messageCount = -1;
     for (ImapResponse response : responses) {
       if (response.isDataResponse(1, ImapConstants.EXISTS)) {
@@ -729,6 +962,12 @@ public class ImapFolder {
           mode = MODE_READ_ONLY;
         } else if (responseCode.is(ImapConstants.READ_WRITE)) {
           mode = MODE_READ_WRITE;
+        } else if (responseCode.is(ImapConstants.UIDVALIDITY)) {
+          uidValidity = getResponseCodeNumber(response);
+        } else if (responseCode.is(ImapConstants.UIDNEXT)) {
+          uidNext = getResponseCodeNumber(response);
+        } else if (responseCode.is(ImapConstants.HIGHESTMODSEQ)) {
+          highestModSeq = getResponseCodeNumber(response);
         }
       } else if (response.isTagged()) { // Not OK
         store.getImapHelper().handleEvent(OmtpEvents.DATA_MAILBOX_OPEN_FAILED);
@@ -743,6 +982,19 @@ public class ImapFolder {
     exists = true;
   }
 
+  /**
+   * Returns the number following the response code, e.g. 1125022061 for "* OK [UIDVALIDITY
+   * 1125022061] UIDs valid", or -1 if it is missing. UIDVALIDITY and UIDNEXT are unsigned 32 bit
+   * and HIGHESTMODSEQ is unsigned 63 bit, so they don't fit {@link ImapString#getNumber(int)}.
+   */
+  private static long getResponseCodeNumber(ImapResponse response) {
+    try {
+      return Long.parseLong(response.getListOrEmpty(1).getStringOrEmpty(1).getString());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
   public class Quota {
 
     public final int occupied;
@@ -39,6 +39,7 @@ public final class ImapConstants {
   public static final String BODYSTRUCTURE = "BODYSTRUCTURE";
   public static final String BYE = "BYE";
   public static final String CAPABILITY = "CAPABILITY";
+  public static final String CHANGEDSINCE = "CHANGEDSINCE";
   public static final String CHECK = "CHECK";
   public static final String CLOSE = "CLOSE";
   public static final String COPY = "COPY";
@@ -56,6 +57,7 @@ public final class ImapConstants {
   public static final String FLAG_SEEN = "\\SEEN";
   public static final String FLAGS = "FLAGS";
   public static final String FLAGS_SILENT = "FLAGS.SILENT";
+  public static final String HIGHESTMODSEQ = "HIGHESTMODSEQ";
   public static final String ID = "ID";
   public static final String INBOX = "INBOX";
   public static final String INTERNALDATE = "INTERNALDATE";
@@ -133,6 +135,8 @@ public final class ImapConstants {
 
   public static final String CAPABILITY_STARTTLS = "STARTTLS";
 
+  public static final String CAPABILITY_CONDSTORE = "CONDSTORE";
+
   /** authentication */
   public static final String AUTH_DIGEST_MD5 = "DIGEST-MD5";
 }
@@ -16,32 +16,77 @@
 
 package com.android.voicemail.impl.mail.store.imap;
 
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.mail.FixedLengthInputStream;
 import com.android.voicemail.impl.mail.MessagingException;
-import com.android.voicemail.impl.mail.PeekableInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-/** IMAP response parser. */
+/**
+ * IMAP response parser.
+ *
+ * <p>The stream is read in bulk into a reusable buffer. Tokens are scanned in place in the buffer
+ * and only copied out once their extent is known, and strings are only decoded when they are
+ * actually read (see {@link ImapSimpleString}).
+ */
 public class ImapResponseParser {
   private static final String TAG = "ImapResponseParser";
 
   /** Literal larger than this will be stored in temp file. */
   public static final int LITERAL_KEEP_IN_MEMORY_THRESHOLD = 2 * 1024 * 1024;
 
+  /** Initial size of {@link #buffer}. It grows if a single token does not fit. */
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
   /** Input stream */
-  private final PeekableInputStream in;
+  private final InputStream in;
 
-  private final int literalKeepInMemoryThreshold;
+  /** Bytes read from {@link #in} but not parsed yet are in [{@link #position}, {@link #limit}). */
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+  private int position;
+  private int limit;
+
+  /** Reads from {@link #buffer} first, then directly from {@link #in}. Used to read literals. */
+  private final InputStream bufferedIn =
+      new InputStream() {
+        @Override
+        public int read() throws IOException {
+          if (position == limit && !fill()) {
+            return -1;
+          }
+          return buffer[position++] & 0xff;
+        }
 
-  /** StringBuilder used by readUntil() */
-  private final StringBuilder bufferReadUntil = new StringBuilder();
+        @Override
+        public int read(byte[] b, int offset, int length) throws IOException {
+          if (length == 0) {
+            return 0;
+          }
+          if (position == limit) {
+            // Nothing buffered, read straight into the caller's array.
+            return in.read(b, offset, length);
+          }
+          int count = Math.min(length, limit - position);
+          System.arraycopy(buffer, position, b, offset, count);
+          position += count;
+          return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+          return limit - position;
+        }
+      };
+
+  private final int literalKeepInMemoryThreshold;
 
-  /** StringBuilder used by parseBareString() */
-  private final StringBuilder parseBareString = new StringBuilder();
+  @Nullable private LiteralConsumer literalConsumer;
 
   /**
    * We store all {@link ImapResponse} in it. {@link #destroyResponses()} must be called from time
@@ -61,6 +106,18 @@ public class ImapResponseParser {
     }
   }
 
+  /** Receives literals straight from the network stream. */
+  public interface LiteralConsumer {
+
+    /**
+     * Reads the literal from {@code in}, which ends at the end of the literal. Bytes that are not
+     * read are skipped after this returns.
+     *
+     * @param list the list the literal is an element of, holding the elements parsed before it
+     */
+    void consumeLiteral(ImapList list, InputStream in) throws IOException;
+  }
+
   /** Public constructor for normal use. */
   public ImapResponseParser(InputStream in) {
     this(in, LITERAL_KEEP_IN_MEMORY_THRESHOLD);
@@ -68,7 +125,7 @@ public class ImapResponseParser {
 
   /** Constructor for testing to override the literal size threshold. */
   /* package for test */ ImapResponseParser(InputStream in, int literalKeepInMemoryThreshold) {
-    this.in = new PeekableInputStream(in);
+    this.in = in;
     this.literalKeepInMemoryThreshold = literalKeepInMemoryThreshold;
   }
 
@@ -78,6 +135,48 @@ public class ImapResponseParser {
     return new IOException(message);
   }
 
+  /**
+   * Reads more bytes from {@link #in} after {@link #limit}, compacting or growing {@link #buffer}
+   * if there is no room. Blocks until at least one byte is read.
+   *
+   * @return {@code false} if EOF is reached.
+   */
+  private boolean fill() throws IOException {
+    if (position == limit) {
+      position = 0;
+      limit = 0;
+    } else if (limit == buffer.length) {
+      if (position > 0) {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+      } else {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    int count = in.read(buffer, limit, buffer.length - limit);
+    if (count == -1) {
+      return false;
+    }
+    limit += count;
+    return true;
+  }
+
+  /**
+   * Peek the byte {@code offset} bytes after the next one, reading more from the stream if needed.
+   *
+   * <p>Throws IOException() if reaches EOF. As long as logical response lines end with \r\n, we
+   * shouldn't see EOF during parsing.
+   */
+  private int peekAt(int offset) throws IOException {
+    while (position + offset >= limit) {
+      if (!fill()) {
+        throw newEOSException();
+      }
+    }
+    return buffer[position + offset] & 0xff;
+  }
+
   /**
    * Peek next one byte.
    *
@@ -85,27 +184,46 @@ public class ImapResponseParser {
    * shouldn't see EOF during parsing.
    */
   private int peek() throws IOException {
-    final int next = in.peek();
-    if (next == -1) {
-      throw newEOSException();
-    }
-    return next;
+    return peekAt(0);
   }
 
   /**
-   * Read and return one byte from {@link #in}, and put it in {@link #mDiscourseLogger}.
+   * Read and return one byte.
    *
    * <p>Throws IOException() if reaches EOF. As long as logical response lines end with \r\n, we
    * shouldn't see EOF during parsing.
    */
   private int readByte() throws IOException {
-    int next = in.read();
-    if (next == -1) {
-      throw newEOSException();
-    }
+    int next = peekAt(0);
+    position++;
     return next;
   }
 
+  /** @return the number of bytes before the next {@code end}, which is not consumed. */
+  private int scanUntil(char end) throws IOException {
+    int length = 0;
+    while (peekAt(length) != end) {
+      length++;
+    }
+    return length;
+  }
+
+  /** Consumes the next {@code length} bytes as a lazily decoded {@link ImapSimpleString}. */
+  private ImapSimpleString readSimpleString(int length) {
+    ImapSimpleString string =
+        new ImapSimpleString(Arrays.copyOfRange(buffer, position, position + length));
+    position += length;
+    return string;
+  }
+
+  /**
+   * Sets the consumer literals are passed to as they are read, instead of being stored in memory or
+   * in a temp file. Consumed literals are parsed as empty strings.
+   */
+  public void setLiteralConsumer(@Nullable LiteralConsumer literalConsumer) {
+    this.literalConsumer = literalConsumer;
+  }
+
   /**
    * Destroy all the {@link ImapResponse}s stored in the internal storage and clear it.
    *
@@ -192,15 +310,10 @@ public class ImapResponseParser {
    * (rather than peeked) and won't be included in the result.
    */
   /* package for test */ String readUntil(char end) throws IOException {
-    bufferReadUntil.setLength(0);
-    for (; ; ) {
-      final int ch = readByte();
-      if (ch != end) {
-        bufferReadUntil.append((char) ch);
-      } else {
-        return bufferReadUntil.toString();
-      }
-    }
+    final int length = scanUntil(end);
+    String result = new String(buffer, position, length, StandardCharsets.ISO_8859_1);
+    position += length + 1;
+    return result;
   }
 
   /** Read all bytes until \r\n. */
@@ -293,7 +406,7 @@ public class ImapResponseParser {
     return responseToReturn;
   }
 
-  private ImapElement parseElement() throws IOException, MessagingException {
+  private ImapElement parseElement(ImapList list) throws IOException, MessagingException {
     final int next = peek();
     switch (next) {
       case '(':
@@ -302,9 +415,11 @@ public class ImapResponseParser {
         return parseList('[', ']');
       case '"':
         readByte(); // Skip "
-        return new ImapSimpleString(readUntil('"'));
+        ImapSimpleString string = readSimpleString(scanUntil('"'));
+        readByte(); // Skip "
+        return string;
       case '{':
-        return parseLiteral();
+        return parseLiteral(list);
       case '\r': // CR
         readByte(); // Consume \r
         expect('\n'); // Should be followed by LF.
@@ -326,9 +441,9 @@ public class ImapResponseParser {
    * <p>If the value is "NIL", returns an empty string.
    */
   private ImapString parseBareString() throws IOException, MessagingException {
-    parseBareString.setLength(0);
+    int length = 0;
     for (; ; ) {
-      final int ch = peek();
+      final int ch = peekAt(length);
 
       // TODO Can we clean this up?  (This condition is from the old parser.)
       if (ch == '('
@@ -351,27 +466,43 @@ public class ImapResponseParser {
           ch == '"'
           || (0x00 <= ch && ch <= 0x1f)
           || ch == 0x7f) {
-        if (parseBareString.length() == 0) {
+        if (length == 0) {
           throw new MessagingException("Expected string, none found.");
         }
-        String s = parseBareString.toString();
 
         // NIL will be always converted into the empty string.
-        if (ImapConstants.NIL.equalsIgnoreCase(s)) {
+        if (isNil(length)) {
+          position += length;
           return ImapString.EMPTY;
         }
-        return new ImapSimpleString(s);
+        return readSimpleString(length);
       } else if (ch == '[') {
-        // Eat all until next ']'
-        parseBareString.append((char) readByte());
-        parseBareString.append(readUntil(']'));
-        parseBareString.append(']'); // readUntil won't include the end char.
+        // Eat all until next ']', inclusive.
+        length++;
+        while (peekAt(length) != ']') {
+          length++;
+        }
+        length++;
       } else {
-        parseBareString.append((char) readByte());
+        length++;
       }
     }
   }
 
+  /** @return whether the next {@code length} bytes are "NIL", ignoring case. */
+  private boolean isNil(int length) {
+    if (length != ImapConstants.NIL.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (Character.toUpperCase((char) (buffer[position + i] & 0xff))
+          != ImapConstants.NIL.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void parseElements(ImapList list, char end) throws IOException, MessagingException {
     for (; ; ) {
       for (; ; ) {
@@ -385,7 +516,7 @@ public class ImapResponseParser {
         // Skip space
         readByte();
       }
-      final ImapElement el = parseElement();
+      final ImapElement el = parseElement(list);
       if (el == null) { // EOL
         return;
       }
@@ -401,7 +532,7 @@ public class ImapResponseParser {
     return list;
   }
 
-  private ImapString parseLiteral() throws IOException, MessagingException {
+  private ImapString parseLiteral(ImapList list) throws IOException, MessagingException {
     expect('{');
     final int size;
     try {
@@ -414,7 +545,13 @@ public class ImapResponseParser {
     }
     expect('\r');
     expect('\n');
-    FixedLengthInputStream in = new FixedLengthInputStream(this.in, size);
+    FixedLengthInputStream in = new FixedLengthInputStream(bufferedIn, size);
+    if (literalConsumer != null) {
+      literalConsumer.consumeLiteral(list, in);
+      // Skip whatever the consumer didn't read so parsing resumes after the literal.
+      while (in.skip(in.available()) > 0) {}
+      return ImapString.EMPTY;
+    }
     if (size > literalKeepInMemoryThreshold) {
       return new ImapTempFileLiteral(in);
     } else {
@@ -20,29 +20,43 @@ import com.android.voicemail.impl.VvmLog;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
 /** Subclass of {@link ImapString} used for non literals. */
 public class ImapSimpleString extends ImapString {
   private final String TAG = "ImapSimpleString";
   private String string;
+  /** Raw bytes the string is decoded from on first use. Most parsed strings are never read. */
+  private byte[] bytes;
 
   /* package */ ImapSimpleString(String string) {
     this.string = (string != null) ? string : "";
   }
 
+  /* package */ ImapSimpleString(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
   @Override
   public void destroy() {
     string = null;
+    bytes = null;
     super.destroy();
   }
 
   @Override
   public String getString() {
+    if (string == null && bytes != null) {
+      string = new String(bytes, StandardCharsets.ISO_8859_1);
+    }
     return string;
   }
 
   @Override
   public InputStream getAsStream() {
+    if (bytes != null) {
+      return new ByteArrayInputStream(bytes);
+    }
     try {
       return new ByteArrayInputStream(string.getBytes("US-ASCII"));
     } catch (UnsupportedEncodingException e) {
@@ -54,6 +68,6 @@ public class ImapSimpleString extends ImapString {
   @Override
   public String toString() {
     // Purposefully not return just mString, in order to prevent using it instead of getString.
-    return "\"" + string + "\"";
+    return "\"" + getString() + "\"";
   }
 }
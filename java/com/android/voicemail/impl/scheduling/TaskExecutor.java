@@ -29,11 +29,17 @@ import android.support.annotation.MainThread;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.annotation.WorkerThread;
+import android.telecom.PhoneAccountHandle;
+import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.voicemail.impl.Assert;
 import com.android.voicemail.impl.NeededForTesting;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.scheduling.TaskQueue.NextTask;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A singleton to queue and run {@link Task} with the {@link android.app.job.JobScheduler}. A task
@@ -52,8 +58,12 @@ import java.util.List;
  * new task will be pushed into the queue of the scheduled job. If the job is already running, the
  * job will be queued in process memory.
  *
- * <p>Only one task will be ran at a time, and same task cannot exist in the queue at the same time.
- * Refer to {@link TaskQueue} for queuing and execution order.
+ * <p>Tasks are ran in lanes, one for each {@link android.telecom.PhoneAccountHandle}. Only one task
+ * of a phone account will be ran at a time, in queue order, but tasks of different phone accounts
+ * can run concurrently on their lane's own worker thread, up to {@link
+ * #CONFIG_MAX_CONCURRENT_LANES}. A slow sync on one SIM will not hold up the other SIM. Same task
+ * cannot exist in the queue at the same time. Refer to {@link TaskQueue} for queuing and execution
+ * order.
  *
  * <p>If there are still tasks in the queue but none are executable immediately, the service will
  * enter a "sleep", pushing all remaining task into a new job and end the current job.
@@ -116,8 +126,19 @@ final class TaskExecutor {
   /** Interval between polling of whether the job is finished. */
   private static final int TERMINATE_POLLING_INTERVAL_MILLISECONDS = 1_000;
 
-  // The thread to run tasks on
-  private final WorkerThreadHandler workerThreadHandler;
+  /** Maximum number of phone accounts whose tasks can be running at the same time. */
+  @VisibleForTesting
+  static final String CONFIG_MAX_CONCURRENT_LANES = "voicemail_task_executor_max_concurrent_lanes";
+
+  private static final long DEFAULT_MAX_CONCURRENT_LANES = 2;
+
+  private final int maxConcurrentLanes;
+
+  /** Main thread only. The lane of each phone account that has ran a task in this executor. */
+  private final Map<PhoneAccountHandle, Lane> lanes = new HashMap<>();
+
+  /** Main thread only. Phone accounts with a task currently running in its lane. */
+  private final Set<PhoneAccountHandle> busyLanes = new HashSet<>();
 
   private static TaskExecutor instance;
 
@@ -134,8 +155,6 @@ final class TaskExecutor {
   /** Main thread only, access through {@link #getTasks()} */
   private final TaskQueue tasks = new TaskQueue();
 
-  private boolean isWorkerThreadBusy = false;
-
   private boolean isTerminating = false;
 
   private Job job;
@@ -193,6 +212,66 @@ final class TaskExecutor {
   /** Should attempt to run the next task when a task has finished or been added. */
   private boolean taskAutoRunDisabledForTesting = false;
 
+  /**
+   * The worker thread and statistics of the tasks of a single phone account. The queue depth and
+   * wait time of each task is logged when it starts so they are available in the dump.
+   */
+  private final class Lane {
+
+    private final int index;
+    private final WorkerThreadHandler workerThreadHandler;
+
+    private int executedTaskCount;
+    private int maxQueueDepth;
+    private long totalWaitTimeMillis;
+    private long maxWaitTimeMillis;
+
+    Lane(int index) {
+      this.index = index;
+      HandlerThread thread = new HandlerThread("VvmTaskExecutor-" + index);
+      thread.start();
+      workerThreadHandler = new WorkerThreadHandler(thread.getLooper());
+    }
+
+    /**
+     * @param queueDepth number of tasks queued for the lane, including the starting one
+     * @param waitTimeMillis time since the task became ready
+     */
+    @MainThread
+    void onTaskStarted(Task task, int queueDepth, long waitTimeMillis) {
+      executedTaskCount++;
+      maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+      totalWaitTimeMillis += waitTimeMillis;
+      maxWaitTimeMillis = Math.max(maxWaitTimeMillis, waitTimeMillis);
+      VvmLog.i(
+          TAG,
+          "lane "
+              + index
+              + " starting "
+              + task
+              + ", queue depth: "
+              + queueDepth
+              + ", waited "
+              + waitTimeMillis
+              + " millis");
+    }
+
+    @Override
+    public String toString() {
+      return "Lane{index="
+          + index
+          + ", executedTaskCount="
+          + executedTaskCount
+          + ", maxQueueDepth="
+          + maxQueueDepth
+          + ", averageWaitTimeMillis="
+          + (executedTaskCount == 0 ? 0 : totalWaitTimeMillis / executedTaskCount)
+          + ", maxWaitTimeMillis="
+          + maxWaitTimeMillis
+          + "}";
+    }
+  }
+
   /** Handles execution of the background task in teh worker thread. */
   @VisibleForTesting
   final class WorkerThreadHandler extends Handler {
@@ -233,7 +312,7 @@ final class TaskExecutor {
       Task task = (Task) msg.obj;
       getTasks().remove(task);
       task.onCompleted();
-      isWorkerThreadBusy = false;
+      busyLanes.remove(task.getId().phoneAccountHandle);
       if (!isJobRunning() || isTerminating()) {
         // TaskExecutor was terminated when the task is running in background, don't need to run the
         // next task or terminate again
@@ -260,10 +339,13 @@ final class TaskExecutor {
 
   private TaskExecutor(Context context) {
     this.appContext = context.getApplicationContext();
-    HandlerThread thread = new HandlerThread("VvmTaskExecutor");
-    thread.start();
-
-    workerThreadHandler = new WorkerThreadHandler(thread.getLooper());
+    maxConcurrentLanes =
+        (int)
+            Math.max(
+                1,
+                ConfigProviderComponent.get(appContext)
+                    .getConfigProvider()
+                    .getLong(CONFIG_MAX_CONCURRENT_LANES, DEFAULT_MAX_CONCURRENT_LANES));
     mainThreadHandler = new MainThreadHandler(Looper.getMainLooper());
   }
 
@@ -272,7 +354,12 @@ final class TaskExecutor {
     VvmLog.i(TAG, "terminated");
     Assert.isMainThread();
     job = null;
-    workerThreadHandler.getLooper().quit();
+    for (Lane lane : lanes.values()) {
+      VvmLog.i(TAG, lane.toString());
+      lane.workerThreadHandler.getLooper().quit();
+    }
+    lanes.clear();
+    busyLanes.clear();
     instance = null;
     TaskReceiver.resendDeferredBroadcasts(appContext);
   }
@@ -297,16 +384,20 @@ final class TaskExecutor {
   private void maybeRunNextTask() {
     Assert.isMainThread();
 
-    if (isWorkerThreadBusy) {
-      return;
-    }
     if (taskAutoRunDisabledForTesting) {
       // If taskAutoRunDisabledForTesting is true, runNextTask() must be explicitly called
       // to run the next task.
       return;
     }
 
-    runNextTask();
+    while (busyLanes.size() < maxConcurrentLanes) {
+      int busyLaneCount = busyLanes.size();
+      runNextTask();
+      if (busyLanes.size() == busyLaneCount) {
+        // No more tasks can be started right now.
+        return;
+      }
+    }
   }
 
   @VisibleForTesting
@@ -317,17 +408,23 @@ final class TaskExecutor {
       prepareStop();
       return;
     }
-    NextTask nextTask = getTasks().getNextTask(READY_TOLERANCE_MILLISECONDS);
+    NextTask nextTask = getTasks().getNextTask(READY_TOLERANCE_MILLISECONDS, busyLanes);
 
     if (nextTask.task != null) {
-      nextTask.task.onBeforeExecute();
-      Message message = workerThreadHandler.obtainMessage();
-      message.obj = nextTask.task;
-      isWorkerThreadBusy = true;
-      messageSender.send(message);
+      runTask(nextTask.task);
       return;
     }
     VvmLog.i(TAG, "minimal wait time:" + nextTask.minimalWaitTimeMillis);
+    if (!busyLanes.isEmpty()) {
+      // The queue will be checked again when a running task completes. The job cannot be finished
+      // while tasks are running, so only wake up earlier for a task that will be ready soon.
+      if (!taskAutoRunDisabledForTesting
+          && nextTask.minimalWaitTimeMillis != null
+          && nextTask.minimalWaitTimeMillis < SHORT_SLEEP_THRESHOLD_MILLISECONDS) {
+        sleep(nextTask.minimalWaitTimeMillis);
+      }
+      return;
+    }
     if (!taskAutoRunDisabledForTesting && nextTask.minimalWaitTimeMillis != null) {
       // No tasks are currently ready. Sleep until the next one should be.
       // If a new task is added during the sleep the service will wake immediately.
@@ -335,6 +432,25 @@ final class TaskExecutor {
     }
   }
 
+  @MainThread
+  private void runTask(Task task) {
+    PhoneAccountHandle phoneAccountHandle = task.getId().phoneAccountHandle;
+    Lane lane = lanes.get(phoneAccountHandle);
+    if (lane == null) {
+      lane = new Lane(lanes.size());
+      lanes.put(phoneAccountHandle, lane);
+    }
+    lane.onTaskStarted(
+        task,
+        getTasks().size(phoneAccountHandle),
+        Math.max(0, -task.getReadyInMilliSeconds()));
+    task.onBeforeExecute();
+    Message message = lane.workerThreadHandler.obtainMessage();
+    message.obj = task;
+    busyLanes.add(phoneAccountHandle);
+    messageSender.send(message);
+  }
+
   @MainThread
   private void sleep(long timeMillis) {
     VvmLog.i(TAG, "sleep for " + timeMillis + " millis");
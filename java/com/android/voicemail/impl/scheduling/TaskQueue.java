@@ -20,15 +20,19 @@ import android.content.Context;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.telecom.PhoneAccountHandle;
 import com.android.voicemail.impl.Assert;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.scheduling.Task.TaskId;
 import com.android.voicemail.impl.scheduling.Tasks.TaskCreationException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
+import java.util.Set;
 
 /**
  * A queue that manages priority and duplication of {@link Task}. A task is identified by a {@link
@@ -121,8 +125,21 @@ class TaskQueue implements Iterable<Task> {
    */
   @NonNull
   NextTask getNextTask(long readyToleranceMillis) {
+    return getNextTask(readyToleranceMillis, Collections.emptySet());
+  }
+
+  /**
+   * Same as {@link #getNextTask(long)}, but tasks for a phone account in {@code busyAccounts} are
+   * ignored. This keeps tasks of the same account running one at a time and in order, while tasks
+   * of other accounts can still be picked.
+   */
+  @NonNull
+  NextTask getNextTask(long readyToleranceMillis, Set<PhoneAccountHandle> busyAccounts) {
     Long minimalWaitTime = null;
     for (Task task : queue) {
+      if (busyAccounts.contains(task.getId().phoneAccountHandle)) {
+        continue;
+      }
       long waitTime = task.getReadyInMilliSeconds();
       if (waitTime < readyToleranceMillis) {
         return new NextTask(task, 0L);
@@ -143,6 +160,17 @@ class TaskQueue implements Iterable<Task> {
     return queue.size();
   }
 
+  /** @return the number of tasks queued for {@code phoneAccountHandle}, including running ones. */
+  public int size(@Nullable PhoneAccountHandle phoneAccountHandle) {
+    int size = 0;
+    for (Task task : queue) {
+      if (Objects.equals(task.getId().phoneAccountHandle, phoneAccountHandle)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
   public boolean isEmpty() {
     return queue.isEmpty();
   }
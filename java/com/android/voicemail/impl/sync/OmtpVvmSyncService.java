@@ -24,6 +24,7 @@ import android.support.v4.os.BuildCompat;
 import android.telecom.PhoneAccountHandle;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import com.android.dialer.logging.DialerImpression;
 import com.android.voicemail.VoicemailComponent;
 import com.android.voicemail.impl.ActivationTask;
@@ -36,16 +37,20 @@ import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.fetch.VoicemailFetchedCallback;
 import com.android.voicemail.impl.imap.ImapHelper;
 import com.android.voicemail.impl.imap.ImapHelper.InitializingException;
+import com.android.voicemail.impl.imap.ImapHelper.VoicemailChanges;
+import com.android.voicemail.impl.imap.ImapSyncState;
 import com.android.voicemail.impl.mail.store.ImapFolder.Quota;
 import com.android.voicemail.impl.scheduling.BaseTask;
 import com.android.voicemail.impl.settings.VisualVoicemailSettingsUtil;
 import com.android.voicemail.impl.sync.VvmNetworkRequest.NetworkWrapper;
 import com.android.voicemail.impl.sync.VvmNetworkRequest.RequestFailedException;
 import com.android.voicemail.impl.utils.LoggerUtils;
-import com.android.voicemail.impl.utils.VoicemailDatabaseUtil;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /** Sync OMTP visual voicemail. */
 @TargetApi(VERSION_CODES.O)
@@ -209,11 +214,47 @@ public class OmtpVvmSyncService {
   }
 
   private boolean syncAll(ImapHelper imapHelper, PhoneAccountHandle account) {
+    ImapSyncState previousState = ImapSyncState.load(context, account);
+    List<Voicemail> localVoicemails = null;
+    VoicemailChanges changes = null;
+    if (previousState != null) {
+      localVoicemails = queryHelper.getAllVoicemails(account);
+      if (localVoicemails == null) {
+        // Null value means the query failed.
+        VvmLog.e(TAG, "syncAll: query failed");
+        return false;
+      }
+      Set<String> untranscribedUids = new ArraySet<>();
+      for (Voicemail localVoicemail : localVoicemails) {
+        if (TextUtils.isEmpty(localVoicemail.getTranscription())) {
+          untranscribedUids.add(localVoicemail.getSourceData());
+        }
+      }
+      changes = imapHelper.fetchVoicemailChanges(previousState, untranscribedUids);
+    }
+
+    boolean succeeded;
+    if (changes != null) {
+      VvmLog.i(TAG, "syncAll: incremental sync since " + previousState);
+      succeeded = syncChanges(imapHelper, account, localVoicemails, changes);
+    } else {
+      succeeded = syncAllVoicemails(imapHelper, account);
+    }
+
+    ImapSyncState folderSyncState = imapHelper.getFolderSyncState();
+    if (succeeded && folderSyncState != null && folderSyncState.isUsable()) {
+      folderSyncState.save(context, account, changes == null);
+    } else {
+      ImapSyncState.clear(context, account);
+    }
+    return succeeded;
+  }
+
+  /** Fetches every voicemail on the server and reconciles them with the local voicemails. */
+  private boolean syncAllVoicemails(ImapHelper imapHelper, PhoneAccountHandle account) {
 
     List<Voicemail> serverVoicemails = imapHelper.fetchAllVoicemails();
     List<Voicemail> localVoicemails = queryHelper.getAllVoicemails(account);
-    List<Voicemail> deletedVoicemails = queryHelper.getDeletedVoicemails(account);
-    boolean succeeded = true;
 
     if (localVoicemails == null || serverVoicemails == null) {
       // Null value means the query failed.
@@ -221,18 +262,11 @@ public class OmtpVvmSyncService {
       return false;
     }
 
-    if (deletedVoicemails.size() > 0) {
-      if (imapHelper.markMessagesAsDeleted(deletedVoicemails)) {
-        // Delete only the voicemails that was deleted on the server, in case more are deleted
-        // since the IMAP query was completed.
-        queryHelper.deleteFromDatabase(deletedVoicemails);
-      } else {
-        succeeded = false;
-      }
-    }
+    boolean succeeded = syncDeletedVoicemails(imapHelper, account);
 
     Map<String, Voicemail> remoteMap = buildMap(serverVoicemails);
 
+    VoicemailProviderBatch batch = new VoicemailProviderBatch(context);
     List<Voicemail> localReadVoicemails = new ArrayList<>();
 
     // Go through all the local voicemails and check if they are on the server.
@@ -249,10 +283,10 @@ public class OmtpVvmSyncService {
 
       // Do not delete voicemails that are archived marked as archived.
       if (remoteVoicemail == null) {
-        queryHelper.deleteNonArchivedFromDatabase(localVoicemail);
+        batch.deleteNonArchived(localVoicemail);
       } else {
         if (remoteVoicemail.isRead() && !localVoicemail.isRead()) {
-          queryHelper.markReadInDatabase(localVoicemail);
+          batch.markRead(localVoicemail);
         } else if (localVoicemail.isRead() && !remoteVoicemail.isRead()) {
           localReadVoicemails.add(localVoicemail);
         }
@@ -261,39 +295,172 @@ public class OmtpVvmSyncService {
             && TextUtils.isEmpty(localVoicemail.getTranscription())) {
           LoggerUtils.logImpressionOnMainThread(
               context, DialerImpression.Type.VVM_TRANSCRIPTION_DOWNLOADED);
-          queryHelper.updateWithTranscription(localVoicemail, remoteVoicemail.getTranscription());
+          batch.updateTranscription(localVoicemail, remoteVoicemail.getTranscription());
         }
       }
     }
 
-    if (localReadVoicemails.size() > 0) {
-      VvmLog.i(TAG, "Marking voicemails as read");
-      if (imapHelper.markMessagesAsRead(localReadVoicemails)) {
-        VvmLog.i(TAG, "Marking voicemails as clean");
-        queryHelper.markCleanInDatabase(localReadVoicemails);
-      } else {
-        return false;
-      }
+    if (!uploadReadVoicemails(imapHelper, localReadVoicemails, batch)) {
+      batch.apply();
+      return false;
     }
 
     // The leftover messages are messages that exist on the server but not locally.
-    boolean prefetchEnabled = shouldPerformPrefetch(account, imapHelper);
-    for (Voicemail remoteVoicemail : remoteMap.values()) {
-      if (!TextUtils.isEmpty(remoteVoicemail.getTranscription())) {
+    if (!insertVoicemails(imapHelper, account, remoteMap.values(), batch)) {
+      return false;
+    }
+
+    return succeeded;
+  }
+
+  /**
+   * Reconciles the local voicemails with the changes on the server since the previous sync. Local
+   * voicemails whose server copy has not changed only need their local changes uploaded, and the
+   * transcription fetched if they have none.
+   */
+  private boolean syncChanges(
+      ImapHelper imapHelper,
+      PhoneAccountHandle account,
+      List<Voicemail> localVoicemails,
+      VoicemailChanges changes) {
+    List<Voicemail> dirtyReadVoicemails = queryHelper.getDirtyReadVoicemails(account);
+    if (dirtyReadVoicemails == null) {
+      // Null value means the query failed.
+      VvmLog.e(TAG, "syncChanges: query failed");
+      return false;
+    }
+
+    boolean succeeded = syncDeletedVoicemails(imapHelper, account);
+
+    Map<String, Voicemail> newVoicemailMap = buildMap(changes.newVoicemails);
+    Set<Long> dirtyReadIds = new ArraySet<>();
+    for (Voicemail voicemail : dirtyReadVoicemails) {
+      dirtyReadIds.add(voicemail.getId());
+    }
+
+    VoicemailProviderBatch batch = new VoicemailProviderBatch(context);
+    List<Voicemail> localReadVoicemails = new ArrayList<>();
+    for (Voicemail localVoicemail : localVoicemails) {
+      String uid = localVoicemail.getSourceData();
+      // A new voicemail may already be stored locally if it arrived while the previous sync was
+      // running.
+      Voicemail newVoicemail = newVoicemailMap.remove(uid);
+
+      // Do not delete voicemails that are archived marked as archived.
+      if (!changes.serverUids.contains(uid)) {
+        batch.deleteNonArchived(localVoicemail);
+        continue;
+      }
+
+      Boolean isReadOnServer =
+          newVoicemail != null
+              ? Boolean.valueOf(newVoicemail.isRead())
+              : changes.readStates.get(uid);
+      if (isReadOnServer == null) {
+        // Unchanged on the server since the previous sync, so only local changes need uploading.
+        if (localVoicemail.isRead() && dirtyReadIds.contains(localVoicemail.getId())) {
+          localReadVoicemails.add(localVoicemail);
+        }
+      } else if (isReadOnServer && !localVoicemail.isRead()) {
+        batch.markRead(localVoicemail);
+      } else if (localVoicemail.isRead() && !isReadOnServer) {
+        localReadVoicemails.add(localVoicemail);
+      }
+
+      String remoteTranscription =
+          newVoicemail != null ? newVoicemail.getTranscription() : changes.transcriptions.get(uid);
+      if (!TextUtils.isEmpty(remoteTranscription)
+          && TextUtils.isEmpty(localVoicemail.getTranscription())) {
         LoggerUtils.logImpressionOnMainThread(
             context, DialerImpression.Type.VVM_TRANSCRIPTION_DOWNLOADED);
+        batch.updateTranscription(localVoicemail, remoteTranscription);
       }
-      Uri uri = VoicemailDatabaseUtil.insert(context, remoteVoicemail);
-      if (prefetchEnabled) {
-        VoicemailFetchedCallback fetchedCallback =
-            new VoicemailFetchedCallback(context, uri, account);
-        imapHelper.fetchVoicemailPayload(fetchedCallback, remoteVoicemail.getSourceData());
-      }
+    }
+
+    if (!uploadReadVoicemails(imapHelper, localReadVoicemails, batch)) {
+      batch.apply();
+      return false;
+    }
+
+    if (!insertVoicemails(imapHelper, account, newVoicemailMap.values(), batch)) {
+      return false;
     }
 
     return succeeded;
   }
 
+  /** Deletes the voicemails deleted locally from the server. */
+  private boolean syncDeletedVoicemails(ImapHelper imapHelper, PhoneAccountHandle account) {
+    List<Voicemail> deletedVoicemails = queryHelper.getDeletedVoicemails(account);
+    if (deletedVoicemails == null || deletedVoicemails.isEmpty()) {
+      return true;
+    }
+    if (imapHelper.markMessagesAsDeleted(deletedVoicemails)) {
+      // Delete only the voicemails that was deleted on the server, in case more are deleted
+      // since the IMAP query was completed.
+      queryHelper.deleteFromDatabase(deletedVoicemails);
+      return true;
+    }
+    return false;
+  }
+
+  /** Marks the voicemails read locally as read on the server. */
+  private boolean uploadReadVoicemails(
+      ImapHelper imapHelper, List<Voicemail> localReadVoicemails, VoicemailProviderBatch batch) {
+    if (localReadVoicemails.isEmpty()) {
+      return true;
+    }
+    VvmLog.i(TAG, "Marking voicemails as read");
+    if (imapHelper.markMessagesAsRead(localReadVoicemails)) {
+      VvmLog.i(TAG, "Marking voicemails as clean");
+      batch.markClean(localReadVoicemails);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Inserts voicemails that exist on the server but not locally, applying them together with the
+   * other changes collected in {@code batch}.
+   *
+   * @return false if the changes could not all be applied
+   */
+  private boolean insertVoicemails(
+      ImapHelper imapHelper,
+      PhoneAccountHandle account,
+      Collection<Voicemail> remoteVoicemails,
+      VoicemailProviderBatch batch) {
+    List<Voicemail> insertedVoicemails = new ArrayList<>(remoteVoicemails);
+    for (Voicemail remoteVoicemail : insertedVoicemails) {
+      if (!TextUtils.isEmpty(remoteVoicemail.getTranscription())) {
+        LoggerUtils.logImpressionOnMainThread(
+            context, DialerImpression.Type.VVM_TRANSCRIPTION_DOWNLOADED);
+      }
+      batch.insert(remoteVoicemail);
+    }
+    List<Uri> uris = batch.apply();
+    if (uris == null) {
+      VvmLog.e(TAG, "insertVoicemails: failed to apply changes");
+      return false;
+    }
+
+    if (!shouldPerformPrefetch(account, imapHelper)) {
+      return true;
+    }
+    Map<String, VoicemailFetchedCallback> prefetchCallbacks = new LinkedHashMap<>();
+    for (int i = 0; i < insertedVoicemails.size(); i++) {
+      Uri uri = uris.get(i);
+      if (uri != null) {
+        prefetchCallbacks.put(
+            insertedVoicemails.get(i).getSourceData(),
+            new VoicemailFetchedCallback(context, uri, account));
+      }
+    }
+    // All the new voicemails are inserted first so they show up while their audio is downloaded.
+    imapHelper.fetchVoicemailPayloads(prefetchCallbacks);
+    return true;
+  }
+
   private boolean downloadOneVoicemail(
       ImapHelper imapHelper, Voicemail voicemail, PhoneAccountHandle account) {
     if (shouldPerformPrefetch(account, imapHelper)) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.voicemail.impl.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.VoicemailContract;
+import android.provider.VoicemailContract.Voicemails;
+import android.support.annotation.Nullable;
+import com.android.voicemail.impl.Voicemail;
+import com.android.voicemail.impl.VvmLog;
+import com.android.voicemail.impl.utils.VoicemailDatabaseUtil;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the changes a sync makes to the voicemail provider so they are applied with a single
+ * {@link android.content.ContentResolver#applyBatch(String, ArrayList)} instead of one provider
+ * transaction, and one content change notification, per voicemail.
+ */
+class VoicemailProviderBatch {
+
+  private static final String TAG = "VoicemailProviderBatch";
+
+  /**
+   * Operations are applied in chunks of this size so that a sync of a very large mailbox does not
+   * exceed the binder transaction size limit.
+   */
+  private static final int MAX_OPERATIONS_PER_BATCH = 250;
+
+  private final Context context;
+  private final Uri sourceUri;
+  private final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+  /** Index in {@link #operations} of each insert, in the order they were added. */
+  private final List<Integer> insertIndices = new ArrayList<>();
+
+  VoicemailProviderBatch(Context context) {
+    this.context = context;
+    sourceUri = Voicemails.buildSourceUri(context.getPackageName());
+  }
+
+  /** @see VoicemailsQueryHelper#deleteNonArchivedFromDatabase(Voicemail) */
+  void deleteNonArchived(Voicemail voicemail) {
+    operations.add(
+        ContentProviderOperation.newDelete(Voicemails.CONTENT_URI)
+            .withSelection(
+                Voicemails._ID + "=? AND " + Voicemails.ARCHIVED + "= 0",
+                new String[] {Long.toString(voicemail.getId())})
+            .build());
+  }
+
+  /** @see VoicemailsQueryHelper#markReadInDatabase(Voicemail) */
+  void markRead(Voicemail voicemail) {
+    operations.add(
+        ContentProviderOperation.newUpdate(getUri(voicemail))
+            .withValue(Voicemails.IS_READ, "1")
+            .build());
+  }
+
+  /** @see VoicemailsQueryHelper#markCleanInDatabase(Voicemail) */
+  void markClean(List<Voicemail> voicemails) {
+    for (Voicemail voicemail : voicemails) {
+      // An update from the owner of the entry flips the "dirty" bit to "0". An update needs at
+      // least one value, unlike VoicemailsQueryHelper's blank update.
+      operations.add(
+          ContentProviderOperation.newUpdate(getUri(voicemail))
+              .withValue(Voicemails.DIRTY, 0)
+              .build());
+    }
+  }
+
+  /** @see VoicemailsQueryHelper#updateWithTranscription(Voicemail, String) */
+  void updateTranscription(Voicemail voicemail, String transcription) {
+    operations.add(
+        ContentProviderOperation.newUpdate(getUri(voicemail))
+            .withValue(Voicemails.TRANSCRIPTION, transcription)
+            .build());
+  }
+
+  /** @see VoicemailDatabaseUtil#insert(Context, Voicemail) */
+  void insert(Voicemail voicemail) {
+    insertIndices.add(operations.size());
+    operations.add(
+        ContentProviderOperation.newInsert(sourceUri)
+            .withValues(VoicemailDatabaseUtil.getContentValues(voicemail))
+            .build());
+  }
+
+  /**
+   * Applies all the collected operations and clears them.
+   *
+   * @return the {@link Uri} of each voicemail passed to {@link #insert(Voicemail)}, in the same
+   *     order, or {@code null} if some of the operations could not be applied. The sync must then
+   *     fail, so that the next sync is a full sync which retries them.
+   */
+  @Nullable
+  List<Uri> apply() {
+    List<ContentProviderResult> results = new ArrayList<>(operations.size());
+    boolean succeeded = true;
+    for (int start = 0; start < operations.size(); start += MAX_OPERATIONS_PER_BATCH) {
+      ArrayList<ContentProviderOperation> chunk =
+          new ArrayList<>(
+              operations.subList(
+                  start, Math.min(operations.size(), start + MAX_OPERATIONS_PER_BATCH)));
+      ContentProviderResult[] chunkResults = applyChunk(chunk);
+      if (chunkResults == null) {
+        succeeded = false;
+        continue;
+      }
+      for (ContentProviderResult result : chunkResults) {
+        results.add(result);
+      }
+    }
+    VvmLog.i(TAG, "applied " + operations.size() + " operations, succeeded: " + succeeded);
+
+    List<Uri> insertedUris = null;
+    if (succeeded) {
+      insertedUris = new ArrayList<>(insertIndices.size());
+      for (int index : insertIndices) {
+        insertedUris.add(results.get(index).uri);
+      }
+    }
+    operations.clear();
+    insertIndices.clear();
+    return insertedUris;
+  }
+
+  @Nullable
+  private ContentProviderResult[] applyChunk(ArrayList<ContentProviderOperation> chunk) {
+    try {
+      return context.getContentResolver().applyBatch(VoicemailContract.AUTHORITY, chunk);
+    } catch (RemoteException | OperationApplicationException e) {
+      VvmLog.e(TAG, "failed to apply " + chunk.size() + " operations", e);
+      return null;
+    }
+  }
+
+  private Uri getUri(Voicemail voicemail) {
+    return ContentUris.withAppendedId(sourceUri, voicemail.getId());
+  }
+}
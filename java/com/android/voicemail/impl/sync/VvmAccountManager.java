@@ -33,6 +33,7 @@ import com.android.voicemail.VoicemailClient.ActivationStateListener;
 import com.android.voicemail.impl.OmtpConstants;
 import com.android.voicemail.impl.VisualVoicemailPreferences;
 import com.android.voicemail.impl.VoicemailStatus;
+import com.android.voicemail.impl.imap.ImapSyncState;
 import com.android.voicemail.impl.sms.StatusMessage;
 import java.util.ArrayList;
 import java.util.List;
@@ -79,6 +80,7 @@ public class VvmAccountManager {
         .putString(OmtpConstants.IMAP_USER_NAME, null)
         .putString(OmtpConstants.IMAP_PASSWORD, null)
         .apply();
+    ImapSyncState.clear(context, phoneAccount);
     ThreadUtil.postOnUiThread(
         () -> {
           for (ActivationStateListener listener : listeners) {
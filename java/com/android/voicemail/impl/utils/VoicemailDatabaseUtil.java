@@ -58,7 +58,7 @@ public class VoicemailDatabaseUtil {
   }
 
   /** Maps structured {@link Voicemail} to {@link ContentValues} in content provider. */
-  private static ContentValues getContentValues(Voicemail voicemail) {
+  public static ContentValues getContentValues(Voicemail voicemail) {
     ContentValues contentValues = new ContentValues();
     contentValues.put(Voicemails.DATE, String.valueOf(voicemail.getTimestampMillis()));
     contentValues.put(Voicemails.NUMBER, voicemail.getNumber());